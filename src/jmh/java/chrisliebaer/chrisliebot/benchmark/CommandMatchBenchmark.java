@@ -0,0 +1,63 @@
+package chrisliebaer.chrisliebot.benchmark;
+
+import chrisliebaer.chrisliebot.benchmark.stub.StubMessage;
+import chrisliebaer.chrisliebot.command.ChrislieDispatcher;
+import chrisliebaer.chrisliebot.command.CommandMatcher;
+import chrisliebaer.chrisliebot.config.ChrislieContext;
+import chrisliebaer.chrisliebot.config.JsonBotConfig;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the command detection of the dispatcher on a realistic mix of chat and command messages, both for plain
+ * prefix configurations and regular expressions.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CommandMatchBenchmark {
+	
+	private static final int MESSAGES = 4096;
+	
+	@Param({"false", "true"})
+	private boolean pattern;
+	
+	private List<StubMessage> messages;
+	private List<ChrislieContext> contexts;
+	private int idx;
+	
+	@Setup
+	public void setup() throws JsonBotConfig.ConfigInitializeException {
+		var fixture = new Fixture(50, pattern);
+		messages = fixture.messages(MESSAGES);
+		
+		// contexts are resolved upfront, since we only want to measure parsing
+		contexts = new ArrayList<>(MESSAGES);
+		for (StubMessage m : messages)
+			contexts.add(fixture.resolver().resolve(m));
+	}
+	
+	@Benchmark
+	public Optional<ChrislieDispatcher.CommandParse> parseCommand() {
+		idx = (idx + 1) & (MESSAGES - 1);
+		var ctx = contexts.get(idx);
+		return CommandMatcher.of(ctx).flatMap(matcher -> matcher.match(messages.get(idx).message(), ctx));
+	}
+}
@@ -0,0 +1,240 @@
+package chrisliebaer.chrisliebot.benchmark;
+
+import chrisliebaer.chrisliebot.benchmark.stub.StubChannel;
+import chrisliebaer.chrisliebot.benchmark.stub.StubGuild;
+import chrisliebaer.chrisliebot.benchmark.stub.StubMessage;
+import chrisliebaer.chrisliebot.benchmark.stub.StubService;
+import chrisliebaer.chrisliebot.benchmark.stub.StubUser;
+import chrisliebaer.chrisliebot.command.ChrislieListener;
+import chrisliebaer.chrisliebot.command.basic.NullCommand;
+import chrisliebaer.chrisliebot.config.ContextResolver;
+import chrisliebaer.chrisliebot.config.JsonBotConfig;
+import chrisliebaer.chrisliebot.util.GsonValidator;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+import lombok.Getter;
+
+import javax.validation.Validation;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates a bot config that resembles a large production setup: a base group with the dispatcher settings and a set
+ * of commands, one group per channel and guild that overrides flex values and aliases, user dependent admin mappings
+ * and a mapping that depends on the message content. All of it is backed by in-memory services, so no network or
+ * database is required.
+ */
+public class Fixture {
+	
+	public static final int COMMANDS = 20;
+	public static final int GUILDS = 8;
+	public static final int USERS = 200;
+	
+	private static final String[] WORDS = {
+			"hallo", "welt", "kaffee", "mensa", "heute", "morgen", "vorlesung", "übung", "klausur", "abgabe",
+			"https://example.com/some/path?query=1", "chrisliebot", "lol", "xD", "🙃", "warum", "geht", "das", "nicht", "?"
+	};
+	
+	@Getter private final GsonValidator gson = new GsonValidator(new GsonBuilder().create(),
+			Validation.buildDefaultValidatorFactory().getValidator());
+	
+	@Getter private final StubService irc = new StubService("irc");
+	@Getter private final StubService discord = new StubService("discord");
+	
+	@Getter private final List<StubChannel> channels = new ArrayList<>();
+	@Getter private final List<StubUser> ircUsers = new ArrayList<>();
+	@Getter private final List<StubUser> discordUsers = new ArrayList<>();
+	
+	@Getter private final ContextResolver resolver;
+	
+	/**
+	 * @param channelCount Number of channels, each with its own group and mapping.
+	 * @param pattern      If set, the dispatcher uses a regular expression instead of a plain prefix.
+	 */
+	public Fixture(int channelCount, boolean pattern) throws JsonBotConfig.ConfigInitializeException {
+		List<StubGuild> guilds = new ArrayList<>(GUILDS);
+		for (int i = 0; i < GUILDS; i++)
+			guilds.add(discord.guild("guild-" + i, "Guild " + i));
+		
+		for (int i = 0; i < USERS; i++) {
+			ircUsers.add(irc.user("user" + i, "User" + i));
+			discordUsers.add(discord.user("user" + i, "User" + i));
+		}
+		
+		// half of the channels are irc channels, the other half is spread over discord guilds
+		for (int i = 0; i < channelCount; i++) {
+			var ircChannel = i % 2 == 0;
+			StubChannel channel = ircChannel
+					? irc.channel("#chan-" + i, null)
+					: discord.channel("#chan-" + i, guilds.get(i % GUILDS));
+			
+			// channels must only contain users of their own service
+			var users = ircChannel ? ircUsers : discordUsers;
+			for (int j = 0; j < 20; j++)
+				channel.users().add(users.get((i * 7 + j) % USERS));
+			channels.add(channel);
+		}
+		
+		var json = config(channelCount, pattern);
+		var botConfig = gson.fromJson(json, JsonBotConfig.class);
+		resolver = new ContextResolver(botConfig.instance(gson));
+	}
+	
+	/**
+	 * Creates a reproducible sequence of messages. Roughly one in ten messages is a command invocation, the rest is
+	 * regular chat.
+	 *
+	 * @param count Number of messages.
+	 * @return List of messages.
+	 */
+	public List<StubMessage> messages(int count) {
+		var random = new Random(42);
+		List<StubMessage> messages = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			var channel = channels.get(random.nextInt(channels.size()));
+			var user = channel.users().get(random.nextInt(channel.users().size()));
+			
+			String text;
+			if (random.nextInt(10) == 0)
+				text = "!cmd" + random.nextInt(COMMANDS) + " " + sentence(random, 3);
+			else
+				text = sentence(random, 1 + random.nextInt(15));
+			
+			messages.add(new StubMessage(channel, user, text));
+		}
+		return messages;
+	}
+	
+	private static String sentence(Random random, int words) {
+		var sb = new StringBuilder();
+		for (int i = 0; i < words; i++) {
+			if (i > 0)
+				sb.append(' ');
+			sb.append(WORDS[random.nextInt(WORDS.length)]);
+		}
+		return sb.toString();
+	}
+	
+	private static JsonObject config(int channelCount, boolean pattern) {
+		var groups = new JsonObject();
+		var mappings = new JsonArray();
+		
+		// base group contains dispatcher config and all commands
+		var baseFlex = new JsonObject();
+		if (pattern)
+			baseFlex.addProperty("dispatcher.pattern", "^!(?<alias>\\S+)\\s*(?<argument>.*)$");
+		else
+			baseFlex.addProperty("dispatcher.prefix", "!");
+		baseFlex.addProperty("limitercfg.maxLines", 3);
+		baseFlex.addProperty("limitercfg.cutNotice", true);
+		baseFlex.addProperty("chrisliebot.zoneId", "Europe/Berlin");
+		baseFlex.addProperty("chrisliebot.dateTimeFormat", "dd.MM.yyyy HH:mm");
+		
+		var baseListeners = new JsonArray();
+		for (int i = 0; i < COMMANDS; i++)
+			baseListeners.add(def("cmd" + i, NullCommand.class, "cmd" + i, "c" + i + "?"));
+		baseListeners.add(def("passive", PassiveListener.class));
+		groups.add("base", group(List.of(), baseFlex, baseListeners));
+		mappings.add(mapping(selector("all", null), "base"));
+		
+		// admin group is mapped by user and by message content, since some setups do that
+		var adminListeners = new JsonArray();
+		adminListeners.add(def("admin", NullCommand.class, "admin", "shutdown", "restart"));
+		groups.add("admin", group(List.of("base"), new JsonObject(), adminListeners));
+		var adminUser = new JsonObject();
+		adminUser.addProperty("user", "r:user1[0-9]");
+		mappings.add(mapping(selector("regex", adminUser), "admin"));
+		var adminMessage = new JsonObject();
+		adminMessage.addProperty("message", "r:^!admin");
+		var and = new JsonArray();
+		and.add(selector("service", new JsonPrimitive("irc")));
+		and.add(selector("regex", adminMessage));
+		mappings.add(mapping(selector("and", and), "admin"));
+		
+		// every guild overrides some flex values
+		for (int i = 0; i < GUILDS; i++) {
+			var flex = new JsonObject();
+			flex.addProperty("limitercfg.maxLines", 10);
+			flex.addProperty("chrisliebot.zoneId", "UTC");
+			groups.add("guild-" + i, group(List.of("base"), flex, new JsonArray()));
+			
+			var guild = new JsonObject();
+			guild.addProperty("guild", "guild-" + i);
+			mappings.add(mapping(selector("regex", guild), "guild-" + i));
+		}
+		
+		// every channel has its own group that renames a command and sets some flex values
+		for (int i = 0; i < channelCount; i++) {
+			var flex = new JsonObject();
+			flex.addProperty("limitercfg.maxLines", 1 + i % 5);
+			flex.addProperty("channel.topic", "Channel " + i);
+			
+			var listeners = new JsonArray();
+			var ref = new JsonObject();
+			ref.addProperty("type", "ref");
+			ref.addProperty("name", "cmd" + i % COMMANDS);
+			ref.add("alias", aliases("+chan" + i));
+			listeners.add(ref);
+			
+			groups.add("chan-" + i, group(List.of("base"), flex, listeners));
+			mappings.add(mapping(selector("channel", new JsonPrimitive("#chan-" + i)), "chan-" + i));
+		}
+		
+		var root = new JsonObject();
+		root.add("groups", groups);
+		root.add("mappings", mappings);
+		return root;
+	}
+	
+	private static JsonObject def(String name, Class<? extends ChrislieListener> clazz, String... alias) {
+		var def = new JsonObject();
+		def.addProperty("type", "def");
+		def.addProperty("name", name);
+		def.addProperty("clazz", clazz.getName());
+		if (alias.length > 0)
+			def.add("alias", aliases(alias));
+		return def;
+	}
+	
+	private static JsonArray aliases(String... alias) {
+		var array = new JsonArray();
+		for (String s : alias)
+			array.add(s);
+		return array;
+	}
+	
+	private static JsonObject group(List<String> include, JsonObject flex, JsonArray listener) {
+		var group = new JsonObject();
+		group.add("include", aliases(include.toArray(String[]::new)));
+		group.add("flex", flex);
+		group.add("listener", listener);
+		return group;
+	}
+	
+	private static JsonObject selector(String type, JsonElement json) {
+		var selector = new JsonObject();
+		selector.addProperty("type", type);
+		if (json != null)
+			selector.add("json", json);
+		return selector;
+	}
+	
+	private static JsonObject mapping(JsonObject selector, String... groups) {
+		var selectors = new JsonArray();
+		selectors.add(selector);
+		
+		var mapping = new JsonObject();
+		mapping.add("selectors", selectors);
+		mapping.add("groups", aliases(groups));
+		return mapping;
+	}
+	
+	/**
+	 * Passive listener that is mapped everywhere but doesn't do anything.
+	 */
+	public static class PassiveListener implements ChrislieListener {}
+}
@@ -0,0 +1,72 @@
+package chrisliebaer.chrisliebot.benchmark;
+
+import chrisliebaer.chrisliebot.abstraction.LimiterConfig;
+import chrisliebaer.chrisliebot.command.ChrislieListener;
+import chrisliebaer.chrisliebot.config.ChrislieContext;
+import chrisliebaer.chrisliebot.config.JsonBotConfig;
+import chrisliebaer.chrisliebot.config.flex.CommonFlex;
+import chrisliebaer.chrisliebot.config.flex.FlexConf;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures typical flex lookups of a listener, once on a frozen context as handed out by the resolver and once on an
+ * unfrozen context that still has to walk its chain of resolvers.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FlexConfBenchmark {
+	
+	private FlexConf frozen;
+	private FlexConf unfrozen;
+	
+	@Setup
+	public void setup() throws JsonBotConfig.ConfigInitializeException {
+		var fixture = new Fixture(50, false);
+		var m = fixture.messages(1).get(0);
+		
+		frozen = fixture.resolver().resolve(m).listener("cmd0").orElseThrow().flexConf();
+		
+		// same groups but without freezing
+		var ctx = new ChrislieContext();
+		fixture.resolver().mappings().stream()
+				.filter(mapping -> mapping.check(m))
+				.forEach(mapping -> ctx.addGroups(mapping.groups()));
+		unfrozen = ctx.listener("cmd0").orElseThrow().flexConf();
+	}
+	
+	@Benchmark
+	public void lookupFrozen(Blackhole bh) throws ChrislieListener.ListenerException {
+		lookup(frozen, bh);
+	}
+	
+	@Benchmark
+	public void lookupUnfrozen(Blackhole bh) throws ChrislieListener.ListenerException {
+		lookup(unfrozen, bh);
+	}
+	
+	private static void lookup(FlexConf flex, Blackhole bh) throws ChrislieListener.ListenerException {
+		bh.consume(flex.getString(FlexConf.DISPATCHER_PREFIX));
+		bh.consume(flex.isSet(FlexConf.DISPATCHER_DISABLE));
+		bh.consume(flex.getInteger("limitercfg.maxLines"));
+		bh.consume(flex.getString("channel.topic"));
+		bh.consume(flex.getString("missing.key"));
+		bh.consume(CommonFlex.ZONE_ID().get(flex));
+		bh.consume(LimiterConfig.of(flex));
+	}
+}
@@ -0,0 +1,61 @@
+package chrisliebaer.chrisliebot.benchmark;
+
+import chrisliebaer.chrisliebot.abstraction.irc.NickMatcher;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures escaping of nicknames in outgoing IRC messages. The matcher is what every IRC channel uses for escaping, so
+ * no kitteh channel is required.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IrcEscapeBenchmark {
+	
+	@Param({"20", "500"})
+	private int nicks;
+	
+	private NickMatcher matcher;
+	private String message;
+	
+	@Setup
+	public void setup() {
+		List<String> nicknames = new ArrayList<>(nicks);
+		for (int i = 0; i < nicks; i++)
+			nicknames.add("User" + i);
+		matcher = new NickMatcher(nicknames);
+		
+		message = "User1: Die Mensa hat heute geschlossen, frag mal User42 oder user7 ob die Abgabe verschoben wurde. "
+				+ "Ansonsten steht alles auf https://example.com/vorlesung, das hat User13 gestern schon geschrieben.";
+	}
+	
+	@Benchmark
+	public String escapeNicks() {
+		return matcher.escape(message);
+	}
+	
+	// a user joins and leaves between two messages, which forces the failure links to be recomputed
+	@Benchmark
+	public String escapeAfterJoin() {
+		matcher.add("Joiner");
+		matcher.remove("Joiner");
+		return matcher.escape(message);
+	}
+}
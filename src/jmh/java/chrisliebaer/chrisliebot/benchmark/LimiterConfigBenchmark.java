@@ -0,0 +1,68 @@
+package chrisliebaer.chrisliebot.benchmark;
+
+import chrisliebaer.chrisliebot.abstraction.LimiterConfig;
+import chrisliebaer.chrisliebot.command.ChrislieListener;
+import chrisliebaer.chrisliebot.config.flex.FlexConf;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.reflect.Type;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures splitting of outgoing messages into IRC lines.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LimiterConfigBenchmark {
+	
+	private static final int IRC_LINE_LIMIT = 400;
+	
+	@Param({"80", "2000"})
+	private int length;
+	
+	private LimiterConfig limiter;
+	private String message;
+	
+	@Setup
+	public void setup() throws ChrislieListener.ListenerException {
+		Map<String, Object> values = Map.of("limitercfg.maxLines", 3, "limitercfg.cutNotice", true);
+		limiter = LimiterConfig.of(new FlexConf(new FlexConf.Resolver() {
+			@Override
+			public <V> Optional<V> get(String key, Class<V> clazz) {
+				return Optional.ofNullable(values.get(key)).map(clazz::cast);
+			}
+			
+			@Override
+			public Optional<Object> get(String key, Type type) {
+				return Optional.ofNullable(values.get(key));
+			}
+		}));
+		
+		var sb = new StringBuilder();
+		while (sb.length() < length)
+			sb.append("Das ist ein \u0002fetter\u000F Satz mit einem https://example.com/link und Umlauten äöü. ");
+		message = sb.substring(0, length);
+	}
+	
+	@Benchmark
+	public List<String> split() {
+		return limiter.split(message, IRC_LINE_LIMIT);
+	}
+}
@@ -0,0 +1,44 @@
+package chrisliebaer.chrisliebot.benchmark;
+
+import chrisliebaer.chrisliebot.util.parser.ChrislieParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures parsing of a typical command argument with options and quoted strings.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParserBenchmark {
+	
+	private static final String ARGUMENT = "-v --zone \"Europe/Berlin\" 10m \"Kaffee holen\" und dann 'zurück in die Vorlesung' 🙃";
+	
+	@Benchmark
+	public void parse(Blackhole bh) throws ChrislieParser.ParserException {
+		var parser = new ChrislieParser(ARGUMENT);
+		var options = parser.options();
+		var verbose = options.flag("v", "verbose");
+		var zone = options.option(p -> p.quoted(true), "z", "zone");
+		options.parse();
+		bh.consume(verbose.getAsBoolean());
+		bh.consume(zone.get());
+		
+		parser.skipWhitespaces();
+		while (parser.quoted(true).canRead())
+			bh.consume(parser.quoted(true).consume().expect());
+	}
+}
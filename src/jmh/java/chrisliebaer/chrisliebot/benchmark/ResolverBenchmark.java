@@ -0,0 +1,71 @@
+package chrisliebaer.chrisliebot.benchmark;
+
+import chrisliebaer.chrisliebot.abstraction.ChrislieMessage;
+import chrisliebaer.chrisliebot.benchmark.stub.StubMessage;
+import chrisliebaer.chrisliebot.config.ChrislieContext;
+import chrisliebaer.chrisliebot.config.JsonBotConfig;
+import chrisliebaer.chrisliebot.config.scope.Selector;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures context resolution of incoming messages. The cached variant is what the dispatcher sees for steady traffic,
+ * while the other variants measure the cost of evaluating selectors after the cache has been dropped or without using
+ * the cache at all.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ResolverBenchmark {
+	
+	private static final int MESSAGES = 4096; // power of two, so we can wrap with a mask
+	
+	@Param({"50", "500"})
+	private int channels;
+	
+	private Fixture fixture;
+	private List<StubMessage> messages;
+	private int idx;
+	
+	@Setup
+	public void setup() throws JsonBotConfig.ConfigInitializeException {
+		fixture = new Fixture(channels, false);
+		messages = fixture.messages(MESSAGES);
+	}
+	
+	private StubMessage next() {
+		idx = (idx + 1) & (MESSAGES - 1);
+		return messages.get(idx);
+	}
+	
+	@Benchmark
+	public ChrislieContext resolveCached() {
+		return fixture.resolver().resolve(next());
+	}
+	
+	@Benchmark
+	public ChrislieContext resolveInvalidated() {
+		fixture.resolver().invalidateCache();
+		return fixture.resolver().resolve(next());
+	}
+	
+	@Benchmark
+	public ChrislieContext resolveAllSelectors() {
+		return fixture.resolver().<ChrislieMessage>resolve(Selector::check, next());
+	}
+}
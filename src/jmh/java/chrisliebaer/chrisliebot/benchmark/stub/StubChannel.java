@@ -0,0 +1,64 @@
+package chrisliebaer.chrisliebot.benchmark.stub;
+
+import chrisliebaer.chrisliebot.abstraction.ChrislieChannel;
+import chrisliebaer.chrisliebot.abstraction.ChrislieOutput;
+import chrisliebaer.chrisliebot.abstraction.LimiterConfig;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.Setter;
+import lombok.ToString;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+@ToString(onlyExplicitlyIncluded = true)
+public class StubChannel implements ChrislieChannel {
+	
+	@Getter private final StubService service;
+	@Getter @ToString.Include private final String identifier;
+	@Getter private final List<StubUser> users = new ArrayList<>();
+	
+	private final StubGuild guild;
+	
+	@Setter private boolean nsfw;
+	
+	StubChannel(@NonNull StubService service, @NonNull String identifier, @Nullable StubGuild guild) {
+		this.service = service;
+		this.identifier = identifier;
+		this.guild = guild;
+	}
+	
+	@Override
+	public String displayName() {
+		return identifier;
+	}
+	
+	@Override
+	public boolean isDirectMessage() {
+		return false;
+	}
+	
+	@Override
+	public boolean isNSFW() {
+		return nsfw;
+	}
+	
+	@Override
+	public Optional<StubUser> resolve(String callName) {
+		return users.stream()
+				.filter(user -> user.displayName().equalsIgnoreCase(callName))
+				.findAny();
+	}
+	
+	@Override
+	public Optional<StubGuild> guild() {
+		return Optional.ofNullable(guild);
+	}
+	
+	@Override
+	public ChrislieOutput output(LimiterConfig limiterConfig) {
+		throw new UnsupportedOperationException("benchmarks don't send output");
+	}
+}
@@ -0,0 +1,20 @@
+package chrisliebaer.chrisliebot.benchmark.stub;
+
+import chrisliebaer.chrisliebot.abstraction.ChrislieGuild;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@ToString(onlyExplicitlyIncluded = true)
+@AllArgsConstructor(access = AccessLevel.PACKAGE)
+public class StubGuild implements ChrislieGuild {
+	
+	@Getter private final StubService service;
+	@Getter @ToString.Include private final String identifier;
+	@Getter private final String displayName;
+	@Getter private final List<StubChannel> channels = new ArrayList<>();
+}
@@ -0,0 +1,21 @@
+package chrisliebaer.chrisliebot.benchmark.stub;
+
+import chrisliebaer.chrisliebot.abstraction.ChrislieMessage;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.ToString;
+
+@ToString
+@AllArgsConstructor
+public class StubMessage implements ChrislieMessage {
+	
+	@Getter private final @NonNull StubChannel channel;
+	@Getter private final @NonNull StubUser user;
+	@Getter private final @NonNull String message;
+	
+	@Override
+	public StubService service() {
+		return channel.service();
+	}
+}
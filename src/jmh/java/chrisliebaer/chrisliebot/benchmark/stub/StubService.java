@@ -0,0 +1,93 @@
+package chrisliebaer.chrisliebot.benchmark.stub;
+
+import chrisliebaer.chrisliebot.Chrisliebot;
+import chrisliebaer.chrisliebot.abstraction.ChrislieMessage;
+import chrisliebaer.chrisliebot.abstraction.ChrislieService;
+import lombok.Getter;
+import lombok.NonNull;
+
+import javax.annotation.Nullable;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+/**
+ * In-memory service without any network connection. Guilds, channels and users are created on demand and stay
+ * registered, so repeated lookups return the same instances just like a real service would.
+ */
+public class StubService implements ChrislieService {
+	
+	@Getter private final String identifier;
+	@Getter private final StubUser botUser;
+	
+	private final Map<String, StubGuild> guilds = new LinkedHashMap<>();
+	private final Map<String, StubChannel> channels = new LinkedHashMap<>();
+	private final Map<String, StubUser> users = new LinkedHashMap<>();
+	
+	private Consumer<ChrislieMessage> sink;
+	
+	public StubService(@NonNull String identifier) {
+		this.identifier = identifier;
+		botUser = user("chrisliebot", "Chrisliebot");
+	}
+	
+	public StubGuild guild(@NonNull String identifier, @NonNull String displayName) {
+		return guilds.computeIfAbsent(identifier, k -> new StubGuild(this, identifier, displayName));
+	}
+	
+	public StubChannel channel(@NonNull String identifier, @Nullable StubGuild guild) {
+		return channels.computeIfAbsent(identifier, k -> {
+			var channel = new StubChannel(this, identifier, guild);
+			if (guild != null)
+				guild.channels().add(channel);
+			return channel;
+		});
+	}
+	
+	public StubUser user(@NonNull String identifier, @NonNull String displayName) {
+		return users.computeIfAbsent(identifier, k -> new StubUser(this, identifier, displayName));
+	}
+	
+	/**
+	 * Passes the given message to the sink, as if it had been received from the network.
+	 *
+	 * @param m The message to pass on.
+	 */
+	public void receive(@NonNull ChrislieMessage m) {
+		if (sink != null)
+			sink.accept(m);
+	}
+	
+	@Override
+	public void awaitReady() {}
+	
+	@Override
+	public ChrislieService sink(@Nullable Consumer<ChrislieMessage> sink) {
+		this.sink = sink;
+		return this;
+	}
+	
+	@Override
+	public Optional<StubChannel> channel(String identifier) {
+		return Optional.ofNullable(channels.get(identifier));
+	}
+	
+	@Override
+	public Optional<StubUser> user(String identifier) {
+		return Optional.ofNullable(users.get(identifier));
+	}
+	
+	@Override
+	public Optional<StubGuild> guild(String identifier) {
+		return Optional.ofNullable(guilds.get(identifier));
+	}
+	
+	@Override
+	public void exit() {}
+	
+	@Override
+	public Chrisliebot bot() {
+		throw new UnsupportedOperationException("stub service is not attached to a bot instance");
+	}
+}
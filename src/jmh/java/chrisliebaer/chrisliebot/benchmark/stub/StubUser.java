@@ -0,0 +1,28 @@
+package chrisliebaer.chrisliebot.benchmark.stub;
+
+import chrisliebaer.chrisliebot.abstraction.ChrislieUser;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.util.Optional;
+
+@ToString(onlyExplicitlyIncluded = true)
+@AllArgsConstructor(access = AccessLevel.PACKAGE)
+public class StubUser implements ChrislieUser {
+	
+	@Getter private final StubService service;
+	@Getter @ToString.Include private final String identifier;
+	@Getter private final String displayName;
+	
+	@Override
+	public String mention() {
+		return displayName;
+	}
+	
+	@Override
+	public Optional<StubChannel> directMessage() {
+		return Optional.empty();
+	}
+}
@@ -18,7 +18,10 @@ import com.cronutils.model.CronType;
 import com.cronutils.model.definition.CronDefinitionBuilder;
 import com.google.common.util.concurrent.AbstractIdleService;
 import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import lombok.AllArgsConstructor;
 import lombok.Getter;
+import lombok.ToString;
 import lombok.extern.slf4j.Slf4j;
 
 import javax.validation.Validation;
@@ -28,10 +31,15 @@ import java.io.IOException;
 import java.nio.charset.Charset;
 import java.time.ZoneId;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Pattern;
 
 @Slf4j
@@ -80,9 +88,20 @@ public class Chrisliebot extends AbstractIdleService {
 	@Getter private ChrislieDispatcher dispatcher;
 	
 	/**
-	 * Resolver that's used in dispatcher.
+	 * Resolver that's used in dispatcher. Only replaced while holding the lock of this instance.
 	 */
-	private ContextResolver resolver;
+	private volatile ContextResolver resolver;
+	
+	/**
+	 * Set if a listener failed in a way that might have left lingering ressources. Only a restart can recover from this,
+	 * so further reloads are refused.
+	 */
+	private volatile boolean dirty;
+	
+	/**
+	 * Core config, kept around since parts of it are required after services have been started.
+	 */
+	private CoreConfig coreCfg;
 	
 	/**
 	 * Exit code that will be returned if proper shutdown occurs.
@@ -145,28 +164,34 @@ public class Chrisliebot extends AbstractIdleService {
 	protected void startUp() throws Exception {
 		log.info("using core config `{}` and bot config `{}`", coreFile, botFile);
 		
-		CoreConfig coreCfg;
 		try (var fr = new FileReader(coreFile)) {
 			coreCfg = gson.fromJson(fr, CoreConfig.class);
 		} catch (IOException e) {
 			throw new Exception("failed to load connection config", e);
 		}
 		
+		var report = new StartupReport();
+		
 		// setup shared ressources as they might be required by some services
-		sharedResources = new SharedResources(coreCfg.databasePool(), gson);
+		var phaseStart = System.nanoTime();
+		sharedResources = new SharedResources(coreCfg.databasePool(), gson, coreCfg.metrics(), coreCfg.accounting());
 		sharedResources.startAsync().awaitRunning();
+		report.phase("shared resources", phaseStart);
 		
 		// bot config requires running serivces, so services go first
 		coreCfg.ensureDisjoint();
 		Map<String, ServiceBootstrap> bootstraps = new HashMap<>();
 		bootstraps.putAll(coreCfg.irc());
 		bootstraps.putAll(coreCfg.discord());
+		bootstraps.putAll(coreCfg.synthetic());
 		
 		for (var entry : bootstraps.entrySet()) {
 			var name = entry.getKey();
 			var boostrap = entry.getValue();
 			try {
+				phaseStart = System.nanoTime();
 				services.put(name, boostrap.service(this, name));
+				report.phase(String.format("service `%s` bootstrap", name), phaseStart);
 			} catch (Exception e) {
 				throw new Exception(String.format("failed to start service `%s`", name), e);
 			}
@@ -177,69 +202,154 @@ public class Chrisliebot extends AbstractIdleService {
 			var name = entry.getKey();
 			var service = entry.getValue();
 			try {
+				phaseStart = System.nanoTime();
 				service.awaitReady();
+				report.phase(String.format("service `%s` ready", name), phaseStart);
 			} catch (Exception e) {
 				throw new Exception(String.format("service `%s` failed to get ready", name), e);
 			}
 		}
 		
 		// on the first load, we abort on errors, since we have no fallback
-		loadBotConfig();
+		loadBotConfig(report);
+		log.info(report.format());
+	}
+	
+	private void loadBotConfig(StartupReport report) throws ChrisliebotException {
+		var phaseStart = System.nanoTime();
+		resolver = instanceBotConfig(List.of());
+		report.phase("bot config", phaseStart);
+		
+		// the second phase requires each listener to have completed the first phase
+		try (var lifecycle = new ListenerLifecycle(coreCfg.startupThreads())) {
+			var init = lifecycle.run("init", resolver.envelopes(), listener -> listener.init(this, resolver));
+			report.listeners(init);
+			if (init.failed())
+				throw init.exception();
+			
+			var start = lifecycle.run("start", resolver.envelopes(), listener -> listener.start(this, resolver));
+			report.listeners(start);
+			if (start.failed())
+				throw start.exception();
+		}
+		
+		// announce the resolver that's going to be used to services for command suggestion
+		services.values().forEach(s -> s.announceResolver(resolver));
+		
+		// create dispatcher and hook into services
+		dispatcher = new ChrislieDispatcher(this, resolver, coreCfg.dispatcher());
+		services.values().forEach(s -> s.sink(dispatcher::dispatch));
+	}
+	
+	/**
+	 * Reloads the bot config while keeping all services connected. Listeners whose definition did not change are kept
+	 * and only notified about the new resolver, all other listeners are created, initialized and started while the
+	 * previous config is still active. The new resolver is swapped in afterwards and removed listeners are stopped. If
+	 * any new listener fails, the previous config stays active.
+	 *
+	 * @return Summary of the changes.
+	 * @throws ChrisliebotException If the new config could not be loaded.
+	 */
+	public synchronized ReloadReport reloadBotConfig() throws ChrisliebotException {
+		if (!isRunning())
+			throw new ChrisliebotException("bot is not running");
+		if (dirty)
+			throw new ChrisliebotException("a previous failure left listeners in an unknown state, restart required");
+		
+		var reloadStart = System.nanoTime();
+		var previous = resolver;
+		var next = instanceBotConfig(previous.envelopes());
+		
+		// envelopes have no notion of equality, so identity is the only way to tell which listeners were reused
+		Set<ChrislieListener.Envelope> added = Collections.newSetFromMap(new IdentityHashMap<>());
+		added.addAll(next.envelopes());
+		added.removeAll(previous.envelopes());
+		Set<ChrislieListener.Envelope> removed = Collections.newSetFromMap(new IdentityHashMap<>());
+		removed.addAll(previous.envelopes());
+		removed.removeAll(next.envelopes());
+		
+		try (var lifecycle = new ListenerLifecycle(coreCfg.startupThreads())) {
+			
+			// listeners that did initialize may already hold resources, so they are stopped before the new config is discarded
+			var init = lifecycle.run("init", added, listener -> listener.init(this, next));
+			if (init.failed()) {
+				dirty |= init.dirty();
+				stopListeners(init.durations().keySet(), next);
+				throw init.exception();
+			}
+			
+			// every listener did initialize at this point, so all of them are stopped, regardless of their start
+			var start = lifecycle.run("start", added, listener -> listener.start(this, next));
+			if (start.failed()) {
+				dirty |= start.dirty();
+				stopListeners(init.durations().keySet(), next);
+				throw start.exception();
+			}
+		}
+		
+		// kept listeners must switch to the new resolver before it goes live
+		for (var envelope : next.envelopes()) {
+			if (added.contains(envelope))
+				continue;
+			try {
+				envelope.listener().reload(this, next);
+			} catch (RuntimeException e) {
+				log.warn("listener with source `{}` failed to accept new resolver", envelope.source(), e);
+			}
+		}
+		
+		// swap resolver, messages that are already being processed will finish with the previous resolver
+		resolver = next;
+		services.values().forEach(s -> s.announceResolver(next));
+		dispatcher.resolver(next);
+		
+		stopListeners(removed, previous);
+		
+		var report = new ReloadReport(added.size(), removed.size(), next.envelopes().size() - added.size(),
+				TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - reloadStart));
+		log.info("reloaded bot config: {}", report);
+		return report;
 	}
 	
-	private void loadBotConfig() throws ChrisliebotException {
+	private ContextResolver instanceBotConfig(Collection<ChrislieListener.Envelope> previous) throws ChrisliebotException {
 		
 		// deserializing config
 		JsonBotConfig botConfig;
 		try (var fr = new FileReader(botFile)) {
 			botConfig = gson.fromJson(fr, JsonBotConfig.class);
-		} catch (IOException e) {
+		} catch (IOException | JsonParseException e) {
 			throw new ChrisliebotException("failed to load bot config file", e);
 		}
 		
 		// instancing bot config is actually a very heavy task, don't be fooled
 		List<ScopeMapping> scopeMappings;
 		try {
-			scopeMappings = new ArrayList<>(botConfig.instance(gson));
+			scopeMappings = new ArrayList<>(botConfig.instance(gson, previous));
 		} catch (JsonBotConfig.ConfigInitializeException e) {
 			throw new ChrisliebotException("unable to instance bot config", e);
 		}
 		
-		// listeners are created, but not yet initialized or started since this requires a context resolver and a chrisliebot instance, so do that
-		resolver = new ContextResolver(scopeMappings);
+		// listeners are created, but not yet initialized or started since this requires a context resolver and a chrisliebot instance
+		var resolver = new ContextResolver(scopeMappings);
 		log.info("found {} listeners, {} groups and {} mappings",
 				resolver.envelopes().size(), resolver.groups().size(), resolver.mappings().size());
-		
-		// we also need two loops for listener startup, since the second phase requires each listener to have completed the first phase
-		log.debug("calling init() on listeners");
-		for (var envelope : resolver.envelopes()) {
-			try {
-				log.trace("calling init() on {}", envelope);
-				envelope.listener().init(this, resolver);
-			} catch (ChrislieListener.ListenerException e) {
-				throw new ChrisliebotException(String.format("error in init() of listener with source `%s`", envelope.source()), e);
-			} catch (@SuppressWarnings("OverlyBroadCatchBlock") Exception e) {
-				throw new ChrisliebotException(String.format("unhandled error in init() of listener with source `%s`", envelope.source()), e);
-			}
-		}
-		log.debug("calling start() on listeners");
-		for (var envelope : resolver.envelopes()) {
+		return resolver;
+	}
+	
+	/**
+	 * Stops the given listeners during a reload. Failures are only logged, but mark this instance as dirty.
+	 */
+	private void stopListeners(Collection<ChrislieListener.Envelope> envelopes, ContextResolver resolver) {
+		log.debug("calling stop() on {} listeners", envelopes.size());
+		for (var envelope : envelopes) {
 			try {
-				log.trace("calling start() on {}", envelope);
-				envelope.listener().start(this, resolver);
-			} catch (ChrislieListener.ListenerException e) {
-				throw new ChrisliebotException(String.format("error in start() of listener with source `%s`", envelope.source()), e);
+				log.trace("calling stop() on {}", envelope);
+				envelope.listener().stop(this, resolver);
 			} catch (@SuppressWarnings("OverlyBroadCatchBlock") Exception e) {
-				throw new ChrisliebotException(String.format("unhandled error in start() of listener with source `%s`", envelope.source()), e);
+				dirty = true;
+				log.error("failed to stop listener with source `{}`, restart required", envelope.source(), e);
 			}
 		}
-		
-		// announce the resolver that's going to be used to services for command suggestion
-		services.values().forEach(s -> s.announceResolver(resolver));
-		
-		// create dispatcher and hook into services
-		dispatcher = new ChrislieDispatcher(this, resolver);
-		services.values().forEach(s -> s.sink(dispatcher::dispatch));
 	}
 	
 	@Override
@@ -260,6 +370,10 @@ public class Chrisliebot extends AbstractIdleService {
 		 */
 		
 		log.debug("calling stop() on listeners");
+		ContextResolver resolver;
+		synchronized (this) { // wait for pending reload
+			resolver = this.resolver;
+		}
 		for (var envelope : resolver.envelopes()) {
 			var listener = envelope.listener();
 			try {
@@ -311,6 +425,17 @@ public class Chrisliebot extends AbstractIdleService {
 		}
 	}
 	
+	@Getter
+	@ToString
+	@AllArgsConstructor
+	public static class ReloadReport {
+		
+		private final int added;
+		private final int removed;
+		private final int kept;
+		private final long millis;
+	}
+	
 	public class Managment {
 		
 		public void shutdown() {
@@ -324,5 +449,9 @@ public class Chrisliebot extends AbstractIdleService {
 		public void upgrade() {
 			shutdownWithCode(EXIT_CODE_UPGRADE);
 		}
+		
+		public ReloadReport reload() throws ChrisliebotException {
+			return reloadBotConfig();
+		}
 	}
 }
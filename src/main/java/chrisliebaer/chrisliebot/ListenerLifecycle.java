@@ -0,0 +1,179 @@
+package chrisliebaer.chrisliebot;
+
+import chrisliebaer.chrisliebot.command.ChrislieListener;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs a lifecycle phase of many listeners in parallel on a bounded pool. Listeners only wait for the listeners they
+ * declared as {@link ChrislieListener#dependencies()}, and all failures of a phase are collected instead of aborting on
+ * the first one.
+ */
+@Slf4j
+final class ListenerLifecycle implements AutoCloseable {
+	
+	private final ExecutorService executor;
+	
+	ListenerLifecycle(int threads) {
+		var threadCounter = new AtomicInteger();
+		executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), r -> {
+			var t = new Thread(r, "ListenerLifecycle-" + threadCounter.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		});
+	}
+	
+	/**
+	 * Runs the given phase on all envelopes and blocks until every listener has either completed, failed or was skipped
+	 * since one of its dependencies failed.
+	 *
+	 * @param phase     Name of the phase, used for logging and reporting.
+	 * @param envelopes The envelopes of the listeners that take part in this phase.
+	 * @param fn        The lifecycle method that is called on each listener.
+	 * @return The result of this phase.
+	 * @throws Chrisliebot.ChrisliebotException If the dependencies of the given listeners contain a cycle. No listener has
+	 *                                          been called in that case.
+	 */
+	public Result run(String phase, Collection<ChrislieListener.Envelope> envelopes, Phase fn) throws Chrisliebot.ChrisliebotException {
+		var result = new Result(phase, envelopes);
+		
+		// futures are created depth first, so a cycle is detected before anything has been submitted
+		Map<ChrislieListener.Envelope, CompletableFuture<Void>> futures = new IdentityHashMap<>(envelopes.size());
+		List<Runnable> submissions = new ArrayList<>(envelopes.size());
+		for (var envelope : envelopes)
+			schedule(envelope, envelopes, futures, submissions, new ArrayList<>(), result, fn);
+		
+		var start = System.nanoTime();
+		submissions.forEach(Runnable::run);
+		CompletableFuture.allOf(futures.values().toArray(CompletableFuture[]::new))
+				.exceptionally(t -> null) // failures have already been recorded
+				.join();
+		result.wallNanos = System.nanoTime() - start;
+		
+		return result;
+	}
+	
+	private CompletableFuture<Void> schedule(ChrislieListener.Envelope envelope,
+											 Collection<ChrislieListener.Envelope> envelopes,
+											 Map<ChrislieListener.Envelope, CompletableFuture<Void>> futures,
+											 List<Runnable> submissions,
+											 List<ChrislieListener.Envelope> path,
+											 Result result,
+											 Phase fn) throws Chrisliebot.ChrisliebotException {
+		var future = futures.get(envelope);
+		if (future != null)
+			return future;
+		
+		if (path.contains(envelope))
+			throw new Chrisliebot.ChrisliebotException("listener dependencies contain a cycle: " + path);
+		path.add(envelope);
+		
+		List<CompletableFuture<Void>> dependencies = new ArrayList<>();
+		for (var clazz : envelope.listener().dependencies()) {
+			for (var other : envelopes) {
+				if (other != envelope && clazz.isInstance(other.listener()))
+					dependencies.add(schedule(other, envelopes, futures, submissions, path, result, fn));
+			}
+		}
+		path.remove(path.size() - 1);
+		
+		// listeners without dependencies are only submitted once all futures have been created
+		var gate = new CompletableFuture<Void>();
+		dependencies.add(gate);
+		submissions.add(() -> gate.complete(null));
+		
+		future = CompletableFuture.allOf(dependencies.toArray(CompletableFuture[]::new))
+				.thenRunAsync(() -> execute(envelope, result, fn), executor);
+		futures.put(envelope, future);
+		return future;
+	}
+	
+	private static void execute(ChrislieListener.Envelope envelope, Result result, Phase fn) {
+		log.trace("calling {}() on {}", result.phase, envelope);
+		var start = System.nanoTime();
+		try {
+			fn.run(envelope.listener());
+			result.durations.put(envelope, System.nanoTime() - start);
+		} catch (@SuppressWarnings("OverlyBroadCatchBlock") Exception e) {
+			result.failures.put(envelope, e);
+			
+			// fails all dependent listeners
+			throw new CompletionException(e);
+		}
+	}
+	
+	@Override
+	public void close() {
+		executor.shutdown();
+	}
+	
+	@FunctionalInterface
+	public interface Phase {
+		
+		public void run(ChrislieListener listener) throws Exception;
+	}
+	
+	public static final class Result {
+		
+		@Getter private final String phase;
+		@Getter private long wallNanos;
+		
+		private final Collection<ChrislieListener.Envelope> envelopes;
+		private final Map<ChrislieListener.Envelope, Long> durations = new ConcurrentHashMap<>();
+		private final Map<ChrislieListener.Envelope, Exception> failures = new ConcurrentHashMap<>();
+		
+		private Result(String phase, Collection<ChrislieListener.Envelope> envelopes) {
+			this.phase = phase;
+			this.envelopes = envelopes;
+		}
+		
+		/**
+		 * @return Time spent in each listener that completed this phase.
+		 */
+		public Map<ChrislieListener.Envelope, Long> durations() {
+			return Collections.unmodifiableMap(durations);
+		}
+		
+		public boolean failed() {
+			return !failures.isEmpty();
+		}
+		
+		/**
+		 * @return {@code true} if a listener failed with anything but a {@link ChrislieListener.ListenerException}, which
+		 * might have left lingering ressources.
+		 */
+		public boolean dirty() {
+			return failures.values().stream().anyMatch(e -> !(e instanceof ChrislieListener.ListenerException));
+		}
+		
+		/**
+		 * @return An exception that describes all failures of this phase, with the first failure as its cause.
+		 */
+		public Chrisliebot.ChrisliebotException exception() {
+			var skipped = envelopes.size() - durations.size() - failures.size();
+			var sb = new StringBuilder();
+			sb.append(String.format("%s() failed on %d listeners (%d skipped due to failed dependencies):", phase, failures.size(), skipped));
+			failures.forEach((envelope, e) -> sb.append("\n\t").append(envelope.source()).append(": ").append(e.getMessage()));
+			
+			var it = failures.values().iterator();
+			var exception = new Chrisliebot.ChrisliebotException(sb.toString(), it.hasNext() ? it.next() : null);
+			it.forEachRemaining(exception::addSuppressed);
+			return exception;
+		}
+	}
+}
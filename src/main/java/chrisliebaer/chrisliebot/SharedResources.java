@@ -1,21 +1,36 @@
 package chrisliebaer.chrisliebot;
 
+import chrisliebaer.chrisliebot.metrics.MetricsRegistry;
+import chrisliebaer.chrisliebot.metrics.MetricsServer;
+import chrisliebaer.chrisliebot.metrics.ResourceAccounting;
+import chrisliebaer.chrisliebot.metrics.jfr.HttpEvent;
 import chrisliebaer.chrisliebot.util.GsonValidator;
 import chrisliebaer.chrisliebot.util.VersionUtil;
 import com.google.common.util.concurrent.AbstractIdleService;
 import lombok.Getter;
 import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
+import okhttp3.Interceptor;
 import okhttp3.OkHttpClient;
+import okhttp3.Response;
 import okhttp3.logging.HttpLoggingInterceptor;
 import org.mariadb.jdbc.MariaDbPoolDataSource;
 
+import javax.management.JMException;
+import javax.management.ObjectName;
 import javax.sql.DataSource;
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
 import java.net.InetSocketAddress;
 import java.net.Proxy;
 import java.sql.SQLException;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 @Slf4j
 public class SharedResources extends AbstractIdleService {
@@ -28,12 +43,21 @@ public class SharedResources extends AbstractIdleService {
 	@Getter private OkHttpClient httpClient;
 	@Getter private ScheduledExecutorService timer;
 	@Getter private GsonValidator gson;
+	@Getter private final MetricsRegistry metrics = new MetricsRegistry();
+	@Getter private final ResourceAccounting accounting = new ResourceAccounting();
 	
 	private MariaDbPoolDataSource dataSource;
 	
-	public SharedResources(@NonNull String dataSource, @NonNull GsonValidator gson) throws SQLException {
+	private MetricsServer.Config metricsCfg;
+	private MetricsServer metricsServer;
+	
+	private ResourceAccounting.Config accountingCfg;
+	
+	public SharedResources(@NonNull String dataSource, @NonNull GsonValidator gson, @NonNull MetricsServer.Config metricsCfg, @NonNull ResourceAccounting.Config accountingCfg) throws SQLException {
 		this.dataSource = new MariaDbPoolDataSource(dataSource);
 		this.gson = gson;
+		this.metricsCfg = metricsCfg;
+		this.accountingCfg = accountingCfg;
 	}
 	
 	public DataSource dataSource() {
@@ -57,6 +81,7 @@ public class SharedResources extends AbstractIdleService {
 		
 		
 		var builder = new OkHttpClient.Builder()
+				.addInterceptor(SharedResources::traceHttpCall)
 				.addNetworkInterceptor(c -> c.proceed(c.request().newBuilder().header("User-Agent", DEFAULT_USER_AGENT).build()))
 				.addNetworkInterceptor(httpLogger);
 		
@@ -74,21 +99,133 @@ public class SharedResources extends AbstractIdleService {
 		}
 		httpClient = builder.build();
 		
-		timer = new ScheduledThreadPoolExecutor(1, r -> {
+		var timer = new AccountedTimer(accounting, r -> {
 			var t = new Thread(r, "SharedTimerExecutor");
 			t.setDaemon(true);
 			t.setUncaughtExceptionHandler((t1, e) -> log.error("uncaught exception in shared timer", e));
 			return t;
 		});
+		this.timer = timer;
+		
+		accounting.start(timer, accountingCfg);
+		registerMetrics(timer);
+		if (metricsCfg.enabled()) {
+			metricsServer = new MetricsServer(metrics, metricsCfg);
+			metricsServer.startAsync().awaitRunning();
+		}
+	}
+	
+	private static Response traceHttpCall(Interceptor.Chain chain) throws IOException {
+		var event = new HttpEvent();
+		if (!event.isEnabled())
+			return chain.proceed(chain.request());
+		
+		var request = chain.request();
+		event.method = request.method();
+		event.host = request.url().host();
+		event.path = request.url().encodedPath();
+		event.begin();
+		try {
+			var response = chain.proceed(request);
+			event.status = response.code();
+			return response;
+		} finally {
+			event.commit();
+		}
+	}
+	
+	private void registerMetrics(ScheduledThreadPoolExecutor timer) {
+		var httpDispatcher = httpClient.dispatcher();
+		var httpPool = httpClient.connectionPool();
+		metrics.gauge("chrisliebot_http_calls_running", "Outbound http calls that are currently executing.", httpDispatcher::runningCallsCount);
+		metrics.gauge("chrisliebot_http_calls_queued", "Outbound http calls that are waiting for a free slot.", httpDispatcher::queuedCallsCount);
+		metrics.gauge("chrisliebot_http_connections", "Connections in the http connection pool.", httpPool::connectionCount);
+		metrics.gauge("chrisliebot_http_connections_idle", "Idle connections in the http connection pool.", httpPool::idleConnectionCount);
+		
+		metrics.gauge("chrisliebot_timer_queue_size", "Tasks scheduled on the shared timer.", () -> timer.getQueue().size());
+		metrics.gauge("chrisliebot_timer_active", "Tasks that are currently running on the shared timer.", timer::getActiveCount);
+		
+		// the mariadb driver only exposes its pool via jmx
+		metrics.gauge("chrisliebot_db_connections_active", "Database connections that are currently in use.", () -> dbPoolAttribute("ActiveConnections"));
+		metrics.gauge("chrisliebot_db_connections_idle", "Idle database connections.", () -> dbPoolAttribute("IdleConnections"));
+		metrics.gauge("chrisliebot_db_connections", "Database connections in the pool.", () -> dbPoolAttribute("TotalConnections"));
+		metrics.gauge("chrisliebot_db_connection_requests", "Threads that are waiting for a database connection.", () -> dbPoolAttribute("ConnectionRequests"));
+		
+		var memory = ManagementFactory.getMemoryMXBean();
+		metrics.gauge("jvm_memory_heap_used_bytes", "Used heap memory.", () -> memory.getHeapMemoryUsage().getUsed());
+		metrics.gauge("jvm_memory_heap_committed_bytes", "Committed heap memory.", () -> memory.getHeapMemoryUsage().getCommitted());
+		metrics.gauge("jvm_memory_heap_max_bytes", "Maximum heap memory.", () -> memory.getHeapMemoryUsage().getMax());
+		metrics.gauge("jvm_memory_nonheap_used_bytes", "Used non-heap memory.", () -> memory.getNonHeapMemoryUsage().getUsed());
+		metrics.gauge("jvm_threads_live", "Live threads.", ManagementFactory.getThreadMXBean()::getThreadCount);
+		
+		var gcs = ManagementFactory.getGarbageCollectorMXBeans();
+		metrics.counter("jvm_gc_collections_total", "Garbage collections of all collectors.",
+				() -> gcs.stream().mapToLong(GarbageCollectorMXBean::getCollectionCount).sum());
+		metrics.counter("jvm_gc_collection_seconds_total", "Time spent in garbage collections of all collectors.",
+				() -> gcs.stream().mapToLong(GarbageCollectorMXBean::getCollectionTime).sum() / (double) TimeUnit.SECONDS.toMillis(1));
+	}
+	
+	private static double dbPoolAttribute(String attribute) {
+		try {
+			var server = ManagementFactory.getPlatformMBeanServer();
+			var names = server.queryNames(new ObjectName("org.mariadb.jdbc.pool:type=*"), null);
+			if (names.isEmpty())
+				return Double.NaN;
+			
+			long sum = 0;
+			for (var name : names)
+				sum += ((Number) server.getAttribute(name, attribute)).longValue();
+			return sum;
+		} catch (JMException e) {
+			log.debug("failed to query database pool for `{}`", attribute, e);
+			return Double.NaN;
+		}
 	}
 	
 	@Override
 	protected void shutDown() throws Chrisliebot.ChrisliebotException {
 		// remember: reverse order
+		if (metricsServer != null)
+			metricsServer.stopAsync().awaitTerminated();
+		accounting.stop();
 		timer.shutdown();
 		httpClient.dispatcher().executorService().shutdown(); // TODO: are the executors blocking? should we configure the pool by ourself?
 		httpClient.connectionPool().evictAll();
 		
 		dataSource.close();
 	}
+	
+	/**
+	 * Timer that accounts the resources used by its tasks. All other submission methods of the executor delegate to the
+	 * overridden methods.
+	 */
+	private static class AccountedTimer extends ScheduledThreadPoolExecutor {
+		
+		private final ResourceAccounting accounting;
+		
+		private AccountedTimer(ResourceAccounting accounting, ThreadFactory threadFactory) {
+			super(1, threadFactory);
+			this.accounting = accounting;
+		}
+		
+		@Override
+		public ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit) {
+			return super.schedule(accounting.wrap(command), delay, unit);
+		}
+		
+		@Override
+		public <V> ScheduledFuture<V> schedule(Callable<V> callable, long delay, TimeUnit unit) {
+			return super.schedule(accounting.wrap(callable), delay, unit);
+		}
+		
+		@Override
+		public ScheduledFuture<?> scheduleAtFixedRate(Runnable command, long initialDelay, long period, TimeUnit unit) {
+			return super.scheduleAtFixedRate(accounting.wrap(command), initialDelay, period, unit);
+		}
+		
+		@Override
+		public ScheduledFuture<?> scheduleWithFixedDelay(Runnable command, long initialDelay, long delay, TimeUnit unit) {
+			return super.scheduleWithFixedDelay(accounting.wrap(command), initialDelay, delay, unit);
+		}
+	}
 }
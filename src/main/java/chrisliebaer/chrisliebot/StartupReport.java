@@ -0,0 +1,47 @@
+package chrisliebaer.chrisliebot;
+
+import chrisliebaer.chrisliebot.command.ChrislieListener;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collects the time spent in each phase of the startup, so slow services and listeners can be spotted in the log.
+ */
+final class StartupReport {
+	
+	private final long start = System.nanoTime();
+	private final List<String> lines = new ArrayList<>();
+	
+	/**
+	 * Records a phase that has been started at the given time and just completed.
+	 *
+	 * @param name  Name of the phase.
+	 * @param start Start of the phase as returned by {@link System#nanoTime()}.
+	 */
+	public void phase(String name, long start) {
+		line(0, name, System.nanoTime() - start);
+	}
+	
+	/**
+	 * Records a listener phase along with the time spent in each listener, slowest listeners first.
+	 */
+	public void listeners(ListenerLifecycle.Result result) {
+		line(0, "listener " + result.phase() + "() on " + result.durations().size() + " listeners", result.wallNanos());
+		result.durations().entrySet().stream()
+				.sorted(Map.Entry.<ChrislieListener.Envelope, Long>comparingByValue(Comparator.reverseOrder()))
+				.forEach(e -> line(1, e.getKey().source(), e.getValue()));
+	}
+	
+	private void line(int indent, String name, long nanos) {
+		lines.add("\t".repeat(indent + 1) + String.format("%6d ms  %s", TimeUnit.NANOSECONDS.toMillis(nanos), name));
+	}
+	
+	public String format() {
+		return String.format("startup completed in %d ms:%n", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start))
+				+ String.join(System.lineSeparator(), lines);
+	}
+}
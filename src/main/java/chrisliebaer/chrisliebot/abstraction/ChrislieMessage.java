@@ -13,6 +13,16 @@ public interface ChrislieMessage extends ServiceAttached {
 	
 	public String message();
 	
+	/**
+	 * Provides features of the message text that are shared between listeners. Implementations should compute the
+	 * analysis at most once per message, the default implementation creates a new instance on every call.
+	 *
+	 * @return The analysis of {@link #message()}.
+	 */
+	public default MessageAnalysis analysis() {
+		return MessageAnalysis.of(message());
+	}
+	
 	/**
 	 * Forced invocations are special means of triggering commands. Usually done by service specific means and bypassing the usual prefix detection.
 	 *
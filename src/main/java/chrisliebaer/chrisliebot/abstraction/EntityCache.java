@@ -0,0 +1,91 @@
+package chrisliebaer.chrisliebot.abstraction;
+
+import lombok.AllArgsConstructor;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Keeps canonical wrapper instances and collection views for the entities of a service, so they don't have to be
+ * recreated for every message. Wrappers and views may become outdated once the underlying library reports a change in
+ * membership, names or modes. Services are expected to call {@link Store#invalidate(Object)} for the affected entities
+ * on these events, or {@link #invalidate()} if the entire state of the library might have changed.
+ */
+public final class EntityCache {
+	
+	private final AtomicLong generation = new AtomicLong();
+	private final List<Store<?, ?>> stores = new CopyOnWriteArrayList<>();
+	
+	/**
+	 * @return A new store that is invalidated together with all other stores of this cache.
+	 */
+	public <K, V> Store<K, V> store() {
+		var store = new Store<K, V>();
+		stores.add(store);
+		return store;
+	}
+	
+	/**
+	 * Drops everything that has been cached up to this point.
+	 */
+	public void invalidate() {
+		// entries that are inserted while clearing carry the old generation and are ignored on lookup
+		generation.incrementAndGet();
+		for (var store : stores)
+			store.map.clear();
+	}
+	
+	public final class Store<K, V> {
+		
+		private final Map<K, Entry<V>> map = new ConcurrentHashMap<>();
+		private final AtomicLong invalidations = new AtomicLong();
+		
+		private Store() {}
+		
+		/**
+		 * Returns the cached value for the given key or creates a new one. The factory must read the state of the
+		 * library within the call, otherwise a concurrent change might go unnoticed.
+		 *
+		 * @param key     The key, usually the library entity or its name.
+		 * @param factory Creates the value if there is no valid entry.
+		 * @return The cached or created value.
+		 */
+		public V get(K key, Function<? super K, ? extends V> factory) {
+			var current = generation.get();
+			var entry = map.get(key);
+			if (entry != null && entry.generation == current)
+				return entry.value;
+			
+			// racing threads might both create a value, which only costs an allocation
+			var before = invalidations.get();
+			V value = factory.apply(key);
+			var created = new Entry<>(current, value);
+			map.put(key, created);
+			
+			// the factory might have read state that was invalidated in the meantime, entries are compared by identity
+			if (invalidations.get() != before)
+				map.remove(key, created);
+			return value;
+		}
+		
+		/**
+		 * Drops the entry of the given key. Must be called after the underlying library has applied the change.
+		 */
+		public void invalidate(K key) {
+			// counted before removing, so a racing lookup either sees the removal or drops its own entry
+			invalidations.incrementAndGet();
+			map.remove(key);
+		}
+	}
+	
+	@AllArgsConstructor
+	private static final class Entry<V> {
+		
+		private final long generation;
+		private final V value;
+	}
+}
@@ -15,6 +15,7 @@ import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Optional;
 
 @Slf4j
 public class LimiterConfig {
@@ -46,9 +47,19 @@ public class LimiterConfig {
 	private boolean stripIrcFormatting;
 	
 	public static LimiterConfig of(FlexConf flex) throws ChrislieListener.ListenerException {
+		// limiter configs are never modified after creation, so frozen flex confs can hand out the same instance
+		return flex.derive(LimiterConfig.class, LimiterConfig::create)
+				.orElseThrow(() -> FlexConf.keyNotFound(FLEX_MAX_LINES));
+	}
+	
+	private static Optional<LimiterConfig> create(FlexConf flex) {
+		var maxLines = flex.getInteger(FLEX_MAX_LINES);
+		if (maxLines.isEmpty())
+			return Optional.empty();
+		
 		var cfg = new LimiterConfig();
 		cfg.offset = flex.getInteger(FLEX_OFFSET).orElse(0);
-		cfg.maxLines = flex.getIntegerOrFail(FLEX_MAX_LINES);
+		cfg.maxLines = maxLines.getAsInt();
 		cfg.stripLineBreak = flex.isSet(FLEX_STRIP_LINEBREAK);
 		cfg.appendCutNotice = flex.isSet(FLEX_CUT_NOTICE);
 		cfg.stripIrcFormatting = flex.isSet(FLEX_STRIP_IRC_FORMATTING);
@@ -56,7 +67,7 @@ public class LimiterConfig {
 		if (!flex.isSet(FLEX_OUT_OF_BAND_DISABLE))
 			cfg.outOfBand = flex.get(FLEX_OUT_OF_BAND, OutOfBandTransmission.class).orElse(null);
 		
-		return cfg;
+		return Optional.of(cfg);
 	}
 	
 	public LimiterConfig send(MessageReceiver receiver, String message) {
@@ -0,0 +1,148 @@
+package chrisliebaer.chrisliebot.abstraction;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.ToString;
+import org.nibor.autolink.LinkExtractor;
+import org.nibor.autolink.LinkSpan;
+import org.nibor.autolink.LinkType;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Features of a message text that are used by multiple listeners. Every feature is computed on first access and then
+ * shared, so listeners don't have to parse the same message over and over again. Instances are obtained via {@link
+ * ChrislieMessage#analysis()}.
+ * <p>
+ * Racing threads might compute the same feature twice, which is harmless since all results are immutable.
+ */
+public final class MessageAnalysis {
+	
+	// discord mentions in raw content, generic @name mentions and irc style highlights at the start of a message
+	private static final Pattern MENTION_PATTERN = Pattern.compile("<@!?(?<id>\\d+)>|(?:^|(?<=\\s))@(?<name>[\\w\\-\\[\\]\\\\`^{}|]+)|^(?<nick>[\\w\\-\\[\\]\\\\`^{}|]+)[:,](?=\\s|$)");
+	private static final Pattern WHITESPACE_PATTERN = Pattern.compile("\\s+");
+	
+	private final String text;
+	
+	private volatile List<Link> links;
+	private volatile List<String> mentions;
+	private volatile String normalized;
+	private int codepoints = -1; // int writes are atomic, so racing reads see either -1 or the result
+	
+	private MessageAnalysis(String text) {
+		this.text = text;
+	}
+	
+	public static MessageAnalysis of(@NonNull String text) {
+		return new MessageAnalysis(text);
+	}
+	
+	/**
+	 * @return All urls and www links in the message, in the order of their occurence.
+	 */
+	public List<Link> links() {
+		var links = this.links;
+		if (links == null) {
+			
+			// extractor is not thread safe, but we only need it once per message
+			var extractor = LinkExtractor.builder()
+					.linkTypes(EnumSet.of(LinkType.WWW, LinkType.URL))
+					.build();
+			
+			List<Link> list = new ArrayList<>();
+			for (LinkSpan span : extractor.extractLinks(text))
+				list.add(new Link(span.getType(), text.substring(span.getBeginIndex(), span.getEndIndex())));
+			this.links = links = Collections.unmodifiableList(list);
+		}
+		return links;
+	}
+	
+	/**
+	 * @param type The type of link to look for.
+	 * @return {@code true} if the message contains at least one link of the given type.
+	 */
+	public boolean hasLink(@NonNull LinkType type) {
+		for (var link : links())
+			if (link.type == type)
+				return true;
+		return false;
+	}
+	
+	/**
+	 * @return Mentioned users in the order of their occurence. Discord mentions are returned as user id, all other
+	 * mentions as plain name without decoration.
+	 */
+	public List<String> mentions() {
+		var mentions = this.mentions;
+		if (mentions == null) {
+			List<String> list = new ArrayList<>();
+			var matcher = MENTION_PATTERN.matcher(text);
+			while (matcher.find()) {
+				if (matcher.group("id") != null)
+					list.add(matcher.group("id"));
+				else if (matcher.group("name") != null)
+					list.add(matcher.group("name"));
+				else
+					list.add(matcher.group("nick"));
+			}
+			this.mentions = mentions = Collections.unmodifiableList(list);
+		}
+		return mentions;
+	}
+	
+	/**
+	 * @return The length of the message in unicode codepoints, which is closer to the length perceived by users.
+	 */
+	public int codepoints() {
+		var codepoints = this.codepoints;
+		if (codepoints < 0)
+			this.codepoints = codepoints = text.codePointCount(0, text.length());
+		return codepoints;
+	}
+	
+	/**
+	 * @return The message in unicode compatibility form, in lower case, with surrounding whitespace removed and all
+	 * other whitespace collapsed into a single space. Suitable for comparing messages, not for display.
+	 */
+	public String normalized() {
+		var normalized = this.normalized;
+		if (normalized == null) {
+			var s = Normalizer.normalize(text, Normalizer.Form.NFKC).toLowerCase(Locale.ROOT).strip();
+			this.normalized = normalized = WHITESPACE_PATTERN.matcher(s).replaceAll(" ");
+		}
+		return normalized;
+	}
+	
+	/**
+	 * Checks if the message looks like a command invocation, meaning it starts with a punctuation character that is
+	 * directly followed by a letter, like {@code !help} or {@code .np}. This is only a heuristic for listeners that
+	 * want to ignore messages meant for other bots, actual command detection is done by the dispatcher.
+	 *
+	 * @return {@code true} if the message looks like a command.
+	 */
+	public boolean looksLikeCommand() {
+		if (text.length() < 2)
+			return false;
+		
+		var prefix = text.charAt(0);
+		return prefix < 128 && !Character.isLetterOrDigit(prefix) && !Character.isWhitespace(prefix)
+				&& prefix != '@' && Character.isLetter(text.charAt(1));
+	}
+	
+	@Getter
+	@ToString
+	@AllArgsConstructor(access = AccessLevel.PRIVATE)
+	public static final class Link {
+		
+		private final LinkType type;
+		private final String text;
+	}
+}
@@ -0,0 +1,164 @@
+package chrisliebaer.chrisliebot.abstraction;
+
+import chrisliebaer.chrisliebot.util.SystemProperty;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.regex.Pattern;
+
+/**
+ * Keeps the most recent protocol lines of a service in a fixed size ring buffer. Recording a line is lock-free and
+ * only costs a single small allocation, so recording is always enabled. The buffer is written to a file when something
+ * goes wrong, which provides the protocol history of an incident without having to run with trace logging.
+ */
+@Slf4j
+public final class ProtocolRecorder {
+	
+	private static final int CAPACITY = Integer.highestOneBit(Math.max(16, SystemProperty.of("chrisliebot.protocol.capacity", 2048, Integer::parseInt)));
+	private static final File DUMP_DIRECTORY = SystemProperty.of("chrisliebot.protocol.dumps", new File("protocol-dumps"), File::new);
+	
+	// automatic dumps are limited since errors tend to come in bursts
+	private static final long AUTO_DUMP_INTERVAL = TimeUnit.MINUTES.toNanos(1);
+	
+	private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS").withZone(ZoneId.systemDefault());
+	private static final DateTimeFormatter FILE_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss").withZone(ZoneId.systemDefault());
+	
+	// credentials are removed when writing the dump, not while recording
+	private static final Pattern SENSITIVE = Pattern.compile("^(PASS|AUTHENTICATE|OPER)\\b|NickServ\\s+:?IDENTIFY", Pattern.CASE_INSENSITIVE);
+	
+	private static final Map<String, ProtocolRecorder> RECORDERS = new ConcurrentHashMap<>();
+	
+	@Getter private final String name;
+	
+	private final AtomicReferenceArray<Entry> slots = new AtomicReferenceArray<>(CAPACITY);
+	private final AtomicLong cursor = new AtomicLong();
+	private final AtomicLong lastAutoDump = new AtomicLong(System.nanoTime() - AUTO_DUMP_INTERVAL);
+	
+	private ProtocolRecorder(@NonNull String name) {
+		this.name = name;
+	}
+	
+	/**
+	 * @param name The name of the service.
+	 * @return The recorder of the given service, services that are recreated keep their recorder.
+	 */
+	public static ProtocolRecorder of(@NonNull String name) {
+		return RECORDERS.computeIfAbsent(name, ProtocolRecorder::new);
+	}
+	
+	public static Collection<ProtocolRecorder> all() {
+		return List.copyOf(RECORDERS.values());
+	}
+	
+	/**
+	 * Triggers an automatic dump of all recorders, see {@link #autoDump(String)}.
+	 */
+	public static void autoDumpAll(String reason) {
+		for (var recorder : RECORDERS.values())
+			recorder.autoDump(reason);
+	}
+	
+	public void in(String line) {
+		record('<', line);
+	}
+	
+	public void out(String line) {
+		record('>', line);
+	}
+	
+	/**
+	 * Records an event that was not received as a line of text, like a parsed gateway event.
+	 */
+	public void event(String event) {
+		record('*', event);
+	}
+	
+	private void record(char direction, String line) {
+		var seq = cursor.getAndIncrement();
+		slots.lazySet((int) (seq & (CAPACITY - 1)), new Entry(seq, System.currentTimeMillis(), direction, line));
+	}
+	
+	/**
+	 * Dumps this recorder, unless another automatic dump has been written recently. Failures are only logged.
+	 *
+	 * @param reason Short reason that will be part of the file name.
+	 */
+	public void autoDump(String reason) {
+		var now = System.nanoTime();
+		var last = lastAutoDump.get();
+		if (now - last < AUTO_DUMP_INTERVAL || !lastAutoDump.compareAndSet(last, now))
+			return;
+		
+		try {
+			var file = dump(reason);
+			log.info("dumped protocol history of `{}` due to {}: {}", name, reason, file);
+		} catch (IOException e) {
+			log.warn("failed to dump protocol history of `{}`", name, e);
+		}
+	}
+	
+	/**
+	 * Writes the current content of this recorder into a new file.
+	 *
+	 * @param reason Short reason that will be part of the file name.
+	 * @return The created file.
+	 */
+	public Path dump(String reason) throws IOException {
+		var lines = snapshot();
+		
+		var file = DUMP_DIRECTORY.toPath().resolve("%s-%s-%s.log".formatted(name, FILE_FORMAT.format(Instant.now()), reason));
+		Files.createDirectories(file.getParent());
+		Files.write(file, lines, StandardCharsets.UTF_8);
+		return file;
+	}
+	
+	private List<String> snapshot() {
+		var end = cursor.get();
+		var start = Math.max(0, end - CAPACITY);
+		
+		List<String> lines = new ArrayList<>((int) (end - start));
+		for (var seq = start; seq < end; seq++) {
+			var entry = slots.get((int) (seq & (CAPACITY - 1)));
+			
+			// slot has not been written yet or has already been overwritten by a newer line
+			if (entry == null || entry.seq != seq)
+				continue;
+			
+			var line = SENSITIVE.matcher(entry.line).find() ? "<redacted>" : entry.line;
+			lines.add(TIME_FORMAT.format(Instant.ofEpochMilli(entry.time)) + " " + entry.direction + " " + line);
+		}
+		return lines;
+	}
+	
+	private static final class Entry {
+		
+		private final long seq;
+		private final long time;
+		private final char direction;
+		private final String line;
+		
+		private Entry(long seq, long time, char direction, String line) {
+			this.seq = seq;
+			this.time = time;
+			this.direction = direction;
+			this.line = line;
+		}
+	}
+}
@@ -5,6 +5,7 @@ import chrisliebaer.chrisliebot.abstraction.ChrislieOutput;
 import chrisliebaer.chrisliebot.abstraction.PlainOutput;
 import chrisliebaer.chrisliebot.abstraction.PlainOutputImpl;
 import chrisliebaer.chrisliebot.command.ChrislieListener;
+import chrisliebaer.chrisliebot.metrics.jfr.OutputEvent;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NonNull;
@@ -148,11 +149,38 @@ public abstract class AbstractDiscordOutput<RestObject> implements ChrislieOutpu
 	}
 	
 	public CompletableFuture<RestObject> discordSend() {
-		return send(new SinkMessage());
+		var event = beginEvent(false);
+		return commitOnCompletion(event, send(new SinkMessage()));
 	}
 	
 	public CompletableFuture<RestObject> discordEdit(long messageId) {
-		return edit(new SinkMessage(), messageId);
+		var event = beginEvent(true);
+		return commitOnCompletion(event, edit(new SinkMessage(), messageId));
+	}
+	
+	private static OutputEvent beginEvent(boolean edit) {
+		var event = new OutputEvent();
+		event.type = "discord";
+		event.edit = edit;
+		event.begin();
+		return event;
+	}
+	
+	private static <T> CompletableFuture<T> commitOnCompletion(OutputEvent event, CompletableFuture<T> future) {
+		if (future == null) {
+			event.failed = true;
+			event.commit();
+			return null;
+		}
+		
+		// rest actions are completed on some jda thread, so the event covers the full round trip
+		future.whenComplete((obj, t) -> {
+			event.failed = t != null;
+			if (obj instanceof Message)
+				event.length = ((Message) obj).getContentRaw().length();
+			event.commit();
+		});
+		return future;
 	}
 	
 	protected abstract CompletableFuture<RestObject> send(SinkMessage message);
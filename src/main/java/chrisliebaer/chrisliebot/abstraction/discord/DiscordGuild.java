@@ -7,7 +7,7 @@ import lombok.ToString;
 import net.dv8tion.jda.api.entities.Guild;
 
 import java.util.Collection;
-import java.util.stream.Collectors;
+import java.util.Set;
 
 @AllArgsConstructor
 @ToString
@@ -28,8 +28,11 @@ public class DiscordGuild implements ChrislieGuild {
 	
 	@Override
 	public Collection<DiscordGuildChannel> channels() {
-		return guild.getTextChannels().stream()
-				.map(channel -> new DiscordGuildChannel(service, channel))
-				.collect(Collectors.toList());
+		return service.guildChannels(guild);
+	}
+	
+	@Override
+	public Set<DiscordUser> users() {
+		return service.guildMembers(guild);
 	}
 }
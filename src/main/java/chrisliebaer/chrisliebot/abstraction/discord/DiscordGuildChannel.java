@@ -7,7 +7,6 @@ import net.dv8tion.jda.api.entities.TextChannel;
 
 import java.util.List;
 import java.util.Optional;
-import java.util.stream.Collectors;
 
 public class DiscordGuildChannel implements DiscordChannel {
 	
@@ -26,7 +25,7 @@ public class DiscordGuildChannel implements DiscordChannel {
 	
 	@Override
 	public Optional<DiscordGuild> guild() {
-		return Optional.of(new DiscordGuild(service, channel.getGuild()));
+		return Optional.of(service.wrap(channel.getGuild()));
 	}
 	
 	@Override
@@ -36,9 +35,7 @@ public class DiscordGuildChannel implements DiscordChannel {
 	
 	@Override
 	public List<DiscordUser> users() {
-		return channel.getMembers().stream()
-				.map(member -> new DiscordUser(service, member.getUser()))
-				.collect(Collectors.toList());
+		return service.channelMembers(channel);
 	}
 	
 	@Override
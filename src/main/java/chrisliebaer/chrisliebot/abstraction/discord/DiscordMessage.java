@@ -3,6 +3,7 @@ package chrisliebaer.chrisliebot.abstraction.discord;
 import chrisliebaer.chrisliebot.abstraction.ChrislieMessage;
 import chrisliebaer.chrisliebot.abstraction.ChrislieOutput;
 import chrisliebaer.chrisliebot.abstraction.LimiterConfig;
+import chrisliebaer.chrisliebot.abstraction.MessageAnalysis;
 import lombok.Getter;
 import lombok.NonNull;
 import net.dv8tion.jda.api.events.message.MessageReceivedEvent;
@@ -14,12 +15,14 @@ public class DiscordMessage implements ChrislieMessage {
 	
 	@Getter private DiscordChannel channel;
 	
+	@Getter(lazy = true) private final MessageAnalysis analysis = MessageAnalysis.of(message());
+	
 	public DiscordMessage(@NonNull DiscordService service, @NonNull MessageReceivedEvent ev) {
 		this.service = service;
 		this.ev = ev;
 		
 		switch (ev.getChannelType()) {
-			case TEXT -> channel = new DiscordGuildChannel(service, ev.getTextChannel());
+			case TEXT -> channel = service.wrap(ev.getTextChannel());
 			case PRIVATE -> channel = new DiscordPrivateChannel(service, ev.getPrivateChannel());
 			default -> throw new RuntimeException("message was sent in unkown channel type");
 		}
@@ -27,7 +30,7 @@ public class DiscordMessage implements ChrislieMessage {
 	
 	@Override
 	public DiscordUser user() {
-		return new DiscordUser(service, ev.getAuthor());
+		return service.wrap(ev.getAuthor());
 	}
 	
 	@Override
@@ -0,0 +1,52 @@
+package chrisliebaer.chrisliebot.abstraction.discord;
+
+import lombok.NonNull;
+import net.dv8tion.jda.api.Permission;
+import net.dv8tion.jda.api.entities.Guild;
+import net.dv8tion.jda.api.entities.User;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Caches the effective guild permissions of members as raw permission bits, so permission checks don't have to walk
+ * all roles of a member. Unlike {@link chrisliebaer.chrisliebot.abstraction.EntityCache}, entries are only dropped by
+ * the events that can actually change permissions, which the service forwards to this cache.
+ */
+public final class DiscordPermissionCache {
+	
+	// raw permissions in the format of Permission.getRaw(), users that are not a member of the guild are not stored
+	private final Map<Guild, Map<User, Long>> guilds = new ConcurrentHashMap<>();
+	
+	/**
+	 * @param permissions Raw permissions as returned by {@link Permission#getRaw(Permission...)}.
+	 * @return {@code true} if the given user is a member of the given guild and has all of the given permissions.
+	 */
+	public boolean hasPermissions(@NonNull Guild guild, @NonNull User user, long permissions) {
+		var effective = guilds.computeIfAbsent(guild, g -> new ConcurrentHashMap<>()).computeIfAbsent(user, u -> {
+			var member = guild.getMember(u);
+			return member == null ? null : Permission.getRaw(member.getPermissions());
+		});
+		return effective != null && (effective & permissions) == permissions;
+	}
+	
+	/**
+	 * Drops the permissions of a single member, used if the roles or membership of a member changed.
+	 */
+	public void invalidate(@NonNull Guild guild, @NonNull User user) {
+		var members = guilds.get(guild);
+		if (members != null)
+			members.remove(user);
+	}
+	
+	/**
+	 * Drops the permissions of all members of a guild, used if roles or the guild itself changed.
+	 */
+	public void invalidate(@NonNull Guild guild) {
+		guilds.remove(guild);
+	}
+	
+	public void clear() {
+		guilds.clear();
+	}
+}
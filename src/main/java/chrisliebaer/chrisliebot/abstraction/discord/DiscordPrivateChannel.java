@@ -30,7 +30,7 @@ public class DiscordPrivateChannel implements DiscordChannel {
 	
 	@Override
 	public List<DiscordUser> users() {
-		return List.of(new DiscordUser(service, user));
+		return List.of(service.wrap(user));
 	}
 	
 	@Override
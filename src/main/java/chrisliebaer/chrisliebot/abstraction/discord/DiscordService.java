@@ -5,12 +5,15 @@ import chrisliebaer.chrisliebot.abstraction.ChrislieChannel;
 import chrisliebaer.chrisliebot.abstraction.ChrislieMessage;
 import chrisliebaer.chrisliebot.abstraction.ChrislieService;
 import chrisliebaer.chrisliebot.abstraction.ChrislieUser;
+import chrisliebaer.chrisliebot.abstraction.EntityCache;
+import chrisliebaer.chrisliebot.abstraction.ProtocolRecorder;
 import chrisliebaer.chrisliebot.abstraction.ServiceAttached;
 import chrisliebaer.chrisliebot.command.ChrislieListener;
 import chrisliebaer.chrisliebot.config.AliasSet;
 import chrisliebaer.chrisliebot.config.ContextResolver;
 import chrisliebaer.chrisliebot.config.flex.FlexConf;
 import chrisliebaer.chrisliebot.config.scope.Selector;
+import chrisliebaer.chrisliebot.metrics.jfr.DatabaseEvent;
 import chrisliebaer.chrisliebot.util.BetterScheduledService;
 import com.google.common.util.concurrent.AbstractScheduledService;
 import lombok.Getter;
@@ -22,10 +25,22 @@ import net.dv8tion.jda.api.entities.Guild;
 import net.dv8tion.jda.api.entities.Message;
 import net.dv8tion.jda.api.entities.TextChannel;
 import net.dv8tion.jda.api.entities.User;
+import net.dv8tion.jda.api.events.DisconnectEvent;
+import net.dv8tion.jda.api.events.Event;
+import net.dv8tion.jda.api.events.ExceptionEvent;
+import net.dv8tion.jda.api.events.ReconnectedEvent;
 import net.dv8tion.jda.api.events.ShutdownEvent;
+import net.dv8tion.jda.api.events.channel.text.GenericTextChannelEvent;
 import net.dv8tion.jda.api.events.guild.GuildJoinEvent;
+import net.dv8tion.jda.api.events.guild.GuildLeaveEvent;
+import net.dv8tion.jda.api.events.guild.member.GuildMemberJoinEvent;
+import net.dv8tion.jda.api.events.guild.member.GuildMemberRemoveEvent;
+import net.dv8tion.jda.api.events.guild.member.GuildMemberRoleAddEvent;
+import net.dv8tion.jda.api.events.guild.member.GuildMemberRoleRemoveEvent;
+import net.dv8tion.jda.api.events.guild.update.GuildUpdateOwnerEvent;
 import net.dv8tion.jda.api.events.interaction.SlashCommandEvent;
 import net.dv8tion.jda.api.events.message.MessageReceivedEvent;
+import net.dv8tion.jda.api.events.role.GenericRoleEvent;
 import net.dv8tion.jda.api.exceptions.ErrorResponseException;
 import net.dv8tion.jda.api.hooks.SubscribeEvent;
 import net.dv8tion.jda.api.interactions.commands.Command;
@@ -38,11 +53,14 @@ import java.sql.SQLException;
 import java.sql.Types;
 import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.CancellationException;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.function.Consumer;
@@ -57,6 +75,9 @@ public class DiscordService implements ChrislieService {
 	public static final String PREFIX_PRIVATE_CHANNEL = "P:";
 	public static final String SLASH_COMMAND_ARG_NAME = "args";
 	
+	// discord requires slash commands to be acknowledged within 3 seconds, leave some room for network latency
+	private static final long SLASH_COMMAND_DEFER_DELAY = 2000;
+	
 	@Getter private Chrisliebot bot;
 	@Getter private JDA jda;
 	@Getter private String identifier;
@@ -64,24 +85,90 @@ public class DiscordService implements ChrislieService {
 	
 	@Setter private Consumer<ChrislieMessage> sink;
 	
-	private ContextResolver ctxResolver;
+	private volatile ContextResolver ctxResolver;
 	
 	// keeps track of which guilds we have already registered our commands
 	private final Set<Long> registeredGuilds = new HashSet<>();
 	
 	private final BetterScheduledService commandUpdaterService;
 	
+	// syncing commands blocks on rest calls, so out of band syncs must not run on the shared timer
+	private final ExecutorService commandSyncExecutor;
+	
+	// gateway events are recorded by type and sequence number, the raw payload is not available without extra cost
+	private final ProtocolRecorder recorder;
+	
+	// jda entities are live objects, so wrappers only have to be dropped if memberships change or jda replaces its entities
+	private final EntityCache entities = new EntityCache();
+	private final EntityCache.Store<User, DiscordUser> users = entities.store();
+	private final EntityCache.Store<TextChannel, DiscordGuildChannel> channels = entities.store();
+	private final EntityCache.Store<Guild, DiscordGuild> guilds = entities.store();
+	private final EntityCache.Store<TextChannel, List<DiscordUser>> channelMembers = entities.store();
+	private final EntityCache.Store<Guild, List<DiscordGuildChannel>> guildChannels = entities.store();
+	private final EntityCache.Store<Guild, Set<DiscordUser>> guildMembers = entities.store();
+	
+	// permissions are only invalidated by events that can change them, so they outlive the entity cache
+	@Getter private final DiscordPermissionCache permissions = new DiscordPermissionCache();
+	
 	@SuppressWarnings("ThisEscapedInObjectConstruction")
 	public DiscordService(Chrisliebot bot, JDA jda, String identifier, boolean updateSlashCommands) {
 		this.bot = bot;
 		this.jda = jda;
 		this.identifier = identifier;
 		this.updateSlashCommands = updateSlashCommands;
+		recorder = ProtocolRecorder.of(identifier);
 		
 		jda.addEventListener(this);
 		
 		commandUpdaterService = new BetterScheduledService(this::refreshGuildCommands,
 				AbstractScheduledService.Scheduler.newFixedDelaySchedule(0, 1, TimeUnit.HOURS));
+		commandSyncExecutor = Executors.newSingleThreadExecutor(r -> {
+			var t = new Thread(r, "DiscordCommandSync-" + identifier);
+			t.setDaemon(true);
+			return t;
+		});
+	}
+	
+	/**
+	 * @return The canonical wrapper for the given user or a new wrapper if the user shares no guild with us.
+	 */
+	DiscordUser wrap(User user) {
+		// only guild events invalidate users, so users that are only seen in private messages would never be dropped
+		if (user.getMutualGuilds().isEmpty())
+			return new DiscordUser(this, user);
+		return users.get(user, u -> new DiscordUser(this, u));
+	}
+	
+	/**
+	 * @return The canonical wrapper for the given channel.
+	 */
+	DiscordGuildChannel wrap(TextChannel channel) {
+		return channels.get(channel, c -> new DiscordGuildChannel(this, c));
+	}
+	
+	/**
+	 * @return The canonical wrapper for the given guild.
+	 */
+	DiscordGuild wrap(Guild guild) {
+		return guilds.get(guild, g -> new DiscordGuild(this, g));
+	}
+	
+	List<DiscordUser> channelMembers(TextChannel channel) {
+		return channelMembers.get(channel, c -> c.getMembers().stream()
+				.map(member -> wrap(member.getUser()))
+				.collect(Collectors.toUnmodifiableList()));
+	}
+	
+	List<DiscordGuildChannel> guildChannels(Guild guild) {
+		return guildChannels.get(guild, g -> g.getTextChannels().stream()
+				.map(this::wrap)
+				.collect(Collectors.toUnmodifiableList()));
+	}
+	
+	Set<DiscordUser> guildMembers(Guild guild) {
+		return guildMembers.get(guild, g -> g.getMembers().stream()
+				.map(member -> wrap(member.getUser()))
+				.collect(Collectors.toUnmodifiableSet()));
 	}
 	
 	@Override
@@ -93,7 +180,7 @@ public class DiscordService implements ChrislieService {
 	public Optional<ChrislieChannel> channel(String identifier) {
 		if (identifier.startsWith(PREFIX_GUILD_CHANNEL)) {
 			var channel = jda.getGuildChannelById(identifier.substring(PREFIX_GUILD_CHANNEL.length()));
-			return channel == null ? Optional.empty() : Optional.of(new DiscordGuildChannel(this, (TextChannel) channel));
+			return channel == null ? Optional.empty() : Optional.of(wrap((TextChannel) channel));
 		}
 		if (identifier.startsWith(PREFIX_PRIVATE_CHANNEL)) {
 			var user = jda.getUserById(identifier.substring(PREFIX_PRIVATE_CHANNEL.length()));
@@ -117,18 +204,18 @@ public class DiscordService implements ChrislieService {
 	@Override
 	public Optional<DiscordUser> user(String identifier) {
 		User user = jda.getUserById(identifier);
-		return user == null ? Optional.empty() : Optional.of(new DiscordUser(this, user));
+		return user == null ? Optional.empty() : Optional.of(wrap(user));
 	}
 	
 	@Override
 	public Optional<DiscordGuild> guild(String identifier) {
 		return Optional.ofNullable(jda.getGuildById(identifier))
-				.map(guild -> new DiscordGuild(this, guild));
+				.map(this::wrap);
 	}
 	
 	@Override
 	public ChrislieUser botUser() {
-		return new DiscordUser(this, jda.getSelfUser());
+		return wrap(jda.getSelfUser());
 	}
 	
 	@SubscribeEvent
@@ -143,10 +230,17 @@ public class DiscordService implements ChrislieService {
 	
 	@Override
 	public void announceResolver(@NonNull ContextResolver ctxResolver) {
+		var previous = this.ctxResolver;
 		this.ctxResolver = ctxResolver;
 		
 		if (!commandUpdaterService.isRunning()) {
 			commandUpdaterService.startAsync();
+		} else if (previous != ctxResolver) {
+			// config has been reloaded and commands might have changed, so every guild needs to be synced again
+			synchronized (registeredGuilds) {
+				registeredGuilds.clear();
+			}
+			commandSyncExecutor.execute(this::refreshGuildCommands);
 		}
 	}
 	
@@ -196,7 +290,7 @@ public class DiscordService implements ChrislieService {
 		var existing = guild.retrieveCommands().submit().get().stream().map(Command::getName).collect(Collectors.toSet());
 		
 		var update = guild.updateCommands();
-		var chrislieGuild = new DiscordGuild(this, guild);
+		var chrislieGuild = wrap(guild);
 		
 		var ctx = ctxResolver.resolve(Selector::check, chrislieGuild);
 		var refs = ctx.listeners().values();
@@ -259,9 +353,94 @@ public class DiscordService implements ChrislieService {
 		}
 	}
 	
+	@SubscribeEvent
+	public void onGatewayEvent(Event ev) {
+		recorder.event(ev.getClass().getSimpleName() + " #" + ev.getResponseNumber());
+	}
+	
+	@SubscribeEvent
+	public void onDisconnect(DisconnectEvent ev) {
+		entities.invalidate();
+		permissions.clear();
+		recorder.event("disconnected with close code " + ev.getCloseCode());
+		recorder.autoDump("disconnect");
+	}
+	
+	// jda might replace all entities if the session could not be resumed
+	@SubscribeEvent
+	public void onReconnect(ReconnectedEvent ev) {
+		entities.invalidate();
+		permissions.clear();
+	}
+	
+	@SubscribeEvent
+	public void onMemberJoin(GuildMemberJoinEvent ev) {
+		invalidateMembers(ev.getGuild());
+		permissions.invalidate(ev.getGuild(), ev.getUser());
+	}
+	
+	@SubscribeEvent
+	public void onMemberRemove(GuildMemberRemoveEvent ev) {
+		invalidateMembers(ev.getGuild());
+		permissions.invalidate(ev.getGuild(), ev.getUser());
+		
+		// wrapper is still valid while the user shares another guild with us
+		if (ev.getUser().getMutualGuilds().isEmpty())
+			users.invalidate(ev.getUser());
+	}
+	
+	@SubscribeEvent
+	public void onMemberRoleAdd(GuildMemberRoleAddEvent ev) {
+		invalidateMembers(ev.getGuild());
+		permissions.invalidate(ev.getGuild(), ev.getUser());
+	}
+	
+	@SubscribeEvent
+	public void onMemberRoleRemove(GuildMemberRoleRemoveEvent ev) {
+		invalidateMembers(ev.getGuild());
+		permissions.invalidate(ev.getGuild(), ev.getUser());
+	}
+	
+	// covers creation, deletion and permission updates of roles
+	@SubscribeEvent
+	public void onRoleChange(GenericRoleEvent ev) {
+		invalidateMembers(ev.getGuild());
+		permissions.invalidate(ev.getGuild());
+	}
+	
+	// the owner has all permissions regardless of roles
+	@SubscribeEvent
+	public void onOwnerChange(GuildUpdateOwnerEvent ev) {permissions.invalidate(ev.getGuild());}
+	
+	@SubscribeEvent
+	public void onTextChannelChange(GenericTextChannelEvent ev) {
+		channels.invalidate(ev.getChannel());
+		channelMembers.invalidate(ev.getChannel());
+		guildChannels.invalidate(ev.getGuild());
+	}
+	
+	// channel member lists are derived from the roles of all members, so they have to be dropped along with the guild members
+	private void invalidateMembers(Guild guild) {
+		guildMembers.invalidate(guild);
+		guild.getTextChannels().forEach(channelMembers::invalidate);
+	}
+	
+	// joining or leaving a guild affects all of its channels and members, but is rare enough to simply drop everything
+	@SubscribeEvent
+	public void onGuildLeave(GuildLeaveEvent ev) {
+		entities.invalidate();
+		permissions.invalidate(ev.getGuild());
+	}
+	
+	@SubscribeEvent
+	public void onException(ExceptionEvent ev) {
+		recorder.autoDump("error");
+	}
+	
 	@SubscribeEvent
 	public void onGuildJoin(GuildJoinEvent ev) {
-		refreshGuildCommands();
+		entities.invalidate();
+		commandSyncExecutor.execute(this::refreshGuildCommands);
 	}
 	
 	@SubscribeEvent
@@ -276,9 +455,15 @@ public class DiscordService implements ChrislieService {
 		
 		sink.accept(slashCommand);
 		
-		// if invoked command is doing asynchronous processing, we need to acknowledge the message ourself
-		if (!ev.isAcknowledged())
-			ev.deferReply().submit();
+		/* dispatcher is processing the command asynchronously, so we need to acknowledge the message ourself if the command
+		 * didn't reply in time, deferring right away would make the reply public before the command could mark it as error
+		 */
+		bot.sharedResources().timer().schedule(() -> {
+			synchronized (ev) {
+				if (!ev.isAcknowledged())
+					ev.deferReply().submit();
+			}
+		}, SLASH_COMMAND_DEFER_DELAY, TimeUnit.MILLISECONDS);
 	}
 	
 	@Override
@@ -296,6 +481,7 @@ public class DiscordService implements ChrislieService {
 		jda.addEventListener(helper);
 		if (commandUpdaterService.isRunning())
 			commandUpdaterService.stopAsync().awaitTerminated();
+		commandSyncExecutor.shutdownNow();
 		jda.removeEventListener(this);
 		jda.shutdownNow();
 		
@@ -327,6 +513,7 @@ public class DiscordService implements ChrislieService {
 						`sourceContent` = ?
 				""";
 		
+		var event = DatabaseEvent.start("discord.trace");
 		try (var conn = bot.sharedResources().dataSource().getConnection(); var stmt = conn.prepareStatement(sql)) {
 			stmt.setLong(1, result.getChannel().getIdLong());
 			stmt.setLong(2, result.getIdLong());
@@ -355,6 +542,8 @@ public class DiscordService implements ChrislieService {
 			stmt.executeUpdate();
 		} catch (SQLException e) {
 			log.error("error inserting message trace to database", e);
+		} finally {
+			event.commit();
 		}
 	}
 	
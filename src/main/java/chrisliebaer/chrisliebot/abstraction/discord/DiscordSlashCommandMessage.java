@@ -29,7 +29,7 @@ public class DiscordSlashCommandMessage implements ChrislieMessage {
 		this.ev = ev;
 		
 		switch (ev.getChannelType()) {
-			case TEXT -> channel = new DiscordGuildChannel(service, ev.getTextChannel());
+			case TEXT -> channel = service.wrap(ev.getTextChannel());
 			case PRIVATE -> channel = new DiscordPrivateChannel(service, ev.getPrivateChannel());
 			default -> throw new RuntimeException("message was sent in unkown channel type");
 		}
@@ -45,7 +45,7 @@ public class DiscordSlashCommandMessage implements ChrislieMessage {
 	
 	@Override
 	public DiscordUser user() {
-		return new DiscordUser(service, ev.getUser());
+		return service.wrap(ev.getUser());
 	}
 	
 	@Override
@@ -59,8 +59,10 @@ public class DiscordSlashCommandMessage implements ChrislieMessage {
 			@Override
 			protected CompletableFuture<Message> send(AbstractDiscordOutput<Message>.SinkMessage message) {
 				// file uploads my cause delays, so we have to ack message in all cases
-				if (!ev.isAcknowledged()) {
-					ev.deferReply(isError).queue();
+				synchronized (ev) {
+					if (!ev.isAcknowledged()) {
+						ev.deferReply(isError).queue();
+					}
 				}
 				var hook = ev.getHook();
 				
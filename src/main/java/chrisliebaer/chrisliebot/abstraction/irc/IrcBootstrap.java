@@ -51,9 +51,10 @@ public class IrcBootstrap implements ServiceBootstrap {
 		configureConnection(builder);
 		
 		// protocol level logging
-		IrcLogger.attach(identifier, builder);
+		var protocolLogger = IrcLogger.attach(identifier, builder);
 		
 		Client client = builder.build();
+		client.getEventManager().registerEventListener(protocolLogger);
 		
 		// try to enable echo capability so we can react to our own messages
 		client.getEventManager().registerEventListener(new EchoCapHandler());
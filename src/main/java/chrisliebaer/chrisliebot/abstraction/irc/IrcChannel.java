@@ -1,6 +1,5 @@
 package chrisliebaer.chrisliebot.abstraction.irc;
 
-import chrisliebaer.chrisliebot.C;
 import chrisliebaer.chrisliebot.abstraction.ChrislieChannel;
 import chrisliebaer.chrisliebot.abstraction.LimiterConfig;
 import com.google.common.base.Objects;
@@ -9,8 +8,6 @@ import org.kitteh.irc.client.library.element.Channel;
 
 import java.util.List;
 import java.util.Optional;
-import java.util.regex.Pattern;
-import java.util.stream.Collectors;
 
 public class IrcChannel implements ChrislieChannel {
 	
@@ -56,20 +53,18 @@ public class IrcChannel implements ChrislieChannel {
 	
 	@Override
 	public List<IrcUser> users() {
-		return channel.getUsers().stream()
-				.map(user -> new IrcUser(service, user))
-				.collect(Collectors.toList());
+		return service.channelUsers(channel);
 	}
 	
 	@Override
 	public Optional<IrcUser> user(String identifier) {
-		return service.userByPrefixedIdentifier(identifier, channel.getUsers().stream()).map(user -> new IrcUser(service, user));
+		return service.userByPrefixedIdentifier(identifier, channel.getUsers().stream()).map(service::wrap);
 	}
 	
 	@Override
 	public Optional<IrcUser> resolve(String callName) {
 		return channel.getUser(callName)
-				.map(user -> new IrcUser(service, user))
+				.map(service::wrap)
 				.or(() -> user(callName));
 	}
 	
@@ -90,15 +85,6 @@ public class IrcChannel implements ChrislieChannel {
 	 * @return The escaped string.
 	 */
 	public String escapeNicks(String s) {
-		Pattern nickPattern = Pattern.compile(
-				channel.getNicknames().stream().map(Pattern::quote).collect(Collectors.joining("|")),
-				Pattern.CASE_INSENSITIVE);
-		return nickPattern.matcher(s).replaceAll(result -> {
-			var nickname = result.group();
-			if (nickname.length() <= 1)
-				return nickname;
-			
-			return nickname.substring(0, 1) + C.ZERO_WIDTH_NO_BREAK_SPACE + nickname.substring(1);
-		});
+		return service.nickMatcher(channel).escape(s);
 	}
 }
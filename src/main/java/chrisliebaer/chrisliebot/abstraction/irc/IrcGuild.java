@@ -2,23 +2,34 @@ package chrisliebaer.chrisliebot.abstraction.irc;
 
 import chrisliebaer.chrisliebot.abstraction.ChrislieGuild;
 import lombok.Getter;
-import org.kitteh.irc.client.library.element.Channel;
 
 import java.util.Collection;
-import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class IrcGuild implements ChrislieGuild {
 	
 	@Getter private IrcService service;
 	@Getter private String identifier;
 	
-	private List<Channel> channels;
+	// names of the channels of this guild that we are in, maintained by the service
+	private final Set<String> channels = ConcurrentHashMap.newKeySet();
 	
-	public IrcGuild(IrcService service, String identifier, List<Channel> channels) {
+	IrcGuild(IrcService service, String identifier) {
 		this.service = service;
 		this.identifier = identifier;
-		this.channels = channels;
+	}
+	
+	void join(String channel) {
+		channels.add(channel);
+	}
+	
+	void part(String channel) {
+		channels.remove(channel);
+	}
+	
+	void clear() {
+		channels.clear();
 	}
 	
 	@Override
@@ -28,8 +39,11 @@ public class IrcGuild implements ChrislieGuild {
 	
 	@Override
 	public Collection<IrcChannel> channels() {
-		return channels.stream()
-				.map(channel -> new IrcChannel(service, channel, this))
-				.collect(Collectors.toList());
+		return service.guildChannels(identifier, channels);
+	}
+	
+	@Override
+	public Set<IrcUser> users() {
+		return service.guildUsers(this);
 	}
 }
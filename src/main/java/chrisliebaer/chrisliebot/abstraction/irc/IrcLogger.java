@@ -1,41 +1,71 @@
 package chrisliebaer.chrisliebot.abstraction.irc;
 
-import lombok.AllArgsConstructor;
+import chrisliebaer.chrisliebot.abstraction.ProtocolRecorder;
 import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
+import net.engio.mbassy.listener.Handler;
 import org.kitteh.irc.client.library.Client;
+import org.kitteh.irc.client.library.event.connection.ClientConnectionEndedEvent;
 import org.slf4j.MDC;
 
+/**
+ * Records every protocol line in the {@link ProtocolRecorder} of the service. Lines are only logged if trace logging is
+ * enabled, otherwise they end up in a dump once the connection fails.
+ */
 @Slf4j
-@AllArgsConstructor
 public final class IrcLogger {
 	
 	public final String name;
+	private final ProtocolRecorder recorder;
 	
-	public static void attach(@NonNull String name, @NonNull Client.Builder builder) {
+	private IrcLogger(String name) {
+		this.name = name;
+		recorder = ProtocolRecorder.of(name);
+	}
+	
+	/**
+	 * Attaches a new logger to the given client builder. The returned instance should be registered as event listener
+	 * on the built client, so the protocol history is dumped when the connection is lost.
+	 */
+	public static IrcLogger attach(@NonNull String name, @NonNull Client.Builder builder) {
 		var logger = new IrcLogger(name);
 		
 		builder.listeners()
 				.exception(logger::error)
 				.input(logger::in)
 				.output(logger::out);
+		
+		return logger;
+	}
+	
+	@Handler
+	public void onConnectionEnded(ClientConnectionEndedEvent ev) {
+		recorder.autoDump("disconnect");
 	}
 	
 	private void error(Throwable t) {
 		runMdc(() -> log.error("error in irc library", t));
+		recorder.autoDump("error");
 	}
 	
 	private void in(String s) {
-		runMdc(() -> log.trace("<<< {}", s));
+		recorder.in(s);
+		if (log.isTraceEnabled())
+			runMdc(() -> log.trace("<<< {}", s));
 	}
 	
 	private void out(String s) {
-		runMdc(() -> log.trace(">>> {}", s));
+		recorder.out(s);
+		if (log.isTraceEnabled())
+			runMdc(() -> log.trace(">>> {}", s));
 	}
 	
 	private void runMdc(Runnable r) {
 		MDC.put("service", name);
-		r.run();
-		MDC.remove("service");
+		try {
+			r.run();
+		} finally {
+			MDC.remove("service");
+		}
 	}
 }
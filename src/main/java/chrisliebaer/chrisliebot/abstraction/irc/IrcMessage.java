@@ -2,6 +2,7 @@ package chrisliebaer.chrisliebot.abstraction.irc;
 
 import chrisliebaer.chrisliebot.abstraction.ChrislieChannel;
 import chrisliebaer.chrisliebot.abstraction.ChrislieMessage;
+import chrisliebaer.chrisliebot.abstraction.MessageAnalysis;
 import lombok.Getter;
 import lombok.NonNull;
 import org.kitteh.irc.client.library.event.channel.ChannelMessageEvent;
@@ -14,6 +15,8 @@ public class IrcMessage implements ChrislieMessage {
 	@Getter private ChrislieChannel channel; // we have no irc abstraction that combines channels and private messages
 	@Getter private String message;
 	
+	@Getter(lazy = true) private final MessageAnalysis analysis = MessageAnalysis.of(message);
+	
 	public IrcMessage(@NonNull IrcService service,
 					  @NonNull IrcUser user,
 					  @NonNull ChrislieChannel channel,
@@ -26,17 +29,15 @@ public class IrcMessage implements ChrislieMessage {
 	
 	public static IrcMessage of(IrcService service, PrivateMessageEvent ev) {
 		return new IrcMessage(service,
-				new IrcUser(service, ev.getActor()),
+				service.wrap(ev.getActor()),
 				new IrcPrivateChannel(service, ev.getActor()),
 				ev.getMessage());
 	}
 	
 	public static IrcMessage of(IrcService service, ChannelMessageEvent ev) {
-		var channel = ev.getChannel();
-		var guild = service.channelToGuild(channel);
 		return new IrcMessage(service,
-				new IrcUser(service, ev.getActor()),
-				new IrcChannel(service, channel, guild.orElse(null)),
+				service.wrap(ev.getActor()),
+				service.wrap(ev.getChannel()),
 				ev.getMessage());
 	}
 }
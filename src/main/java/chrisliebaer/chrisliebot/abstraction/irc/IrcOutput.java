@@ -6,6 +6,7 @@ import chrisliebaer.chrisliebot.abstraction.PlainOutput;
 import chrisliebaer.chrisliebot.abstraction.PlainOutput.PlainOutputSubstituion;
 import chrisliebaer.chrisliebot.abstraction.PlainOutputImpl;
 import chrisliebaer.chrisliebot.abstraction.PlainOutputSubstituionImpl;
+import chrisliebaer.chrisliebot.metrics.jfr.OutputEvent;
 import lombok.NonNull;
 import org.apache.commons.lang.text.StrLookup;
 import org.jetbrains.annotations.NotNull;
@@ -163,6 +164,16 @@ public class IrcOutput implements ChrislieOutput {
 	
 	@Override
 	public void send() {
-		sink.accept(converter.get());
+		var event = new OutputEvent();
+		event.begin();
+		
+		var s = converter.get();
+		sink.accept(s);
+		
+		if (event.shouldCommit()) {
+			event.type = "irc";
+			event.length = s.length();
+			event.commit();
+		}
 	}
 }
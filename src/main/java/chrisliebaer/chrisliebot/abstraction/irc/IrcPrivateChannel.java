@@ -19,7 +19,7 @@ public class IrcPrivateChannel implements ChrislieChannel {
 	
 	public IrcPrivateChannel(IrcService service, User user) {
 		this.service = service;
-		this.user = new IrcUser(service, user);
+		this.user = service.wrap(user);
 	}
 	
 	@Override
@@ -59,7 +59,7 @@ public class IrcPrivateChannel implements ChrislieChannel {
 	
 	@Override
 	public Optional<IrcUser> user(String identifier) {
-		return service.userByPrefixedIdentifier(identifier, Stream.of(user.user())).map(u -> new IrcUser(service, u));
+		return service.userByPrefixedIdentifier(identifier, Stream.of(user.user())).map(service::wrap);
 	}
 	
 	@Override
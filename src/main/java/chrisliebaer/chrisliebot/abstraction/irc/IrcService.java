@@ -5,6 +5,7 @@ import chrisliebaer.chrisliebot.abstraction.ChrislieChannel;
 import chrisliebaer.chrisliebot.abstraction.ChrislieMessage;
 import chrisliebaer.chrisliebot.abstraction.ChrislieService;
 import chrisliebaer.chrisliebot.abstraction.ChrislieUser;
+import chrisliebaer.chrisliebot.abstraction.EntityCache;
 import chrisliebaer.chrisliebot.abstraction.ServiceAttached;
 import com.google.common.collect.Multimap;
 import lombok.Getter;
@@ -15,13 +16,31 @@ import net.engio.mbassy.listener.Handler;
 import org.kitteh.irc.client.library.Client;
 import org.kitteh.irc.client.library.element.Channel;
 import org.kitteh.irc.client.library.element.User;
+import org.kitteh.irc.client.library.event.channel.ChannelJoinEvent;
+import org.kitteh.irc.client.library.event.channel.ChannelKickEvent;
 import org.kitteh.irc.client.library.event.channel.ChannelMessageEvent;
+import org.kitteh.irc.client.library.event.channel.ChannelModeEvent;
+import org.kitteh.irc.client.library.event.channel.ChannelNamesUpdatedEvent;
+import org.kitteh.irc.client.library.event.channel.ChannelPartEvent;
+import org.kitteh.irc.client.library.event.channel.ChannelTopicEvent;
+import org.kitteh.irc.client.library.event.channel.ChannelUsersUpdatedEvent;
 import org.kitteh.irc.client.library.event.connection.ClientConnectionEndedEvent;
 import org.kitteh.irc.client.library.event.user.PrivateMessageEvent;
+import org.kitteh.irc.client.library.event.user.UserAccountStatusEvent;
+import org.kitteh.irc.client.library.event.user.UserAwayMessageEvent;
+import org.kitteh.irc.client.library.event.user.UserHostnameChangeEvent;
+import org.kitteh.irc.client.library.event.user.UserNickChangeEvent;
+import org.kitteh.irc.client.library.event.user.UserQuitEvent;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 import java.util.function.Predicate;
 import java.util.regex.Pattern;
@@ -47,6 +66,8 @@ public class IrcService implements ChrislieService {
 	
 	public static final String PREFIX_USER_BY_NICKNAME = "NICK:";
 	
+	private static final long USER_INDEX_HEAL_INTERVAL = TimeUnit.MINUTES.toMillis(5);
+	
 	@Getter private final Chrisliebot bot;
 	@Getter private final Client client;
 	@Getter private final String identifier;
@@ -55,30 +76,120 @@ public class IrcService implements ChrislieService {
 	
 	@Setter private Consumer<ChrislieMessage> sink;
 	
+	// kitteh hands out immutable snapshots, so wrappers of affected channels and users are dropped on every change of their state
+	private final EntityCache entities = new EntityCache();
+	private final EntityCache.Store<String, IrcUser> users = entities.store();
+	private final EntityCache.Store<String, IrcChannel> channels = entities.store();
+	private final EntityCache.Store<String, List<IrcUser>> channelUsers = entities.store();
+	private final EntityCache.Store<String, List<IrcChannel>> guildChannels = entities.store();
+	private final EntityCache.Store<String, Set<IrcUser>> guildUsers = entities.store();
+	
+	// allows looking up users without visiting every user of every channel
+	private final IrcUserIndex userIndex;
+	private ScheduledFuture<?> healTask;
+	
+	// guild patterns are fixed for the lifetime of this service, so each channel name only has to be matched once
+	private final Map<String, List<String>> guildsByChannel = new ConcurrentHashMap<>();
+	
+	// guilds are kept for the lifetime of this service and track the channels we are in
+	private final Map<String, IrcGuild> guilds = new ConcurrentHashMap<>();
+	
+	// escaping nicknames in outgoing messages is expensive in large channels, so matchers are kept and updated from events
+	private final Map<String, NickMatcher> nickMatchers = new ConcurrentHashMap<>();
+	
 	public IrcService(@NonNull Chrisliebot bot, @NonNull Client client, @NonNull String identifier, Multimap<String, Pattern> guildMap, Set<String> ignore) {
 		this.bot = bot;
 		this.client = client;
 		this.identifier = identifier;
 		this.guildMap = guildMap;
 		this.ignore = ignore;
+		userIndex = new IrcUserIndex(client);
 	}
 	
+	// a channel may be part of multiple guilds, but only the first matching guild is exposed by the channel itself
 	protected Optional<IrcGuild> channelToGuild(Channel channel) {
-		var channelName = channel.getName();
-		for (var e : guildMap.asMap().entrySet()) {
-			var name = e.getKey();
-			for (var pattern : e.getValue()) {
-				if (pattern.matcher(channelName).find())
-					return guild(name);
+		var identifiers = guildIdentifiers(channel.getName());
+		return identifiers.isEmpty() ? Optional.empty() : guild(identifiers.get(0));
+	}
+	
+	/**
+	 * @return The identifiers of all guilds whose patterns match the given channel, in order of the guild config.
+	 */
+	private List<String> guildIdentifiers(String channelName) {
+		return guildsByChannel.computeIfAbsent(key(channelName), k -> {
+			List<String> identifiers = new ArrayList<>(1);
+			for (var e : guildMap.asMap().entrySet()) {
+				for (var pattern : e.getValue()) {
+					if (pattern.matcher(channelName).find()) {
+						identifiers.add(e.getKey());
+						break;
+					}
+				}
 			}
-		}
-		return Optional.empty();
+			return List.copyOf(identifiers);
+		});
+	}
+	
+	/**
+	 * @return The canonical wrapper for the given user, which is shared until the next change of channel or user state.
+	 */
+	IrcUser wrap(User user) {
+		return users.get(key(user.getNick()), k -> new IrcUser(this, user));
+	}
+	
+	/**
+	 * @return The canonical wrapper for the given channel, which is shared until the next change of channel or user
+	 * state.
+	 */
+	IrcChannel wrap(Channel channel) {
+		return channels.get(key(channel.getName()), k -> new IrcChannel(this, channel, channelToGuild(channel).orElse(null)));
+	}
+	
+	List<IrcUser> channelUsers(Channel channel) {
+		// wrapper might have been held on to by a listener, so the current snapshot is used if there is one
+		return channelUsers.get(key(channel.getName()), k -> client.getChannel(channel.getName()).orElse(channel).getUsers().stream()
+				.map(this::wrap)
+				.collect(Collectors.toUnmodifiableList()));
+	}
+	
+	List<IrcChannel> guildChannels(String identifier, Collection<String> channels) {
+		return guildChannels.get(identifier, k -> channels.stream()
+				.map(client::getChannel)
+				.flatMap(Optional::stream)
+				.map(this::wrap)
+				.collect(Collectors.toUnmodifiableList()));
+	}
+	
+	Set<IrcUser> guildUsers(IrcGuild guild) {
+		return guildUsers.get(guild.identifier(), k -> guild.channels().stream()
+				.map(IrcChannel::users)
+				.flatMap(Collection::stream)
+				.collect(Collectors.toUnmodifiableSet()));
+	}
+	
+	NickMatcher nickMatcher(Channel channel) {
+		return nickMatchers.computeIfAbsent(key(channel.getName()),
+				k -> new NickMatcher(client.getChannel(channel.getName()).orElse(channel).getNicknames()));
+	}
+	
+	private void updateNickMatcher(Channel channel, Consumer<NickMatcher> fn) {
+		var matcher = nickMatchers.get(key(channel.getName()));
+		if (matcher != null)
+			fn.accept(matcher);
+	}
+	
+	private String key(String name) {
+		return client.getServerInfo().getCaseMapping().toLowerCase(name);
 	}
 	
 	@Override
 	public void awaitReady() throws Exception {
 		client.getEventManager().registerEventListener(this);
 		
+		// events may get lost during reconnects, so the user index is compared with the client state from time to time
+		healTask = bot.sharedResources().timer().scheduleWithFixedDelay(userIndex::heal,
+				USER_INDEX_HEAL_INTERVAL, USER_INDEX_HEAL_INTERVAL, TimeUnit.MILLISECONDS);
+		
 		// TODO: check if and how we can ensure we are somewhat ready for connections
 	}
 	
@@ -104,6 +215,11 @@ public class IrcService implements ChrislieService {
 	
 	@Handler
 	public void onDisconnect(ClientConnectionEndedEvent ev) {
+		entities.invalidate();
+		userIndex.clear();
+		guilds.values().forEach(IrcGuild::clear);
+		nickMatchers.clear();
+		
 		if (ev.canAttemptReconnect()) {
 			ev.getCause().ifPresentOrElse(
 					e -> log.info("service {} lost connection, attempting reconnect", identifier, e),
@@ -114,6 +230,136 @@ public class IrcService implements ChrislieService {
 		}
 	}
 	
+	@Handler
+	public void onJoin(ChannelJoinEvent ev) {
+		userIndex.add(ev.getUser(), ev.getChannel());
+		if (client.isUser(ev.getUser()))
+			joinedGuildChannel(ev.getChannel().getName(), true);
+		else
+			updateNickMatcher(ev.getChannel(), m -> m.add(ev.getUser().getNick()));
+		
+		// wrappers are rebuilt from our own state, so it has to be updated before they are dropped
+		invalidateMembership(ev.getUser(), ev.getChannel());
+	}
+	
+	@Handler
+	public void onPart(ChannelPartEvent ev) {
+		if (client.isUser(ev.getUser())) {
+			userIndex.drop(ev.getChannel().getName());
+			joinedGuildChannel(ev.getChannel().getName(), false);
+			nickMatchers.remove(key(ev.getChannel().getName()));
+		} else {
+			userIndex.remove(ev.getUser(), ev.getChannel());
+			updateNickMatcher(ev.getChannel(), m -> m.remove(ev.getUser().getNick()));
+		}
+		invalidateMembership(ev.getUser(), ev.getChannel());
+	}
+	
+	@Handler
+	public void onKick(ChannelKickEvent ev) {
+		if (client.isUser(ev.getTarget())) {
+			userIndex.drop(ev.getChannel().getName());
+			joinedGuildChannel(ev.getChannel().getName(), false);
+			nickMatchers.remove(key(ev.getChannel().getName()));
+		} else {
+			userIndex.remove(ev.getTarget(), ev.getChannel());
+			updateNickMatcher(ev.getChannel(), m -> m.remove(ev.getTarget().getNick()));
+		}
+		invalidateMembership(ev.getTarget(), ev.getChannel());
+	}
+	
+	private void invalidateMembership(User user, Channel channel) {
+		// joining or leaving a channel changes the channel list of every user we share it with, but we rarely do that
+		if (client.isUser(user)) {
+			entities.invalidate();
+			return;
+		}
+		invalidateUser(user);
+		invalidateChannel(channel.getName());
+	}
+	
+	// wrappers of a user are part of the user lists of all channels and guilds the user is in
+	private void invalidateUser(User user) {
+		users.invalidate(key(user.getNick()));
+		user.getChannels().forEach(this::invalidateChannel);
+	}
+	
+	private void invalidateChannel(String channel) {
+		channels.invalidate(key(channel));
+		channelUsers.invalidate(key(channel));
+		for (var identifier : guildIdentifiers(channel)) {
+			guildChannels.invalidate(identifier);
+			guildUsers.invalidate(identifier);
+		}
+	}
+	
+	// guilds that have not been created yet will pick up their channels from the client state once they are created
+	private void joinedGuildChannel(String channel, boolean joined) {
+		for (var identifier : guildIdentifiers(channel)) {
+			var guild = guilds.get(identifier);
+			if (guild == null)
+				continue;
+			
+			if (joined)
+				guild.join(key(channel));
+			else
+				guild.part(key(channel));
+		}
+		
+		// channels we left are unlikely to be looked up again
+		if (!joined)
+			guildsByChannel.remove(key(channel));
+	}
+	
+	@Handler
+	public void onChannelMode(ChannelModeEvent ev) {invalidateChannel(ev.getChannel().getName());}
+	
+	@Handler
+	public void onTopic(ChannelTopicEvent ev) {invalidateChannel(ev.getChannel().getName());}
+	
+	@Handler
+	public void onNames(ChannelNamesUpdatedEvent ev) {
+		invalidateChannel(ev.getChannel().getName());
+		ev.getChannel().getUsers().forEach(this::invalidateUser);
+		userIndex.sync(ev.getChannel());
+		updateNickMatcher(ev.getChannel(), m -> m.reset(ev.getChannel().getNicknames()));
+	}
+	
+	@Handler
+	public void onWho(ChannelUsersUpdatedEvent ev) {
+		invalidateChannel(ev.getChannel().getName());
+		ev.getChannel().getUsers().forEach(this::invalidateUser);
+		userIndex.sync(ev.getChannel());
+		updateNickMatcher(ev.getChannel(), m -> m.reset(ev.getChannel().getNicknames()));
+	}
+	
+	@Handler
+	public void onQuit(UserQuitEvent ev) {
+		invalidateUser(ev.getUser());
+		userIndex.remove(ev.getUser());
+		nickMatchers.values().forEach(m -> m.remove(ev.getUser().getNick()));
+	}
+	
+	@Handler
+	public void onNickChange(UserNickChangeEvent ev) {
+		invalidateUser(ev.getOldUser());
+		invalidateUser(ev.getNewUser());
+		userIndex.rename(ev.getOldUser(), ev.getNewUser());
+		nickMatchers.values().forEach(m -> m.rename(ev.getOldUser().getNick(), ev.getNewUser().getNick()));
+	}
+	
+	@Handler
+	public void onAccountChange(UserAccountStatusEvent ev) {
+		invalidateUser(ev.getActor());
+		userIndex.refresh(ev.getActor());
+	}
+	
+	@Handler
+	public void onAwayChange(UserAwayMessageEvent ev) {invalidateUser(ev.getActor());}
+	
+	@Handler
+	public void onHostnameChange(UserHostnameChangeEvent ev) {invalidateUser(ev.getNewUser());}
+	
 	@Override
 	public void reconnect() {
 		client.reconnect();
@@ -121,12 +367,14 @@ public class IrcService implements ChrislieService {
 	
 	@Override
 	public ChrislieUser botUser() {
-		return new IrcUser(this, client.getUser().orElseThrow());
+		return wrap(client.getUser().orElseThrow());
 	}
 	
 	@Override
 	public void exit() {
 		// TODO: actually wait for full shutdown
+		if (healTask != null)
+			healTask.cancel(false);
 		client.getEventManager().unregisterEventListener(this);
 		client.shutdown();
 	}
@@ -139,11 +387,7 @@ public class IrcService implements ChrislieService {
 				.anyMatch(p -> identifier.startsWith(String.valueOf(p)));
 		
 		if (isChannel) {
-			return client.getChannel(identifier)
-					.map(channel -> {
-						var guildIdentifier = channelToGuild(channel);
-						return new IrcChannel(this, channel, guildIdentifier.orElse(null));
-					});
+			return client.getChannel(identifier).map(this::wrap);
 		} else {
 			return userByPrefixedIdentifier(identifier).map(user -> new IrcPrivateChannel(this, user));
 		}
@@ -151,15 +395,16 @@ public class IrcService implements ChrislieService {
 	
 	@Override
 	public Optional<IrcUser> user(String identifier) {
-		return userByPrefixedIdentifier(identifier).map(user -> new IrcUser(this, user));
+		return userByPrefixedIdentifier(identifier).map(this::wrap);
 	}
 	
 	protected Optional<User> userByPrefixedIdentifier(String prefixedIdentifier) {
-		// creates a stream of all users known to this instance
-		var userStream = client.getChannels().stream()
-				.map(Channel::getUsers)
-				.flatMap(Collection::stream);
-		return userByPrefixedIdentifier(prefixedIdentifier, userStream);
+		// all users known to this instance are indexed, so there is no need to visit every channel
+		if (prefixedIdentifier.startsWith(PREFIX_USER_BY_ACCOUNT))
+			return userIndex.byAccount(prefixedIdentifier.substring(PREFIX_USER_BY_ACCOUNT.length()));
+		if (prefixedIdentifier.startsWith(PREFIX_USER_BY_NICKNAME))
+			return userIndex.byNickname(prefixedIdentifier.substring(PREFIX_USER_BY_NICKNAME.length()));
+		throw new IllegalArgumentException("unkown prefix in user identifier: " + prefixedIdentifier);
 	}
 	
 	// This method resolves a prefixed indentifier, as it is used by the irc service to a library user instance.
@@ -192,20 +437,24 @@ public class IrcService implements ChrislieService {
 	
 	@Override
 	public Optional<IrcGuild> guild(String identifier) {
-		
-		var patterns = guildMap.get(identifier);
-		if (patterns == null)
-			return Optional.empty();
-		
-		var pred = patterns.stream()
-				.map(Pattern::asPredicate)
-				.reduce(Predicate::or).orElse(s -> false); // if no regex is given, we still instance the guild with no channels
-		
-		var channels = client.getChannels().stream()
-				.filter(channel -> pred.test(channel.getName()))
-				.collect(Collectors.toList());
-		
-		return Optional.of(new IrcGuild(this, identifier, channels));
+		var guild = guilds.get(identifier);
+		if (guild == null) {
+			// if no regex is given, we still instance the guild with no channels, but don't keep it since the identifier could be anything
+			if (!guildMap.containsKey(identifier))
+				return Optional.of(new IrcGuild(this, identifier));
+			
+			guild = guilds.computeIfAbsent(identifier, this::createGuild);
+		}
+		return Optional.of(guild);
+	}
+	
+	private IrcGuild createGuild(String identifier) {
+		var guild = new IrcGuild(this, identifier);
+		for (var channel : client.getChannels()) {
+			if (guildIdentifiers(channel.getName()).contains(identifier))
+				guild.join(key(channel.getName()));
+		}
+		return guild;
 	}
 	
 	public static boolean isIrc(ServiceAttached service) {
@@ -0,0 +1,190 @@
+package chrisliebaer.chrisliebot.abstraction.irc;
+
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.kitteh.irc.client.library.Client;
+import org.kitteh.irc.client.library.element.Channel;
+import org.kitteh.irc.client.library.element.User;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Index of all users that share at least one channel with us, by nickname and by account. The index only remembers in
+ * which channels a user can be found, users are always looked up in the current state of the client, so lookups never
+ * return outdated snapshots. The service keeps the index up to date from the events of the client and periodically
+ * rebuilds it, in case an event was missed.
+ */
+@Slf4j
+final class IrcUserIndex {
+	
+	private final Client client;
+	
+	// guarded by this, keys are lower cased according to the case mapping of the server
+	private Map<String, Set<String>> channelsByNick = new HashMap<>();
+	private Map<String, Set<String>> nicksByAccount = new HashMap<>(); // multiple connections may share an account
+	private Map<String, String> accountByNick = new HashMap<>();
+	
+	IrcUserIndex(@NonNull Client client) {
+		this.client = client;
+	}
+	
+	/**
+	 * @return The current snapshot of the user with the given nickname.
+	 */
+	public Optional<User> byNickname(@NonNull String nickname) {
+		return lookup(nickname).filter(u -> u.getNick().equals(nickname));
+	}
+	
+	/**
+	 * @return The current snapshot of a user that is logged into the given account.
+	 */
+	public Optional<User> byAccount(@NonNull String account) {
+		List<String> nicks;
+		synchronized (this) {
+			var set = nicksByAccount.get(account);
+			if (set == null)
+				return Optional.empty();
+			nicks = new ArrayList<>(set);
+		}
+		
+		for (var nick : nicks) {
+			var user = lookup(nick).filter(u -> u.getAccount().filter(account::equals).isPresent());
+			if (user.isPresent())
+				return user;
+		}
+		return Optional.empty();
+	}
+	
+	private Optional<User> lookup(String nick) {
+		String channel;
+		synchronized (this) {
+			var channels = channelsByNick.get(key(nick));
+			if (channels == null || channels.isEmpty())
+				return Optional.empty();
+			channel = channels.iterator().next();
+		}
+		return client.getChannel(channel).flatMap(c -> c.getUser(nick));
+	}
+	
+	public synchronized void add(@NonNull User user, @NonNull Channel channel) {
+		var nick = key(user.getNick());
+		channelsByNick.computeIfAbsent(nick, k -> new LinkedHashSet<>()).add(channel.getName());
+		user.getAccount().ifPresent(account -> bind(nick, account));
+	}
+	
+	public synchronized void remove(@NonNull User user, @NonNull Channel channel) {
+		var nick = key(user.getNick());
+		var channels = channelsByNick.get(nick);
+		if (channels == null)
+			return;
+		
+		channels.remove(channel.getName());
+		if (channels.isEmpty())
+			remove(nick);
+	}
+	
+	public synchronized void remove(@NonNull User user) {
+		remove(key(user.getNick()));
+	}
+	
+	private void remove(String nick) {
+		channelsByNick.remove(nick);
+		unbind(nick);
+	}
+	
+	private void bind(String nick, String account) {
+		unbind(nick);
+		accountByNick.put(nick, account);
+		nicksByAccount.computeIfAbsent(account, k -> new LinkedHashSet<>()).add(nick);
+	}
+	
+	private void unbind(String nick) {
+		var account = accountByNick.remove(nick);
+		if (account == null)
+			return;
+		
+		var nicks = nicksByAccount.get(account);
+		nicks.remove(nick);
+		if (nicks.isEmpty())
+			nicksByAccount.remove(account);
+	}
+	
+	public synchronized void rename(@NonNull User oldUser, @NonNull User newUser) {
+		var channels = channelsByNick.remove(key(oldUser.getNick()));
+		unbind(key(oldUser.getNick()));
+		if (channels == null)
+			return;
+		
+		var nick = key(newUser.getNick());
+		channelsByNick.computeIfAbsent(nick, k -> new LinkedHashSet<>()).addAll(channels);
+		newUser.getAccount().ifPresent(account -> bind(nick, account));
+	}
+	
+	/**
+	 * Updates the account of the given user from the current state of the client.
+	 */
+	public void refresh(@NonNull User user) {
+		var current = lookup(user.getNick());
+		synchronized (this) {
+			var nick = key(user.getNick());
+			unbind(nick);
+			current.flatMap(User::getAccount).ifPresent(account -> bind(nick, account));
+		}
+	}
+	
+	/**
+	 * Replaces all entries of the given channel with the users of the given channel snapshot. Used if the client
+	 * received a full user list of a channel.
+	 */
+	public synchronized void sync(@NonNull Channel channel) {
+		drop(channel.getName());
+		for (var user : channel.getUsers())
+			add(user, channel);
+	}
+	
+	/**
+	 * Drops all channels of the given name, used if we left a channel.
+	 */
+	public synchronized void drop(@NonNull String channel) {
+		channelsByNick.values().forEach(channels -> channels.remove(channel));
+		for (var it = channelsByNick.entrySet().iterator(); it.hasNext(); ) {
+			var e = it.next();
+			if (e.getValue().isEmpty()) {
+				it.remove();
+				unbind(e.getKey());
+			}
+		}
+	}
+	
+	public synchronized void clear() {
+		channelsByNick = new HashMap<>();
+		nicksByAccount = new HashMap<>();
+		accountByNick = new HashMap<>();
+	}
+	
+	/**
+	 * Rebuilds the index from the current state of the client and replaces the current index if they differ.
+	 */
+	public synchronized void heal() {
+		var oldChannels = channelsByNick;
+		var oldAccounts = accountByNick;
+		clear();
+		for (var channel : client.getChannels())
+			for (var user : channel.getUsers())
+				add(user, channel);
+		
+		if (!oldChannels.equals(channelsByNick) || !oldAccounts.equals(accountByNick))
+			log.debug("user index of {} was out of sync with client state and has been rebuilt ({} users, {} accounts)",
+					client.getName(), channelsByNick.size(), nicksByAccount.size());
+	}
+	
+	private String key(String nick) {
+		return client.getServerInfo().getCaseMapping().toLowerCase(nick);
+	}
+}
@@ -0,0 +1,197 @@
+package chrisliebaer.chrisliebot.abstraction.irc;
+
+import chrisliebaer.chrisliebot.C;
+import lombok.NonNull;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Finds the nicknames of a channel in outgoing messages, so they can be escaped before they mention anyone. Nicknames
+ * are kept in an Aho-Corasick automaton that is updated incrementally when users join, leave or change their nickname.
+ * Failure links are only recomputed on the next escape after a change, so bursts of joins don't cause repeated work.
+ * <p>
+ * Matching is case insensitive for ASCII letters only and prefers the leftmost and then the longest nickname, with
+ * matches never overlapping.
+ */
+public final class NickMatcher {
+	
+	// guarded by this
+	private final Set<String> nicks = new HashSet<>();
+	private Node root = new Node(0);
+	private boolean dirty;
+	private int stale; // nodes that no longer lead to any nickname
+	
+	public NickMatcher(@NonNull Collection<String> nicks) {
+		reset(nicks);
+	}
+	
+	public synchronized void add(@NonNull String nick) {
+		if (!nicks.add(nick))
+			return;
+		
+		var node = root;
+		for (int i = 0; i < nick.length(); i++) {
+			var c = fold(nick.charAt(i));
+			var next = node.next.get(c);
+			if (next == null) {
+				next = new Node(node.depth + 1);
+				node.next.put(c, next);
+			}
+			node = next;
+		}
+		node.terminals++;
+		dirty = true;
+	}
+	
+	public synchronized void remove(@NonNull String nick) {
+		if (!nicks.remove(nick))
+			return;
+		
+		var node = root;
+		for (int i = 0; i < nick.length(); i++)
+			node = node.next.get(fold(nick.charAt(i)));
+		node.terminals--;
+		stale += nick.length();
+		dirty = true;
+		
+		// removed nicknames leave their nodes behind, which are dropped once they outweigh the remaining nicknames
+		if (stale > 64 && stale > nicks.size() * 8)
+			rebuild();
+	}
+	
+	public synchronized void rename(@NonNull String oldNick, @NonNull String newNick) {
+		if (!nicks.contains(oldNick))
+			return;
+		remove(oldNick);
+		add(newNick);
+	}
+	
+	/**
+	 * Replaces all nicknames with the given nicknames.
+	 */
+	public synchronized void reset(@NonNull Collection<String> nicks) {
+		this.nicks.clear();
+		root = new Node(0);
+		stale = 0;
+		for (var nick : nicks)
+			add(nick);
+		dirty = true;
+	}
+	
+	private void rebuild() {
+		var nicks = new HashSet<>(this.nicks);
+		reset(nicks);
+	}
+	
+	/**
+	 * Inserts a zero width no break space after the first character of every nickname in the given string.
+	 *
+	 * @param s The string to escape.
+	 * @return The escaped string, or the given string itself if it doesn't contain any nickname.
+	 */
+	public synchronized String escape(@NonNull String s) {
+		if (dirty)
+			link();
+		
+		StringBuilder sb = null;
+		int copied = 0;
+		
+		// current best match, which is emitted once no match that starts earlier or at the same position can follow
+		int bestStart = -1, bestEnd = -1;
+		
+		var node = root;
+		int i = 0;
+		while (i < s.length() || bestStart != -1) {
+			if (i < s.length()) {
+				var c = fold(s.charAt(i));
+				while (node != root && !node.next.containsKey(c))
+					node = node.fail;
+				node = node.next.getOrDefault(c, root);
+				
+				var len = node.terminals > 0 ? node.depth : node.output != null ? node.output.depth : 0;
+				if (len > 0) {
+					var start = i - len + 1;
+					if (bestStart == -1 || start < bestStart || start == bestStart && i > bestEnd) {
+						bestStart = start;
+						bestEnd = i;
+					}
+				}
+				
+				// a match starting at or before the best match would require the current state to reach back that far
+				if (bestStart == -1 || node.depth >= i - bestStart + 1) {
+					i++;
+					continue;
+				}
+			}
+			
+			if (bestEnd > bestStart) {
+				if (sb == null)
+					sb = new StringBuilder(s.length() + 16);
+				sb.append(s, copied, bestStart + 1).append(C.ZERO_WIDTH_NO_BREAK_SPACE);
+				copied = bestStart + 1;
+			}
+			
+			// matches don't overlap, so scanning resumes after the emitted match
+			i = bestEnd + 1;
+			node = root;
+			bestStart = bestEnd = -1;
+		}
+		
+		if (sb == null)
+			return s;
+		return sb.append(s, copied, s.length()).toString();
+	}
+	
+	private void link() {
+		var queue = new ArrayDeque<Node>();
+		root.fail = root;
+		root.output = null;
+		for (var child : root.next.values()) {
+			child.fail = root;
+			child.output = null;
+			queue.add(child);
+		}
+		
+		while (!queue.isEmpty()) {
+			var node = queue.poll();
+			for (var e : node.next.entrySet()) {
+				var c = e.getKey();
+				var child = e.getValue();
+				
+				var fail = node.fail;
+				while (fail != root && !fail.next.containsKey(c))
+					fail = fail.fail;
+				child.fail = fail.next.getOrDefault(c, root);
+				if (child.fail == child)
+					child.fail = root;
+				
+				// nearest proper suffix that is a nickname
+				child.output = child.fail.terminals > 0 ? child.fail : child.fail.output;
+				queue.add(child);
+			}
+		}
+		dirty = false;
+	}
+	
+	// matches the folding of Pattern.CASE_INSENSITIVE without UNICODE_CASE
+	private static char fold(char c) {
+		return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+	}
+	
+	private static final class Node {
+		
+		private final Map<Character, Node> next = new HashMap<>(4);
+		private final int depth;
+		private int terminals;
+		private Node fail, output;
+		
+		private Node(int depth) {
+			this.depth = depth;
+		}
+	}
+}
@@ -0,0 +1,61 @@
+package chrisliebaer.chrisliebot.abstraction.synthetic;
+
+import chrisliebaer.chrisliebot.Chrisliebot;
+import chrisliebaer.chrisliebot.abstraction.ServiceBootstrap;
+import lombok.Getter;
+import lombok.ToString;
+
+import javax.validation.constraints.DecimalMax;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Positive;
+import javax.validation.constraints.PositiveOrZero;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Configuration of a {@link SyntheticService}. The service generates traffic without any network access and is meant
+ * for measuring the throughput of the dispatcher and the listener stack.
+ */
+@ToString
+public class SyntheticBootstrap implements ServiceBootstrap {
+	
+	// size of the simulated network, channels are distributed evenly across guilds, 0 guilds means no guilds at all
+	@Getter @Positive private int channels = 10;
+	@Getter @Positive private int users = 100;
+	@Getter @Positive private int usersPerChannel = 20;
+	@Getter @PositiveOrZero private int guilds = 0;
+	
+	// messages per second across all channels
+	@Getter @Positive private double rate = 100;
+	
+	// fraction of messages that are taken from the command list instead of chatter
+	@Getter @PositiveOrZero @DecimalMax("1") private double commandRatio = 0.1;
+	@Getter @NotNull private List<String> commands = List.of();
+	
+	// optional file with recorded chat, each line is either a message or channel, user and message separated by tabs
+	@Getter private String replay;
+	
+	// random joins and parts per second, every stormInterval milliseconds stormSize users leave and rejoin a single channel
+	@Getter @PositiveOrZero private double joinPartRate = 0;
+	@Getter @PositiveOrZero private long stormInterval = 0;
+	@Getter @PositiveOrZero private int stormSize = 0;
+	
+	// stop generating after this many milliseconds, 0 runs until shutdown
+	@Getter @PositiveOrZero private long duration = 0;
+	@Getter private long seed = 42;
+	
+	// number of received outputs that are kept around for inspection
+	@Getter @PositiveOrZero private int recordLimit = 1000;
+	
+	@Override
+	public SyntheticService service(Chrisliebot bot, String identifier) throws IOException {
+		List<String> lines = List.of();
+		if (replay != null)
+			lines = Files.readAllLines(Path.of(replay), StandardCharsets.UTF_8);
+		
+		return new SyntheticService(bot, identifier, this, lines);
+	}
+}
@@ -0,0 +1,71 @@
+package chrisliebaer.chrisliebot.abstraction.synthetic;
+
+import chrisliebaer.chrisliebot.abstraction.ChrislieChannel;
+import chrisliebaer.chrisliebot.abstraction.LimiterConfig;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.ToString;
+
+import javax.annotation.Nullable;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+@ToString(onlyExplicitlyIncluded = true)
+public class SyntheticChannel implements ChrislieChannel {
+	
+	@Getter private final SyntheticService service;
+	@Getter @ToString.Include private final String identifier;
+	
+	// modified by the generator thread while listeners are reading it
+	@Getter private final List<SyntheticUser> users = new CopyOnWriteArrayList<>();
+	
+	private final SyntheticGuild guild;
+	private final boolean direct;
+	
+	SyntheticChannel(@NonNull SyntheticService service, @NonNull String identifier, @Nullable SyntheticGuild guild, boolean direct) {
+		this.service = service;
+		this.identifier = identifier;
+		this.guild = guild;
+		this.direct = direct;
+	}
+	
+	@Override
+	public String displayName() {
+		return identifier;
+	}
+	
+	@Override
+	public boolean isDirectMessage() {
+		return direct;
+	}
+	
+	@Override
+	public Optional<SyntheticUser> resolve(String callName) {
+		return users.stream()
+				.filter(user -> user.identifier().equalsIgnoreCase(callName))
+				.findAny();
+	}
+	
+	@Override
+	public Optional<SyntheticGuild> guild() {
+		return Optional.ofNullable(guild);
+	}
+	
+	@Override
+	public SyntheticOutput output(LimiterConfig limiterConfig) {
+		return output(limiterConfig, null);
+	}
+	
+	/**
+	 * @param command The command this output replies to, if any. Only the first reply to a command is measured.
+	 */
+	SyntheticOutput output(LimiterConfig limiterConfig, @Nullable SyntheticMessage command) {
+		return new SyntheticOutput(s -> {
+			if (command != null)
+				command.replied();
+			for (var line : limiterConfig.split(s, SyntheticService.LINE_LIMIT))
+				service.record(this, line);
+		});
+	}
+}
@@ -0,0 +1,27 @@
+package chrisliebaer.chrisliebot.abstraction.synthetic;
+
+import chrisliebaer.chrisliebot.abstraction.ChrislieGuild;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.ToString;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@ToString(onlyExplicitlyIncluded = true)
+public class SyntheticGuild implements ChrislieGuild {
+	
+	@Getter private final SyntheticService service;
+	@Getter @ToString.Include private final String identifier;
+	@Getter private final List<SyntheticChannel> channels = new ArrayList<>();
+	
+	SyntheticGuild(@NonNull SyntheticService service, @NonNull String identifier) {
+		this.service = service;
+		this.identifier = identifier;
+	}
+	
+	@Override
+	public String displayName() {
+		return identifier;
+	}
+}
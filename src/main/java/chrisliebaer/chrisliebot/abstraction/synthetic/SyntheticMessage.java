@@ -0,0 +1,47 @@
+package chrisliebaer.chrisliebot.abstraction.synthetic;
+
+import chrisliebaer.chrisliebot.abstraction.ChrislieMessage;
+import chrisliebaer.chrisliebot.abstraction.ChrislieOutput;
+import chrisliebaer.chrisliebot.abstraction.LimiterConfig;
+import chrisliebaer.chrisliebot.abstraction.MessageAnalysis;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.ToString;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+@ToString
+public class SyntheticMessage implements ChrislieMessage {
+	
+	@Getter private final SyntheticChannel channel;
+	@Getter private final SyntheticUser user;
+	@Getter private final String message;
+	
+	@ToString.Exclude @Getter(lazy = true) private final MessageAnalysis analysis = MessageAnalysis.of(message);
+	
+	// time at which a command was sent, reset to 0 once it has been replied to and always 0 for regular messages
+	@ToString.Exclude private final AtomicLong pending;
+	
+	SyntheticMessage(@NonNull SyntheticChannel channel, @NonNull SyntheticUser user, @NonNull String message, boolean command) {
+		this.channel = channel;
+		this.user = user;
+		this.message = message;
+		pending = new AtomicLong(command ? System.nanoTime() : 0);
+	}
+	
+	@Override
+	public SyntheticService service() {
+		return channel.service();
+	}
+	
+	@Override
+	public ChrislieOutput reply(LimiterConfig limiter) {
+		return channel.output(limiter, this);
+	}
+	
+	void replied() {
+		var sent = pending.getAndSet(0);
+		if (sent != 0)
+			channel.service().replied(sent);
+	}
+}
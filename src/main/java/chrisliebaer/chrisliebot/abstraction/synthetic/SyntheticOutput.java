@@ -0,0 +1,157 @@
+package chrisliebaer.chrisliebot.abstraction.synthetic;
+
+import chrisliebaer.chrisliebot.C;
+import chrisliebaer.chrisliebot.abstraction.ChrislieOutput;
+import chrisliebaer.chrisliebot.abstraction.PlainOutput;
+import chrisliebaer.chrisliebot.abstraction.PlainOutputImpl;
+import chrisliebaer.chrisliebot.abstraction.PlainOutputSubstituionImpl;
+import lombok.NonNull;
+import org.apache.commons.lang.text.StrLookup;
+
+import java.awt.Color;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Flattens all output into a single line of plain text, similar to what the IRC output does, but without any
+ * formatting codes.
+ */
+public class SyntheticOutput implements ChrislieOutput {
+	
+	private static final Function<String, String> ESCAPER = Function.identity();
+	private static final BiFunction<Object, String, String> FORMATTER = (format, s) -> s;
+	
+	private final Map<String, String> map = new HashMap<>(), fields = new HashMap<>();
+	private final Consumer<String> sink;
+	
+	private final PlainOutputImpl plain = new PlainOutputImpl(ESCAPER, FORMATTER);
+	private final PlainOutputImpl description = new PlainOutputImpl(ESCAPER, FORMATTER);
+	
+	private Supplier<String> converter = this::flatten;
+	
+	SyntheticOutput(@NonNull Consumer<String> sink) {
+		this.sink = sink;
+	}
+	
+	private String flatten() {
+		var sb = new StringBuilder();
+		var title = map.get("title");
+		if (title != null)
+			sb.append(title);
+		
+		var descriptionStr = description.string();
+		if (!descriptionStr.isBlank()) {
+			if (sb.length() > 0)
+				sb.append(": ");
+			sb.append(descriptionStr);
+		}
+		
+		for (var field : fields.entrySet())
+			sb.append(" | ").append(field.getKey()).append(": ").append(field.getValue());
+		
+		return sb.length() > 0 ? sb.toString() : plain.string();
+	}
+	
+	@Override
+	public SyntheticOutput title(String title, String url) {
+		map.put("title", title);
+		map.put("titleUrl", url);
+		return this;
+	}
+	
+	@Override
+	public SyntheticOutput image(String url) {
+		map.put("imageUrl", url);
+		return this;
+	}
+	
+	@Override
+	public SyntheticOutput thumbnail(String url) {
+		map.put("thumbnailUrl", url);
+		return this;
+	}
+	
+	@Override
+	public PlainOutput description() {
+		return description;
+	}
+	
+	@Override
+	public SyntheticOutput color(Color color) {
+		return this;
+	}
+	
+	@Override
+	public SyntheticOutput color(int color) {
+		return this;
+	}
+	
+	@Override
+	public SyntheticOutput author(String name) {
+		map.put("author", name);
+		return this;
+	}
+	
+	@Override
+	public SyntheticOutput authorUrl(String url) {
+		map.put("authorUrl", url);
+		return this;
+	}
+	
+	@Override
+	public SyntheticOutput authorIcon(String url) {
+		map.put("authorIcon", url);
+		return this;
+	}
+	
+	@Override
+	public SyntheticOutput field(String field, String value, boolean inline) {
+		fields.put(field, value);
+		return this;
+	}
+	
+	@Override
+	public SyntheticOutput footer(String text, String iconUrl) {
+		map.put("footerText", text);
+		map.put("footerIconUrl", iconUrl);
+		return this;
+	}
+	
+	@Override
+	public PlainOutput plain() {
+		return plain;
+	}
+	
+	@Override
+	public PlainOutput.PlainOutputSubstituion convert() {
+		var substitution = new PlainOutputSubstituionImpl(ESCAPER, FORMATTER, new StrLookup() {
+			@Override
+			public String lookup(String key) {
+				String out = switch (key) {
+					case "plain" -> plain.string();
+					case "description" -> description.string();
+					default -> key.startsWith("f-") ? fields.get(key.substring(2)) : map.get(key);
+				};
+				return C.escapeStrSubstitution(out == null ? "MISSING_KEY(" + key + ")" : out);
+			}
+		});
+		converter = substitution::string;
+		return substitution;
+	}
+	
+	@Override
+	public PlainOutput replace() {
+		var output = new PlainOutputImpl(ESCAPER, FORMATTER);
+		converter = output::string;
+		return output;
+	}
+	
+	@Override
+	public void send() {
+		sink.accept(converter.get());
+	}
+}
@@ -0,0 +1,326 @@
+package chrisliebaer.chrisliebot.abstraction.synthetic;
+
+import chrisliebaer.chrisliebot.Chrisliebot;
+import chrisliebaer.chrisliebot.abstraction.ChrislieMessage;
+import chrisliebaer.chrisliebot.abstraction.ChrislieService;
+import chrisliebaer.chrisliebot.metrics.Counter;
+import chrisliebaer.chrisliebot.metrics.Histogram;
+import chrisliebaer.chrisliebot.metrics.MetricsRegistry;
+import com.google.common.collect.EvictingQueue;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Service that generates synthetic chat traffic instead of connecting to a network. Messages are either generated
+ * chatter, replayed chat or commands, spread over a configurable number of channels and users. Every output is
+ * recorded and the first reply to each command is measured to determine the end to end latency.
+ */
+@Slf4j
+public class SyntheticService implements ChrislieService {
+	
+	static final int LINE_LIMIT = 400;
+	
+	private static final long TICK = TimeUnit.MILLISECONDS.toNanos(10);
+	private static final long REPORT_INTERVAL = TimeUnit.SECONDS.toNanos(10);
+	
+	private static final String[] WORDS = {
+			"hallo", "welt", "kaffee", "mensa", "heute", "morgen", "vorlesung", "übung", "klausur", "abgabe",
+			"https://example.com/some/path?query=1", "chrisliebot", "lol", "xD", "warum", "geht", "das", "nicht", "?"
+	};
+	
+	@Getter private final Chrisliebot bot;
+	@Getter private final String identifier;
+	@Getter private final SyntheticUser botUser;
+	
+	private final SyntheticBootstrap cfg;
+	private final List<String> replay;
+	
+	private final List<SyntheticChannel> channels = new ArrayList<>();
+	private final List<SyntheticUser> users = new ArrayList<>();
+	private final Map<String, SyntheticChannel> channelMap = new HashMap<>();
+	private final Map<String, SyntheticUser> userMap = new HashMap<>();
+	private final Map<String, SyntheticGuild> guildMap = new HashMap<>();
+	private final Map<SyntheticUser, SyntheticChannel> directChannels = new ConcurrentHashMap<>();
+	
+	// guarded by itself
+	private final EvictingQueue<String> outputs;
+	
+	private final Counter generated;
+	private final Counter received;
+	private final Histogram replyLatency;
+	
+	private volatile Consumer<ChrislieMessage> sink;
+	private volatile boolean running = true;
+	private final Thread generator;
+	
+	SyntheticService(@NonNull Chrisliebot bot, @NonNull String identifier, @NonNull SyntheticBootstrap cfg, @NonNull List<String> replay) {
+		this.bot = bot;
+		this.identifier = identifier;
+		this.cfg = cfg;
+		this.replay = replay;
+		
+		outputs = EvictingQueue.create(cfg.recordLimit());
+		botUser = new SyntheticUser(this, "chrisliebot");
+		
+		MetricsRegistry metrics = bot.sharedResources().metrics();
+		generated = metrics.counter("chrisliebot_synthetic_messages_total", "Messages generated by synthetic services.", "service").labels(identifier);
+		received = metrics.counter("chrisliebot_synthetic_outputs_total", "Outputs received by synthetic services.", "service").labels(identifier);
+		replyLatency = metrics.histogram("chrisliebot_synthetic_reply_seconds", "Time between a synthetic command and its reply.", "service").labels(identifier);
+		
+		populate(new Random(cfg.seed()));
+		
+		generator = new Thread(this::generate, "Synthetic-" + identifier);
+		generator.setDaemon(true);
+		generator.start();
+	}
+	
+	private void populate(Random random) {
+		for (int i = 0; i < cfg.users(); i++) {
+			var user = new SyntheticUser(this, "user" + i);
+			users.add(user);
+			userMap.put(user.identifier(), user);
+		}
+		
+		List<SyntheticGuild> guilds = new ArrayList<>();
+		for (int i = 0; i < cfg.guilds(); i++) {
+			var guild = new SyntheticGuild(this, "guild" + i);
+			guilds.add(guild);
+			guildMap.put(guild.identifier(), guild);
+		}
+		
+		for (int i = 0; i < cfg.channels(); i++) {
+			var guild = guilds.isEmpty() ? null : guilds.get(i % guilds.size());
+			var channel = new SyntheticChannel(this, "#synthetic" + i, guild, false);
+			if (guild != null)
+				guild.channels().add(channel);
+			
+			var members = Math.min(cfg.usersPerChannel(), users.size());
+			while (channel.users().size() < members) {
+				var user = users.get(random.nextInt(users.size()));
+				if (!channel.users().contains(user))
+					channel.users().add(user);
+			}
+			
+			channels.add(channel);
+			channelMap.put(channel.identifier(), channel);
+		}
+	}
+	
+	private void generate() {
+		var random = new Random(cfg.seed());
+		var end = cfg.duration() > 0 ? System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(cfg.duration()) : Long.MAX_VALUE;
+		var stormInterval = TimeUnit.MILLISECONDS.toNanos(cfg.stormInterval());
+		
+		double messageBudget = 0, joinPartBudget = 0;
+		int replayIdx = 0;
+		long last = System.nanoTime();
+		long nextStorm = last + stormInterval;
+		long nextReport = last + REPORT_INTERVAL;
+		long lastGenerated = 0, lastReceived = 0;
+		
+		while (running) {
+			LockSupport.parkNanos(TICK);
+			var now = System.nanoTime();
+			var elapsed = (now - last) / (double) TimeUnit.SECONDS.toNanos(1);
+			last = now;
+			
+			if (now > end) {
+				log.info("synthetic service `{}` has reached the configured duration and stops generating messages", identifier);
+				return;
+			}
+			
+			// the dispatcher is hooked up after the bot config has been loaded, messages before that would be lost
+			var sink = this.sink;
+			if (sink == null) {
+				nextReport = now + REPORT_INTERVAL;
+				continue;
+			}
+			
+			// budget is capped at one second worth of messages so a stall doesn't result in a huge burst afterwards
+			messageBudget = Math.min(messageBudget + elapsed * cfg.rate(), Math.max(1, cfg.rate()));
+			while (messageBudget >= 1) {
+				messageBudget--;
+				
+				SyntheticMessage m;
+				if (!cfg.commands().isEmpty() && random.nextDouble() < cfg.commandRatio()) {
+					m = message(random, null, null, cfg.commands().get(random.nextInt(cfg.commands().size())), true);
+				} else if (!replay.isEmpty()) {
+					m = replay(random, replay.get(replayIdx));
+					replayIdx = (replayIdx + 1) % replay.size();
+				} else {
+					m = message(random, null, null, sentence(random, 1 + random.nextInt(15)), false);
+				}
+				
+				generated.inc();
+				sink.accept(m);
+			}
+			
+			joinPartBudget = Math.min(joinPartBudget + elapsed * cfg.joinPartRate(), Math.max(1, cfg.joinPartRate()));
+			while (joinPartBudget >= 1) {
+				joinPartBudget--;
+				joinOrPart(random, channels.get(random.nextInt(channels.size())));
+			}
+			
+			if (stormInterval > 0 && now >= nextStorm) {
+				nextStorm = now + stormInterval;
+				storm(random);
+			}
+			
+			if (now >= nextReport) {
+				var seconds = (now - nextReport + REPORT_INTERVAL) / (double) TimeUnit.SECONDS.toNanos(1);
+				nextReport = now + REPORT_INTERVAL;
+				var gen = generated.sum();
+				var rec = received.sum();
+				log.info("synthetic service `{}` generated {} msg/s and received {} outputs/s",
+						identifier, Math.round((gen - lastGenerated) / seconds), Math.round((rec - lastReceived) / seconds));
+				lastGenerated = gen;
+				lastReceived = rec;
+			}
+		}
+	}
+	
+	private SyntheticMessage replay(Random random, String line) {
+		var parts = line.split("\t", 3);
+		if (parts.length < 3)
+			return message(random, null, null, line, false);
+		
+		// recorded names are mapped onto our own channels and users, which keeps the distribution of the recording
+		var channel = channels.get(Math.floorMod(parts[0].hashCode(), channels.size()));
+		var user = users.get(Math.floorMod(parts[1].hashCode(), users.size()));
+		return message(random, channel, user, parts[2], false);
+	}
+	
+	private SyntheticMessage message(Random random, @Nullable SyntheticChannel channel, @Nullable SyntheticUser user, String text, boolean command) {
+		if (channel == null)
+			channel = channels.get(random.nextInt(channels.size()));
+		
+		if (user == null) {
+			var members = channel.users();
+			user = members.isEmpty() ? users.get(random.nextInt(users.size())) : members.get(random.nextInt(members.size()));
+		}
+		
+		// users can only talk in channels they are part of
+		if (!channel.users().contains(user))
+			channel.users().add(user);
+		
+		return new SyntheticMessage(channel, user, text, command);
+	}
+	
+	private void joinOrPart(Random random, SyntheticChannel channel) {
+		var members = channel.users();
+		if (random.nextBoolean() && members.size() > 1) {
+			members.remove(random.nextInt(members.size()));
+		} else {
+			var user = users.get(random.nextInt(users.size()));
+			if (!members.contains(user))
+				members.add(user);
+		}
+	}
+	
+	private void storm(Random random) {
+		var channel = channels.get(random.nextInt(channels.size()));
+		var members = channel.users();
+		log.debug("simulating join/part storm of {} users in {}", cfg.stormSize(), channel);
+		
+		// simulates a netsplit, users leave one by one and then rejoin
+		List<SyntheticUser> left = new ArrayList<>();
+		for (int i = 0; i < cfg.stormSize() && !members.isEmpty(); i++)
+			left.add(members.remove(random.nextInt(members.size())));
+		for (var user : left)
+			members.add(user);
+	}
+	
+	private static String sentence(Random random, int words) {
+		var sb = new StringBuilder();
+		for (int i = 0; i < words; i++) {
+			if (i > 0)
+				sb.append(' ');
+			sb.append(WORDS[random.nextInt(WORDS.length)]);
+		}
+		return sb.toString();
+	}
+	
+	void record(SyntheticChannel channel, String line) {
+		received.inc();
+		
+		log.trace("synthetic output in {}: {}", channel, line);
+		synchronized (outputs) {
+			outputs.add(channel.identifier() + ": " + line);
+		}
+	}
+	
+	void replied(long sent) {
+		replyLatency.observeSince(sent);
+	}
+	
+	/**
+	 * @return The most recent outputs that have been sent through this service.
+	 */
+	public List<String> outputs() {
+		synchronized (outputs) {
+			return new ArrayList<>(outputs);
+		}
+	}
+	
+	SyntheticChannel directChannel(SyntheticUser user) {
+		return directChannels.computeIfAbsent(user, u -> {
+			var channel = new SyntheticChannel(this, "@" + u.identifier(), null, true);
+			channel.users().add(u);
+			return channel;
+		});
+	}
+	
+	@Override
+	public void awaitReady() {
+		// everything is set up in the constructor
+	}
+	
+	@Override
+	public SyntheticService sink(@Nullable Consumer<ChrislieMessage> sink) {
+		this.sink = sink;
+		return this;
+	}
+	
+	@Override
+	public Optional<SyntheticChannel> channel(String identifier) {
+		if (identifier.startsWith("@"))
+			return user(identifier.substring(1)).map(this::directChannel);
+		return Optional.ofNullable(channelMap.get(identifier));
+	}
+	
+	@Override
+	public Optional<SyntheticUser> user(String identifier) {
+		return Optional.ofNullable(userMap.get(identifier));
+	}
+	
+	@Override
+	public Optional<SyntheticGuild> guild(String identifier) {
+		return Optional.ofNullable(guildMap.get(identifier));
+	}
+	
+	@Override
+	public void exit() throws ServiceException {
+		running = false;
+		generator.interrupt();
+		try {
+			generator.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new ServiceException("interrupted while waiting for generator to stop", e);
+		}
+		log.info("synthetic service `{}` generated {} messages and received {} outputs", identifier, generated.sum(), received.sum());
+	}
+}
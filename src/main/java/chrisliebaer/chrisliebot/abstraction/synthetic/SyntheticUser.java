@@ -0,0 +1,35 @@
+package chrisliebaer.chrisliebot.abstraction.synthetic;
+
+import chrisliebaer.chrisliebot.abstraction.ChrislieUser;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.ToString;
+
+import java.util.Optional;
+
+@ToString(onlyExplicitlyIncluded = true)
+public class SyntheticUser implements ChrislieUser {
+	
+	@Getter private final SyntheticService service;
+	@Getter @ToString.Include private final String identifier;
+	
+	SyntheticUser(@NonNull SyntheticService service, @NonNull String identifier) {
+		this.service = service;
+		this.identifier = identifier;
+	}
+	
+	@Override
+	public String displayName() {
+		return identifier;
+	}
+	
+	@Override
+	public String mention() {
+		return "@" + identifier;
+	}
+	
+	@Override
+	public Optional<SyntheticChannel> directMessage() {
+		return Optional.of(service.directChannel(this));
+	}
+}
@@ -1,51 +1,87 @@
 package chrisliebaer.chrisliebot.command;
 
 import chrisliebaer.chrisliebot.Chrisliebot;
+import chrisliebaer.chrisliebot.abstraction.ChrislieIdentifier;
 import chrisliebaer.chrisliebot.abstraction.ChrislieMessage;
 import chrisliebaer.chrisliebot.config.ChrislieContext;
 import chrisliebaer.chrisliebot.config.ContextResolver;
 import chrisliebaer.chrisliebot.config.flex.FlexConf;
-import chrisliebaer.chrisliebot.config.scope.Selector;
+import chrisliebaer.chrisliebot.metrics.Counter;
+import chrisliebaer.chrisliebot.metrics.Histogram;
+import chrisliebaer.chrisliebot.metrics.MetricsRegistry;
+import chrisliebaer.chrisliebot.metrics.ResourceAccounting;
+import chrisliebaer.chrisliebot.metrics.jfr.CommandEvent;
+import chrisliebaer.chrisliebot.metrics.jfr.ListenerEvent;
+import chrisliebaer.chrisliebot.metrics.jfr.ParseEvent;
+import chrisliebaer.chrisliebot.metrics.jfr.ResolveEvent;
 import chrisliebaer.chrisliebot.util.ErrorOutputBuilder;
-import com.google.common.cache.CacheBuilder;
-import com.google.common.cache.CacheLoader;
-import com.google.common.cache.LoadingCache;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
 import java.util.Optional;
-import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.regex.Pattern;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
 @Slf4j
 public class ChrislieDispatcher {
 	
-	private static final String DISPATCHER_PATTERN_GROUP_ALIAS = "alias";
-	private static final String DISPATCHER_PATTERN_GROUP_ARGUMENT = "argument";
+	private static final long SHED_REPORT_INTERVAL = TimeUnit.SECONDS.toNanos(10);
 	
 	private Chrisliebot chrisliebot;
 	
 	private volatile boolean shutdown;
 	
+	// number of messages and listener calls that are currently in flight, only locked for waking up a pending shutdown
 	private final AtomicInteger shutdownCounter = new AtomicInteger(0);
 	
-	private LoadingCache<String, Pattern> patternCache = CacheBuilder.newBuilder()
-			.maximumSize(10)
-			.build(new CacheLoader<>() {
-				@Override
-				public Pattern load(String key) {
-					return Pattern.compile(key);
-				}
-			});
+	// messages that were dropped due to overload, reported in fixed intervals to avoid flooding the log during a flood
+	private final LongAdder shedCounter = new LongAdder();
+	private final AtomicLong lastShedReport = new AtomicLong(System.nanoTime());
+	
+	private volatile ContextResolver resolver;
+	
+	private DispatchExecutor executor;
+	
+	private final RateLimiter rateLimiter = new RateLimiter();
+	
+	private final StallWatchdog watchdog;
+	
+	private long listenerTimeout;
+	private long maxAge; // in nanoseconds, 0 if disabled
+	private int passiveLimit;
 	
-	private ContextResolver resolver;
+	private final MetricsRegistry.Family<Counter> messageCounter;
+	private final MetricsRegistry.Family<Histogram> resolveLatency;
+	private final MetricsRegistry.Family<Histogram> listenerLatency;
+	private final MetricsRegistry.Family<Counter> listenerErrors;
+	private final MetricsRegistry.Family<Histogram> commandLatency;
+	private final MetricsRegistry.Family<Counter> commandErrors;
+	private final ResourceAccounting accounting;
 	
-	public ChrislieDispatcher(@NonNull Chrisliebot chrisliebot, @NonNull ContextResolver resolver) {
+	public ChrislieDispatcher(@NonNull Chrisliebot chrisliebot, @NonNull ContextResolver resolver, @NonNull DispatchExecutor.Config cfg) {
 		this.chrisliebot = chrisliebot;
 		this.resolver = resolver;
+		executor = new DispatchExecutor(cfg);
+		listenerTimeout = cfg.listenerTimeout();
+		maxAge = TimeUnit.MILLISECONDS.toNanos(cfg.maxAge());
+		passiveLimit = cfg.passiveLimit();
+		
+		var metrics = chrisliebot.sharedResources().metrics();
+		accounting = chrisliebot.sharedResources().accounting();
+		watchdog = new StallWatchdog(chrisliebot.sharedResources().timer(), metrics, cfg);
+		messageCounter = metrics.counter("chrisliebot_dispatcher_messages_total", "Messages received by the dispatcher.", "service");
+		resolveLatency = metrics.histogram("chrisliebot_dispatcher_resolve_seconds", "Time spent resolving the context of messages.", "service");
+		listenerLatency = metrics.histogram("chrisliebot_listener_seconds", "Time spent in listener callbacks.", "listener");
+		listenerErrors = metrics.counter("chrisliebot_listener_errors_total", "Listener callbacks that failed with an exception.", "listener");
+		commandLatency = metrics.histogram("chrisliebot_command_seconds", "Time spent executing commands.", "command");
+		commandErrors = metrics.counter("chrisliebot_command_errors_total", "Command invocations that failed with an exception.", "command");
+		metrics.gauge("chrisliebot_dispatcher_pending", "Messages and listener calls queued or running in the dispatcher.", executor::pending);
+		metrics.counter("chrisliebot_dispatcher_shed_total", "Messages that were dropped or only partially processed due to overload.", this::shed);
 	}
 	
 	/**
@@ -60,22 +96,102 @@ public class ChrislieDispatcher {
 			while (shutdownCounter.get() != 0)
 				shutdownCounter.wait();
 		}
+		
+		executor.shutdown();
+		watchdog.shutdown();
+	}
+	
+	/**
+	 * Replaces the resolver of this dispatcher. Messages that are already being processed keep using the previous
+	 * resolver.
+	 *
+	 * @param resolver The new resolver.
+	 */
+	public void resolver(@NonNull ContextResolver resolver) {
+		var previous = this.resolver;
+		this.resolver = resolver;
+		
+		// health of removed listeners is no longer relevant
+		for (var envelope : previous.envelopes())
+			if (!resolver.envelopes().contains(envelope))
+				watchdog.forget(envelope.listener());
 	}
 	
 	/**
-	 * Public sink method of this dispatcher. Once called, the dispatcher will build the context of the given message
-	 * and dispatch it to all mapped listeners and commands.
+	 * Public sink method of this dispatcher. Once called, the dispatcher will queue the given message for processing
+	 * and return immediately. Messages from the same channel are processed in order, while messages from different
+	 * channels are processed in parallel.
 	 *
 	 * @param m The message that should be dispatched.
 	 */
 	public void dispatch(@NonNull ChrislieMessage m) {
+		shutdownCounter.incrementAndGet();
+		if (shutdown) {
+			release();
+			return;
+		}
+		
+		messageCounter.labels(m.service().identifier()).inc();
+		
+		// we are running on the event thread of the service, so the actual work is moved to the executor
+		var key = ChrislieIdentifier.ChannelIdentifier.of(m.channel());
+		var received = System.nanoTime();
+		if (!executor.submit(key, () -> process(m, received))) {
+			shed("queue is full", m);
+			release();
+		}
+	}
+	
+	private void release() {
+		// only the last thread leaving the dispatcher during shutdown has to take the lock, shutdown flag is set before waiting so we can't miss it
+		if (shutdownCounter.decrementAndGet() == 0 && shutdown) {
+			synchronized (shutdownCounter) {
+				shutdownCounter.notifyAll();
+			}
+		}
+	}
+	
+	private void shed(String reason, ChrislieMessage m) {
+		log.trace("shedding message since {}: {}", reason, m);
+		shedCounter.increment();
+		
+		var now = System.nanoTime();
+		var last = lastShedReport.get();
+		if (now - last > SHED_REPORT_INTERVAL && lastShedReport.compareAndSet(last, now))
+			log.warn("dispatcher is overloaded, {} messages have been shed so far (last one since {})", shedCounter.sum(), reason);
+	}
+	
+	/**
+	 * @return The number of messages that have been dropped or only been partially processed due to overload.
+	 */
+	public long shed() {
+		return shedCounter.sum();
+	}
+	
+	/**
+	 * Builds the context of the given message and dispatches it to all mapped listeners and commands.
+	 *
+	 * @param m        The message that should be processed.
+	 * @param received The time in nanoseconds at which the message entered the dispatcher.
+	 */
+	private void process(ChrislieMessage m, long received) {
 		try {
-			shutdownCounter.incrementAndGet();
-			
-			if (shutdown)
+			// after a backlog has built up, old messages are no longer relevant and only delay newer messages
+			if (maxAge > 0 && System.nanoTime() - received > maxAge) {
+				shed("it expired", m);
 				return;
+			}
 			
-			var ctx = resolver.resolve(Selector::check, m);
+			var resolveEvent = new ResolveEvent();
+			resolveEvent.begin();
+			var resolveStart = System.nanoTime();
+			var ctx = resolver.resolve(m);
+			resolveLatency.labels(m.service().identifier()).observeSince(resolveStart);
+			if (resolveEvent.shouldCommit()) {
+				resolveEvent.service = m.service().identifier();
+				resolveEvent.channel = m.channel().identifier();
+				resolveEvent.commit();
+			}
 			
 			// dispatcher can be directly controlled via certain group config flax
 			if (ctx.flexConf().isSet(FlexConf.DISPATCHER_DISABLE)) {
@@ -88,6 +204,12 @@ public class ChrislieDispatcher {
 			var listener = parse.flatMap(p -> handleCommandInvocation(m, ctx, p));
 			var isCommand = listener.isPresent();
 			
+			// listeners are passive and therefore the first thing to go if the bot is overloaded
+			if (passiveLimit > 0 && executor.pending() > passiveLimit) {
+				shed("listeners are skipped", m);
+				return;
+			}
+			
 			// notify all listeners
 			for (var ref : ctx.listeners().values()) {
 				
@@ -102,78 +224,68 @@ public class ChrislieDispatcher {
 				}
 				
 				// message object contains ref, so can't be shared with all listeners, sad heap allocation :(
-				var exceptionHandler = new ListenerMessageExceptionHandler();
-				var lm = new ChrislieListener.ListenerMessage(
-						exceptionHandler,
-						chrisliebot,
-						m,
-						ref,
-						ctx
-				);
-				exceptionHandler.msg = lm; // TODO: do we want to do this properly?
+				var call = new ListenerCall(m, ref, ctx, isCommand);
 				
-				log.trace("calling listener `{}` for message: {}", ref.envelope().source(), m);
-				try {
-					ref.envelope().listener().onMessage(lm, isCommand);
-				} catch (@SuppressWarnings("OverlyBroadCatchBlock") Exception e) {
-					exceptionHandler.escalateException(e);
+				// concurrent listeners are moved to other workers so they don't delay the remaining listeners and the next message
+				var target = ref.envelope().listener();
+				if (target.concurrent()) {
+					shutdownCounter.incrementAndGet();
+					if (executor.execute(() -> {
+						try {
+							call.run();
+						} finally {
+							release();
+						}
+					}))
+						continue;
+					
+					// executor is saturated, so we fall back to calling the listener ourself
+					release();
+				} else if (watchdog.degraded(target) || executor.busy(new ListenerLane(target))) {
+					
+					/* degraded listeners are likely to stall again, so they get a lane of their own that still delivers messages in order
+					 * the lane is used until it has drained, even if the listener recovered, since inline calls would overtake queued ones
+					 */
+					shutdownCounter.incrementAndGet();
+					if (!executor.submit(new ListenerLane(target), () -> {
+						try {
+							call.run();
+						} finally {
+							release();
+						}
+					})) {
+						// calling the listener ourself would overtake messages that are still queued in its lane
+						release();
+						shed("degraded listener `%s` is skipped".formatted(ref.envelope().source()), m);
+					}
+					continue;
 				}
+				call.run();
 			}
 		} finally {
-			synchronized (shutdownCounter) {
-				shutdownCounter.decrementAndGet();
-				shutdownCounter.notifyAll();
-			}
+			release();
 		}
 	}
 	
 	
 	private Optional<CommandParse> parseCommand(ChrislieMessage m, ChrislieContext ctx) {
-		var flexConf = ctx.flexConf();
-		var patternStr = flexConf.getString(FlexConf.DISPATCHER_PATTERN);
-		if (patternStr.isEmpty()) {
-			log.trace("no dispatcher pattern set, message will be ignored, message was: {}", m);
-			return Optional.empty();
-		}
-		
-		Pattern pattern;
-		try {
-			pattern = patternCache.get(patternStr.get());
-		} catch (ExecutionException e) {
-			log.warn("failed to compile dispatcher pattern `{}` for message: {}", patternStr.get(), m, e);
-			return Optional.empty();
-		}
-		
-		// patterns are supposed to have two groups: alias, argument
-		var matcher = pattern.matcher(m.message());
+		var event = new ParseEvent();
+		event.begin();
 		
-		String alias, argument;
-		if (matcher.find()) {
-			
-			// matcher doesn't offer to check for groups, so we have to catch the exception
-			try {
-				alias = matcher.group(DISPATCHER_PATTERN_GROUP_ALIAS);
-				argument = matcher.group(DISPATCHER_PATTERN_GROUP_ARGUMENT);
-			} catch (IllegalArgumentException e) {
-				log.warn("dispatcher pattern `{}` does not contain `{}` and `{}` group, message was: {}",
-						DISPATCHER_PATTERN_GROUP_ALIAS, DISPATCHER_PATTERN_GROUP_ARGUMENT, pattern.pattern(), m);
-				return Optional.empty();
-			}
-		} else {
-			log.trace("dispatcher pattern `{}` did not match on message: {}", pattern.pattern(), m);
+		var matcher = CommandMatcher.of(ctx);
+		if (matcher.isEmpty()) {
+			log.trace("no dispatcher pattern set, message will be ignored, message was: {}", m);
 			return Optional.empty();
 		}
+		var parse = matcher.get().match(m.message(), ctx);
 		
-		if (alias == null || alias.isBlank()) {
-			log.trace("dispatcher pattern `{}` returned empty alias on message: {}", pattern.pattern(), m);
-			return Optional.empty();
+		if (event.shouldCommit()) {
+			event.service = m.service().identifier();
+			event.channel = m.channel().identifier();
+			event.alias = parse.map(CommandParse::alias).orElse(null);
+			event.commit();
 		}
-		alias = alias.toLowerCase();
-		
-		// there is no reason to differentiate between an empty argument or a null argument, so we make sure it is never null to simplify command logic
-		argument = argument == null ? "" : argument;
-		
-		return Optional.of(new CommandParse(alias, argument));
+		return parse;
 	}
 	
 	/**
@@ -208,7 +320,7 @@ public class ChrislieDispatcher {
 		ChrislieListener.Command listener = (ChrislieListener.Command) ref.envelope().listener();
 		
 		// invocation is packed into object to keep argument list short and allow for easy adding of new data to invocation without reworking every command
-		var exceptionHandler = new InvocationExceptionHandler();
+		var exceptionHandler = new InvocationExceptionHandler(commandErrors.labels(ref.name()));
 		var invocation = new ChrislieListener.Invocation(
 				exceptionHandler,
 				chrisliebot,
@@ -220,10 +332,35 @@ public class ChrislieDispatcher {
 		);
 		exceptionHandler.invc = invocation; // TODO: do we want to do this properly?
 		
+		// forced invocations are issued by the bot itself and can't be spammed by users
+		if (m.forcedInvocation().isEmpty() && !checkRateLimit(invocation, listener))
+			return Optional.of(listener);
+		
+		// commands are only interrupted if explicitly requested, since some of them are expected to take a while
+		var flex = ref.flexConf();
+		var call = watchdog.enter(ref, invocation,
+				flex.getLong(FlexConf.DISPATCHER_TIMEOUT).orElse(listenerTimeout),
+				flex.get(FlexConf.DISPATCHER_INTERRUPT, Boolean.class).orElse(false));
+		
+		var event = new CommandEvent();
+		event.begin();
+		var sample = accounting.begin();
+		var start = System.nanoTime();
 		try {
 			listener.execute(invocation);
 		} catch (@SuppressWarnings("OverlyBroadCatchBlock") Exception e) {
+			event.failed = true;
 			exceptionHandler.escalateException(e);
+		} finally {
+			watchdog.exit(call);
+			commandLatency.labels(ref.name()).observeSince(start);
+			accounting.end(ResourceAccounting.Kind.COMMAND, ref.name(), sample);
+			if (event.shouldCommit()) {
+				event.command = ref.name();
+				event.alias = alias;
+				event.channel = m.channel().identifier();
+				event.commit();
+			}
 		}
 		
 		/* the listener logic relies on knowing if a message does trigger a command, so even if
@@ -232,9 +369,52 @@ public class ChrislieDispatcher {
 		return Optional.of(listener);
 	}
 	
-	private static class ListenerMessageExceptionHandler implements ChrislieListener.ExceptionHandler {
+	/**
+	 * A single listener callback. Besides calling the listener, this class acts as exception handler of the passed
+	 * message and registers the call with the watchdog, which reports the listener once it exceeds its time budget and
+	 * only interrupts the calling thread if the config asks for it. Failures and timeouts of one listener are contained within the call and don't affect any other
+	 * listener.
+	 */
+	private class ListenerCall implements ChrislieListener.ExceptionHandler, Runnable {
+		
+		private final ChrislieListener.ListenerMessage msg;
+		private final boolean isCommand;
+		
+		private ListenerCall(ChrislieMessage m, ListenerReference ref, ChrislieContext ctx, boolean isCommand) {
+			msg = new ChrislieListener.ListenerMessage(this, chrisliebot, m, ref, ctx);
+			this.isCommand = isCommand;
+		}
 		
-		private ChrislieListener.ListenerMessage msg;
+		@Override
+		public void run() {
+			var ref = msg.ref();
+			var flex = ref.flexConf();
+			var call = watchdog.enter(ref, msg,
+					flex.getLong(FlexConf.DISPATCHER_TIMEOUT).orElse(listenerTimeout),
+					flex.get(FlexConf.DISPATCHER_INTERRUPT, Boolean.class).orElse(false)); // same opt-in as commands
+			
+			log.trace("calling listener `{}` for message: {}", ref.envelope().source(), msg.msg());
+			var event = new ListenerEvent();
+			event.begin();
+			var sample = accounting.begin();
+			var start = System.nanoTime();
+			try {
+				ref.envelope().listener().onMessage(msg, isCommand);
+			} catch (@SuppressWarnings("OverlyBroadCatchBlock") Exception e) {
+				event.failed = true;
+				escalateException(e);
+			} finally {
+				listenerLatency.labels(ref.name()).observeSince(start);
+				accounting.end(ResourceAccounting.Kind.LISTENER, ref.name(), sample);
+				if (event.shouldCommit()) {
+					event.listener = ref.name();
+					event.channel = msg.msg().channel().identifier();
+					event.command = isCommand;
+					event.commit();
+				}
+				watchdog.exit(call);
+			}
+		}
 		
 		@Override
 		public void escalateException(ChrislieListener.@NonNull ListenerException e) {
@@ -242,12 +422,27 @@ public class ChrislieDispatcher {
 		}
 		
 		public void escalateException(Exception e) {
+			listenerErrors.labels(msg.ref().name()).inc();
 			log.error("listener callback failed with exception: {}", msg, e);
 		}
 	}
 	
+	private boolean checkRateLimit(ChrislieListener.Invocation invc, ChrislieListener.Command listener) {
+		var decision = rateLimiter.acquire(invc.msg(), invc.ref(), listener);
+		if (decision == RateLimiter.Decision.REJECT) {
+			try {
+				ErrorOutputBuilder.generic("Nicht so schnell! Bitte warte einen Moment, bevor du das noch einmal versuchst.").write(invc).send();
+			} catch (ChrislieListener.ListenerException e) {
+				log.warn("unable to instance reply instance for rate limit notice", e);
+			}
+		}
+		return decision == RateLimiter.Decision.ACCEPT;
+	}
+	
+	@RequiredArgsConstructor
 	private static class InvocationExceptionHandler implements ChrislieListener.ExceptionHandler {
 		
+		private final Counter errors;
 		private ChrislieListener.Invocation invc;
 		
 		@Override
@@ -256,6 +451,7 @@ public class ChrislieDispatcher {
 		}
 		
 		public void escalateException(Exception e) {
+			errors.inc();
 			log.error("command invocation failed with exception: {}", invc, e);
 			
 			// forced invocations should not send error messages as there is no user expecting feedback
@@ -274,6 +470,29 @@ public class ChrislieDispatcher {
 		}
 	}
 	
+	/**
+	 * Lane key of a degraded listener. Listeners are compared by identity, since they are not required to implement
+	 * {@link Object#equals(Object)} in a way that is suitable for lane keys.
+	 */
+	private static final class ListenerLane {
+		
+		private final ChrislieListener listener;
+		
+		private ListenerLane(ChrislieListener listener) {
+			this.listener = listener;
+		}
+		
+		@Override
+		public boolean equals(Object o) {
+			return o instanceof ListenerLane && ((ListenerLane) o).listener == listener;
+		}
+		
+		@Override
+		public int hashCode() {
+			return System.identityHashCode(listener);
+		}
+	}
+	
 	@Data
 	@AllArgsConstructor
 	public static class CommandParse {
@@ -18,6 +18,8 @@ import lombok.ToString;
 import org.apache.commons.lang3.builder.ToStringExclude;
 
 import javax.annotation.CheckReturnValue;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 /**
@@ -32,7 +34,8 @@ import java.util.Optional;
  * must not perform ANY actions in their default constructor. The default constructor is called during setup to create
  * an instance of this listener. Listeners must be able to be instanced multiple times and may be called from various
  * threads concurrently. If a listener wishes to be called sequentially it must deploy proper synchronisation. A
- * listener may assume to have it's lifecycle methods called synchronously.
+ * listener may assume to have it's lifecycle methods called synchronously, but lifecycle methods of different
+ * listeners are called in parallel, see {@link #dependencies()}.
  * </p>
  *
  * <p>
@@ -43,9 +46,12 @@ import java.util.Optional;
  *     <li>call to {@link #init(Chrisliebot, ContextResolver)}</li>
  *     <li>call to {@link #start(Chrisliebot, ContextResolver)}</li>
  *     <li>listener is considered active and may receive callbacks</li>
+ *     <li>calls to {@link #reload(Chrisliebot, ContextResolver)} if the config is reloaded without changing this listener</li>
  *     <li>call to {@link #stop(Chrisliebot, ContextResolver)}</li>
  *     <li>listener is considered destroyed and must be ready to be garbage collected</li>
  * </ol>
+ * If a reload is aborted, every listener that completed {@link #init(Chrisliebot, ContextResolver)} is stopped, even if
+ * {@link #start(Chrisliebot, ContextResolver)} failed or was never called.
  */
 public interface ChrislieListener {
 	
@@ -103,10 +109,11 @@ public interface ChrislieListener {
 	 * listeners may have already stopped. Since this might be part of a reload, accessing the bots listener and command
 	 * system is not allowed and every action has to be performed on the given ContextResolver. It is possible that a
 	 * listeners will be asked to stop directly after receiving a call to {@link #start(Chrisliebot, ContextResolver)}.
-	 * A listener that has thrown a {@link ListenerException} or any other exception during it's start will not have
-	 * it's stop method called. The listener is expected to perform cleanup itself after creating a boo boo. After
-	 * returning from this method, the listener and all it's services must not access any parts of Chrisliebots
-	 * framework.
+	 * Every listener that returned from {@link #init(Chrisliebot, ContextResolver)} will have it's stop method called,
+	 * even if it's start has thrown an exception or was never called at all, so resources that were never set up have
+	 * to be handled. A listener that failed during init will not be stopped and is expected to perform cleanup itself
+	 * after creating a boo boo. After returning from this method, the listener and all it's services must not access
+	 * any parts of Chrisliebots framework.
 	 *
 	 * @param bot      Reference to bot instance.
 	 * @param resolver The resolver that is managing this listener. Note that this will be different from the bots
@@ -116,6 +123,17 @@ public interface ChrislieListener {
 	 */
 	public default void stop(Chrisliebot bot, ContextResolver resolver) throws ListenerException {}
 	
+	/**
+	 * This method is called if the bot config has been reloaded but the definition of this listener did not change, so
+	 * this listener is kept instead of being stopped and replaced by a new instance. Listeners that have kept a
+	 * reference to the resolver from a previous lifecycle call must use the given resolver from now on. This method is
+	 * called before the new resolver is used by the dispatcher and must not block.
+	 *
+	 * @param bot      Reference to bot instance.
+	 * @param resolver The resolver that is replacing the current resolver.
+	 */
+	public default void reload(Chrisliebot bot, ContextResolver resolver) {}
+	
 	/**
 	 * Called if this listener was mapped into a scope that received a message.
 	 *
@@ -127,6 +145,26 @@ public interface ChrislieListener {
 	 */
 	public default void onMessage(ListenerMessage msg, boolean isCommand) throws ListenerException {}
 	
+	/**
+	 * Listeners that don't depend on the order in which they receive messages can return {@code true} to allow the
+	 * dispatcher to call {@link #onMessage(ListenerMessage, boolean)} in parallel to other listeners and even other
+	 * messages from the same channel. Listeners returning {@code false} are called one after another in the order of
+	 * the incoming messages.
+	 *
+	 * @return {@code true} if this listener can be called concurrently.
+	 */
+	public default boolean concurrent() {return false;}
+	
+	/**
+	 * Lifecycle methods of different listeners are called in parallel. Listeners that require other listeners to have
+	 * completed their {@link #init(Chrisliebot, ContextResolver)} or {@link #start(Chrisliebot, ContextResolver)} phase
+	 * before their own can list the classes of these listeners here. Listeners of the returned classes that are not
+	 * part of the current lifecycle run are ignored.
+	 *
+	 * @return Classes of listeners that have to complete each lifecycle phase before this listener.
+	 */
+	public default Collection<Class<? extends ChrislieListener>> dependencies() {return List.of();}
+	
 	/**
 	 * This subinterface can be implemented if a listener wishes to be also registered as an command. Command listeners
 	 * get a special call to {@link #execute(Invocation)} if the alias they are mapped to is used in a command
@@ -164,6 +202,15 @@ public interface ChrislieListener {
 		 *                           is required to resolve the problem.
 		 */
 		public void execute(Invocation invc) throws ListenerException;
+		
+		/**
+		 * The number of tokens a single invocation of this command takes from the rate limit buckets. Commands that
+		 * are expensive to execute should return a higher cost. The cost can be overridden with the {@link
+		 * RateLimiter#FLEX_COST} flex key.
+		 *
+		 * @return The cost of a single invocation.
+		 */
+		public default double cost() {return 1;}
 	}
 	
 	/**
@@ -175,6 +222,12 @@ public interface ChrislieListener {
 		
 		@Getter private final @NonNull ChrislieListener listener;
 		@Getter private final @NonNull String source;
+		
+		/**
+		 * Describes the definition this listener was created from. Two envelopes with the same definition are
+		 * interchangeable, which allows a reload to keep listeners whose definition didn't change.
+		 */
+		@Getter @ToString.Exclude private final @NonNull String definition;
 	}
 	
 	/**
@@ -0,0 +1,230 @@
+package chrisliebaer.chrisliebot.command;
+
+import chrisliebaer.chrisliebot.config.ChrislieContext;
+import chrisliebaer.chrisliebot.config.flex.FlexConf;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Optional;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Decides if a message is a command invocation and splits it into alias and argument. Matchers are compiled once from
+ * the dispatcher settings of a context and cached in its {@link FlexConf}. Most messages are plain chat, so every
+ * matcher first checks for a literal prefix and rejects messages that don't start with it without further work.
+ *
+ * <p>
+ * If {@link FlexConf#DISPATCHER_PREFIX} is set, the message must start with the given prefix which is followed by an
+ * alias of the context. Aliases are detected with the {@link chrisliebaer.chrisliebot.config.AliasTrie} of the
+ * context, so no regular expression is involved. Otherwise {@link FlexConf#DISPATCHER_PATTERN} is used, which must
+ * contain the groups {@code alias} and {@code argument}. The literal prefix of such patterns is extracted during
+ * compilation.
+ * </p>
+ */
+@Slf4j
+public abstract class CommandMatcher {
+	
+	private static final String DISPATCHER_PATTERN_GROUP_ALIAS = "alias";
+	private static final String DISPATCHER_PATTERN_GROUP_ARGUMENT = "argument";
+	
+	protected final String prefix;
+	
+	private CommandMatcher(String prefix) {
+		this.prefix = prefix;
+	}
+	
+	/**
+	 * Returns the matcher for the given context. The matcher is compiled on first access and reused afterwards.
+	 *
+	 * @param ctx The context of the message.
+	 * @return The matcher of the given context or an empty optional, if the context has no valid dispatcher settings.
+	 */
+	public static Optional<CommandMatcher> of(@NonNull ChrislieContext ctx) {
+		return ctx.flexConf().derive(CommandMatcher.class, CommandMatcher::compile);
+	}
+	
+	private static Optional<CommandMatcher> compile(FlexConf flex) {
+		var prefix = flex.getString(FlexConf.DISPATCHER_PREFIX);
+		if (prefix.isPresent())
+			return Optional.of(new PrefixMatcher(prefix.get()));
+		
+		var patternStr = flex.getString(FlexConf.DISPATCHER_PATTERN);
+		if (patternStr.isEmpty())
+			return Optional.empty();
+		
+		try {
+			var pattern = Pattern.compile(patternStr.get());
+			return Optional.of(new PatternMatcher(pattern, literalPrefix(pattern.pattern())));
+		} catch (PatternSyntaxException e) {
+			log.warn("failed to compile dispatcher pattern `{}`", patternStr.get(), e);
+			return Optional.empty();
+		}
+	}
+	
+	/**
+	 * Attempts to parse the given message as a command invocation.
+	 *
+	 * @param message The message content.
+	 * @param ctx     The context of the message.
+	 * @return The parsed command invocation. The alias is not guaranteed to exist in the context.
+	 */
+	public Optional<ChrislieDispatcher.CommandParse> match(@NonNull String message, @NonNull ChrislieContext ctx) {
+		if (!message.startsWith(prefix))
+			return Optional.empty();
+		return matchPrefixed(message, ctx);
+	}
+	
+	protected abstract Optional<ChrislieDispatcher.CommandParse> matchPrefixed(String message, ChrislieContext ctx);
+	
+	/**
+	 * Extracts the literal string that every match of the given pattern has to start with. This is a conservative
+	 * analysis: it only considers patterns that are anchored at the start of the input and stops at the first
+	 * construct that is not a plain literal.
+	 *
+	 * @param regex A regular expression without flags.
+	 * @return The literal prefix of all matches, which might be empty.
+	 */
+	static String literalPrefix(String regex) {
+		int i;
+		if (regex.startsWith("^"))
+			i = 1;
+		else if (regex.startsWith("\\A"))
+			i = 2;
+		else
+			return "";
+		
+		// top level alternation would make the anchor only apply to the first branch
+		if (hasTopLevelAlternation(regex))
+			return "";
+		
+		var sb = new StringBuilder();
+		while (i < regex.length()) {
+			char c = regex.charAt(i);
+			char literal;
+			int next;
+			
+			if (c == '\\') {
+				// only escaped punctuation is a literal, escaped letters and digits are character classes, back references or quotes
+				if (i + 1 >= regex.length() || Character.isLetterOrDigit(regex.charAt(i + 1)))
+					break;
+				literal = regex.charAt(i + 1);
+				next = i + 2;
+			} else if (".[]()*+?{}|^$".indexOf(c) >= 0) {
+				break;
+			} else {
+				literal = c;
+				next = i + 1;
+			}
+			
+			// quantifier might make the literal optional, only + guarantees at least one occurrence
+			if (next < regex.length()) {
+				char q = regex.charAt(next);
+				if (q == '?' || q == '*' || q == '{')
+					break;
+				if (q == '+') {
+					sb.append(literal);
+					break;
+				}
+			}
+			
+			sb.append(literal);
+			i = next;
+		}
+		return sb.toString();
+	}
+	
+	private static boolean hasTopLevelAlternation(String regex) {
+		int depth = 0;
+		boolean inClass = false;
+		for (int i = 0; i < regex.length(); i++) {
+			char c = regex.charAt(i);
+			if (c == '\\') {
+				// quoted sections can contain anything, so we give up
+				if (i + 1 < regex.length() && regex.charAt(i + 1) == 'Q')
+					return true;
+				i++;
+			} else if (inClass) {
+				if (c == ']')
+					inClass = false;
+			} else if (c == '[') {
+				inClass = true;
+			} else if (c == '(') {
+				depth++;
+			} else if (c == ')') {
+				depth--;
+			} else if (c == '|' && depth == 0) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	private static final class PrefixMatcher extends CommandMatcher {
+		
+		private PrefixMatcher(String prefix) {
+			super(prefix);
+		}
+		
+		@Override
+		protected Optional<ChrislieDispatcher.CommandParse> matchPrefixed(String message, ChrislieContext ctx) {
+			var maybeMatch = ctx.aliasTrie().longest(message, prefix.length());
+			if (maybeMatch.isEmpty()) {
+				log.trace("no alias found after dispatcher prefix `{}` in message: {}", prefix, message);
+				return Optional.empty();
+			}
+			var match = maybeMatch.get();
+			
+			// skip whitespace between alias and argument
+			int start = match.end();
+			while (start < message.length() && Character.isWhitespace(message.charAt(start)))
+				start++;
+			
+			return Optional.of(new ChrislieDispatcher.CommandParse(match.alias(), message.substring(start)));
+		}
+	}
+	
+	private static final class PatternMatcher extends CommandMatcher {
+		
+		private final Pattern pattern;
+		
+		private PatternMatcher(Pattern pattern, String prefix) {
+			super(prefix);
+			this.pattern = pattern;
+		}
+		
+		@Override
+		protected Optional<ChrislieDispatcher.CommandParse> matchPrefixed(String message, ChrislieContext ctx) {
+			// patterns are supposed to have two groups: alias, argument
+			var matcher = pattern.matcher(message);
+			
+			String alias, argument;
+			if (matcher.find()) {
+				
+				// matcher doesn't offer to check for groups, so we have to catch the exception
+				try {
+					alias = matcher.group(DISPATCHER_PATTERN_GROUP_ALIAS);
+					argument = matcher.group(DISPATCHER_PATTERN_GROUP_ARGUMENT);
+				} catch (IllegalArgumentException e) {
+					log.warn("dispatcher pattern `{}` does not contain `{}` and `{}` group, message was: {}",
+							pattern.pattern(), DISPATCHER_PATTERN_GROUP_ALIAS, DISPATCHER_PATTERN_GROUP_ARGUMENT, message);
+					return Optional.empty();
+				}
+			} else {
+				log.trace("dispatcher pattern `{}` did not match on message: {}", pattern.pattern(), message);
+				return Optional.empty();
+			}
+			
+			if (alias == null || alias.isBlank()) {
+				log.trace("dispatcher pattern `{}` returned empty alias on message: {}", pattern.pattern(), message);
+				return Optional.empty();
+			}
+			alias = alias.toLowerCase();
+			
+			// there is no reason to differentiate between an empty argument or a null argument, so we make sure it is never null to simplify command logic
+			argument = argument == null ? "" : argument;
+			
+			return Optional.of(new ChrislieDispatcher.CommandParse(alias, argument));
+		}
+	}
+}
@@ -0,0 +1,214 @@
+package chrisliebaer.chrisliebot.command;
+
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.validation.constraints.Positive;
+import javax.validation.constraints.PositiveOrZero;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs dispatcher work on a bounded pool of worker threads instead of the event threads of the individual services.
+ * Tasks are grouped into lanes by a key. Tasks within the same lane are executed strictly in order of submission, while
+ * different lanes are processed in parallel. A lane only occupies a worker thread for a single task at a time and then
+ * queues itself up again, so a busy lane can't starve other lanes.
+ */
+@Slf4j
+public class DispatchExecutor {
+	
+	private final ThreadPoolExecutor executor;
+	private final int queueLimit;
+	
+	// number of tasks that have been accepted but not yet completed
+	private final AtomicInteger pending = new AtomicInteger();
+	
+	// lanes are created on demand and removed once drained, guarded by itself
+	private final Map<Object, Lane> lanes = new HashMap<>();
+	
+	public DispatchExecutor(@NonNull Config cfg) {
+		queueLimit = cfg.queueLimit;
+		
+		var threadCounter = new AtomicInteger();
+		executor = new ThreadPoolExecutor(cfg.threads, cfg.threads, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), r -> {
+			var t = new Thread(r, "Dispatcher-" + threadCounter.incrementAndGet());
+			t.setDaemon(true);
+			t.setUncaughtExceptionHandler((t1, e) -> log.error("uncaught exception in dispatcher thread", e));
+			return t;
+		});
+	}
+	
+	/**
+	 * Submits a task to the lane with the given key.
+	 *
+	 * @param key  The key of the lane. Tasks with equal keys will never run concurrently and are executed in order.
+	 * @param task The task to execute.
+	 * @return {@code false} if the task was rejected since the queue limit has been reached or the executor has been
+	 * shut down.
+	 */
+	public boolean submit(@NonNull Object key, @NonNull Runnable task) {
+		if (pending.incrementAndGet() > queueLimit) {
+			pending.decrementAndGet();
+			return false;
+		}
+		
+		Lane lane;
+		synchronized (lanes) {
+			lane = lanes.get(key);
+			
+			// lane is already active and will pick up the task on its own
+			if (lane != null) {
+				lane.tasks.add(task);
+				return true;
+			}
+			
+			lane = new Lane(key);
+			lane.tasks.add(task);
+			lanes.put(key, lane);
+		}
+		
+		try {
+			executor.execute(lane);
+			return true;
+		} catch (RejectedExecutionException e) {
+			synchronized (lanes) {
+				lanes.remove(key);
+			}
+			pending.decrementAndGet();
+			return false;
+		}
+	}
+	
+	/**
+	 * Submits a task that has no ordering requirements and may run in parallel to any other task.
+	 *
+	 * @param task The task to execute.
+	 * @return {@code false} if the task was rejected since the queue limit has been reached or the executor has been
+	 * shut down.
+	 */
+	public boolean execute(@NonNull Runnable task) {
+		if (pending.incrementAndGet() > queueLimit) {
+			pending.decrementAndGet();
+			return false;
+		}
+		
+		try {
+			executor.execute(() -> {
+				try {
+					task.run();
+				} finally {
+					pending.decrementAndGet();
+				}
+			});
+			return true;
+		} catch (RejectedExecutionException e) {
+			pending.decrementAndGet();
+			return false;
+		}
+	}
+	
+	/**
+	 * @param key The key of the lane.
+	 * @return {@code true} if the lane with the given key still has tasks that are queued or running.
+	 */
+	public boolean busy(@NonNull Object key) {
+		synchronized (lanes) {
+			return lanes.containsKey(key);
+		}
+	}
+	
+	/**
+	 * @return The number of tasks that have been accepted but have not completed yet.
+	 */
+	public int pending() {
+		return pending.get();
+	}
+	
+	/**
+	 * Stops accepting new tasks and waits for the worker threads to terminate. Callers must ensure that all lanes have
+	 * been drained before calling this method, since lanes are unable to requeue themselves afterwards.
+	 */
+	public void shutdown() throws InterruptedException {
+		executor.shutdown();
+		while (!executor.awaitTermination(1, TimeUnit.MINUTES))
+			log.warn("dispatcher threads still haven't terminated, {} tasks still pending", pending.get());
+	}
+	
+	private class Lane implements Runnable {
+		
+		private final Object key;
+		private final Queue<Runnable> tasks = new ArrayDeque<>();
+		
+		private Lane(Object key) {
+			this.key = key;
+		}
+		
+		@Override
+		public void run() {
+			Runnable task;
+			synchronized (lanes) {
+				task = tasks.remove();
+			}
+			
+			// errors are caught as well, since a lane that doesn't requeue itself would never process its channel again
+			try {
+				task.run();
+			} catch (Throwable t) {
+				log.error("dispatcher task in lane `{}` failed", key, t);
+			} finally {
+				pending.decrementAndGet();
+			}
+			
+			// lane has to be removed in the same critical section that checks for remaining tasks, otherwise we might lose a task
+			synchronized (lanes) {
+				if (tasks.isEmpty()) {
+					lanes.remove(key);
+					return;
+				}
+			}
+			
+			// give other lanes a chance before processing the next task in this lane
+			try {
+				executor.execute(this);
+			} catch (RejectedExecutionException e) {
+				int dropped;
+				synchronized (lanes) {
+					dropped = tasks.size();
+					tasks.clear();
+					lanes.remove(key);
+				}
+				pending.addAndGet(-dropped);
+				log.error("executor rejected lane `{}` after shutdown, dropped {} tasks", key, dropped);
+			}
+		}
+	}
+	
+	public static class Config {
+		
+		@Positive private int threads = 4;
+		@Positive private int queueLimit = 1000;
+		@Getter @Positive private long listenerTimeout = 10000; // default time budget of a single listener callback in milliseconds
+		
+		/* shedding policies, setting any of these to 0 will disable the policy
+		 * maxAge: messages that have been waiting for longer than this many milliseconds are dropped
+		 * passiveLimit: if more than this many tasks are pending, only command invocations are processed and listeners are skipped
+		 */
+		@Getter @PositiveOrZero private long maxAge = 30000;
+		@Getter @PositiveOrZero private int passiveLimit = 500;
+		
+		/* stall detection: running listeners are checked against their time budget every watchdogInterval milliseconds
+		 * listeners that stall degradeThreshold times within degradeWindow milliseconds are considered degraded (0 disables)
+		 */
+		@Getter @Positive private long watchdogInterval = 250;
+		@Getter @PositiveOrZero private int degradeThreshold = 3;
+		@Getter @Positive private long degradeWindow = 600000;
+	}
+}
@@ -0,0 +1,224 @@
+package chrisliebaer.chrisliebot.command;
+
+import chrisliebaer.chrisliebot.abstraction.ChrislieIdentifier;
+import chrisliebaer.chrisliebot.abstraction.ChrislieMessage;
+import chrisliebaer.chrisliebot.config.flex.FlexConf;
+import chrisliebaer.chrisliebot.util.GsonValidator;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.Striped;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonSyntaxException;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.NonNull;
+import lombok.ToString;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.validation.constraints.Positive;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * Limits how often commands can be invoked by using token buckets. Buckets are kept per user, per channel and per
+ * listener and each bucket is only used if the flex config of the invoked command contains a limit for its scope. An
+ * invocation consumes the cost of the command from every applicable bucket and is only accepted if all of them contain
+ * enough tokens. Buckets are also keyed by their limit, so commands only share a bucket if they are configured with
+ * the same limit.
+ *
+ * <p>
+ * Buckets are stored in a size limited cache and expire after some time without access. An expired bucket would have
+ * been refilled anyway, so apart from very slow refill rates, expiring them doesn't change the outcome. Updates to
+ * buckets are guarded by a fixed number of striped locks, so the memory of the limiter doesn't grow with the number of
+ * tracked users.
+ * </p>
+ */
+@Slf4j
+public class RateLimiter {
+	
+	public static final String FLEX_USER = "ratelimit.user";
+	public static final String FLEX_CHANNEL = "ratelimit.channel";
+	public static final String FLEX_LISTENER = "ratelimit.listener";
+	public static final String FLEX_COST = "ratelimit.cost";
+	
+	private static final int MAX_BUCKETS = 10000;
+	private static final long BUCKET_EXPIRE = TimeUnit.MINUTES.toMillis(30);
+	private static final int LOCK_STRIPES = 64;
+	
+	private final Cache<Object, Bucket> buckets = CacheBuilder.newBuilder()
+			.maximumSize(MAX_BUCKETS)
+			.expireAfterAccess(BUCKET_EXPIRE, TimeUnit.MILLISECONDS)
+			.build();
+	
+	private final Striped<Lock> locks = Striped.lock(LOCK_STRIPES);
+	
+	/**
+	 * Attempts to take the cost of the given command invocation from all buckets that apply to it.
+	 *
+	 * @param m        The message that caused the invocation.
+	 * @param ref      The reference of the invoked command, which provides both limits and cost.
+	 * @param listener The invoked command.
+	 * @return The decision of the limiter.
+	 */
+	public Decision acquire(@NonNull ChrislieMessage m, @NonNull ListenerReference ref, @NonNull ChrislieListener.Command listener) {
+		var flex = ref.flexConf();
+		var userLimit = flex.get(FLEX_USER, Limit.class);
+		var channelLimit = flex.get(FLEX_CHANNEL, Limit.class);
+		var listenerLimit = flex.get(FLEX_LISTENER, Limit.class);
+		
+		// most commands are not limited at all, so we want to leave as early as possible
+		if (userLimit.isEmpty() && channelLimit.isEmpty() && listenerLimit.isEmpty())
+			return Decision.ACCEPT;
+		
+		double cost = flex.getDouble(FLEX_COST).orElseGet(listener::cost);
+		if (cost <= 0)
+			return Decision.ACCEPT;
+		
+		List<Object> keys = new ArrayList<>(3);
+		List<Limit> limits = new ArrayList<>(3);
+		if (userLimit.isPresent()) {
+			keys.add(new UserKey(m.service().identifier(), m.user().identifier(), userLimit.get()));
+			limits.add(userLimit.get());
+		}
+		if (channelLimit.isPresent()) {
+			keys.add(new ChannelKey(ChrislieIdentifier.ChannelIdentifier.of(m.channel()), channelLimit.get()));
+			limits.add(channelLimit.get());
+		}
+		if (listenerLimit.isPresent()) {
+			keys.add(new ListenerKey(listener, listenerLimit.get()));
+			limits.add(listenerLimit.get());
+		}
+		
+		// bulkGet() returns locks in a consistent order, so acquiring all of them can't deadlock
+		var stripes = new ArrayList<>(locks.bulkGet(keys));
+		stripes.forEach(Lock::lock);
+		try {
+			var now = System.nanoTime();
+			var acquired = new Bucket[keys.size()];
+			boolean accept = true;
+			for (int i = 0; i < acquired.length; i++) {
+				var limit = limits.get(i);
+				var bucket = buckets.asMap().computeIfAbsent(keys.get(i), k -> new Bucket(limit.capacity, now));
+				bucket.refill(limit, now);
+				acquired[i] = bucket;
+				accept &= bucket.tokens >= cost;
+			}
+			
+			if (accept) {
+				for (Bucket bucket : acquired) {
+					bucket.tokens -= cost;
+					bucket.notified = false;
+				}
+				return Decision.ACCEPT;
+			}
+			
+			// only the first rejection of an exhausted bucket is reported, otherwise spammers would get a reply to every message
+			boolean notify = false;
+			for (Bucket bucket : acquired) {
+				if (bucket.tokens < cost && !bucket.notified) {
+					bucket.notified = true;
+					notify = true;
+				}
+			}
+			log.debug("rejected invocation of `{}` due to rate limit, message was: {}", ref.envelope().source(), m);
+			return notify ? Decision.REJECT : Decision.REJECT_SILENT;
+		} finally {
+			for (int i = stripes.size() - 1; i >= 0; i--)
+				stripes.get(i).unlock();
+		}
+	}
+	
+	/**
+	 * Checks the limits of the given listener while the config is loaded, since invalid limits would otherwise only be
+	 * skipped when the command is invoked and a cost that exceeds the capacity of a bucket would reject every invocation.
+	 *
+	 * @param gson     The gson instance used for validating the limits.
+	 * @param flex     The flex config of the listener.
+	 * @param listener The listener.
+	 * @throws ChrislieListener.ListenerException If a limit is invalid or can never be satisfied by the cost of the
+	 *                                            listener.
+	 */
+	public static void validate(@NonNull GsonValidator gson, @NonNull FlexConf flex, @NonNull ChrislieListener listener) throws ChrislieListener.ListenerException {
+		if (!(listener instanceof ChrislieListener.Command))
+			return;
+		
+		var cost = flex.getDouble(FLEX_COST).orElseGet(((ChrislieListener.Command) listener)::cost);
+		for (var key : List.of(FLEX_USER, FLEX_CHANNEL, FLEX_LISTENER)) {
+			var json = flex.get(key, JsonElement.class);
+			if (json.isEmpty())
+				continue;
+			
+			Limit limit;
+			try {
+				limit = gson.fromJson(json.get(), Limit.class);
+			} catch (JsonSyntaxException e) {
+				throw new ChrislieListener.ListenerException(String.format("invalid rate limit in `%s`", key), e);
+			}
+			
+			if (cost > limit.capacity)
+				throw new ChrislieListener.ListenerException(String.format(
+						"cost of %s exceeds capacity of %s in `%s`, command could never be invoked", cost, limit.capacity, key));
+		}
+	}
+	
+	public enum Decision {
+		ACCEPT, REJECT, REJECT_SILENT
+	}
+	
+	/**
+	 * Configuration of a single token bucket as it's stored in the flex config.
+	 */
+	@ToString
+	@EqualsAndHashCode
+	public static class Limit {
+		
+		@Positive private double capacity; // maximum number of tokens, allows bursts up to this cost
+		@Positive private double perMinute; // number of tokens that are added per minute
+	}
+	
+	private static final class Bucket {
+		
+		private double tokens;
+		private long lastRefill;
+		private boolean notified;
+		
+		private Bucket(double tokens, long now) {
+			this.tokens = tokens;
+			lastRefill = now;
+		}
+		
+		private void refill(Limit limit, long now) {
+			var elapsed = now - lastRefill;
+			lastRefill = now;
+			tokens = Math.min(limit.capacity, tokens + elapsed * limit.perMinute / TimeUnit.MINUTES.toNanos(1));
+		}
+	}
+	
+	@EqualsAndHashCode
+	@AllArgsConstructor
+	private static final class UserKey {
+		
+		private final String service;
+		private final String user;
+		private final Limit limit;
+	}
+	
+	@EqualsAndHashCode
+	@AllArgsConstructor
+	private static final class ChannelKey {
+		
+		private final ChrislieIdentifier.ChannelIdentifier channel;
+		private final Limit limit;
+	}
+	
+	// listeners don't override equals, so this key compares by identity, wrapped to not mix with other key types
+	@EqualsAndHashCode
+	@AllArgsConstructor
+	private static final class ListenerKey {
+		
+		private final ChrislieListener listener;
+		private final Limit limit;
+	}
+}
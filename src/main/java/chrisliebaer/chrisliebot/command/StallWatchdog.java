@@ -0,0 +1,203 @@
+package chrisliebaer.chrisliebot.command;
+
+import chrisliebaer.chrisliebot.abstraction.ProtocolRecorder;
+import chrisliebaer.chrisliebot.metrics.Counter;
+import chrisliebaer.chrisliebot.metrics.MetricsRegistry;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps track of all listener and command calls that are currently running in the dispatcher and checks them against
+ * their time budget in fixed intervals. Once a call exceeds its budget, the stack of the stuck thread is logged, the
+ * stall is counted and the thread is optionally interrupted. Listeners that stall repeatedly are considered degraded.
+ */
+@Slf4j
+class StallWatchdog {
+	
+	private final Set<Call> inFlight = ConcurrentHashMap.newKeySet();
+	
+	// only contains listeners that stalled at least once, so lookups for healthy listeners are cheap misses
+	private final Map<ChrislieListener, Health> health = new ConcurrentHashMap<>();
+	
+	private final MetricsRegistry.Family<Counter> stallCounter;
+	
+	private final int degradeThreshold;
+	private final long degradeWindow; // in nanoseconds
+	
+	private final ScheduledFuture<?> task;
+	
+	StallWatchdog(@NonNull ScheduledExecutorService timer, @NonNull MetricsRegistry metrics, @NonNull DispatchExecutor.Config cfg) {
+		degradeThreshold = cfg.degradeThreshold();
+		degradeWindow = TimeUnit.MILLISECONDS.toNanos(cfg.degradeWindow());
+		
+		stallCounter = metrics.counter("chrisliebot_listener_stalls_total", "Listener and command calls that exceeded their time budget.", "listener");
+		metrics.gauge("chrisliebot_listener_degraded", "Listeners that are currently considered degraded.", () -> {
+			var now = System.nanoTime();
+			return health.values().stream().filter(h -> h.degraded(now)).count();
+		});
+		metrics.gauge("chrisliebot_listener_inflight", "Listener and command calls that are currently running.", inFlight::size);
+		
+		var interval = cfg.watchdogInterval();
+		task = timer.scheduleWithFixedDelay(this::check, interval, interval, TimeUnit.MILLISECONDS);
+	}
+	
+	/**
+	 * Registers a call that is about to be made on the current thread. Every call to this method must be followed by a
+	 * call to {@link #exit(Call)} on the same thread.
+	 *
+	 * @param ref       The listener that is being called.
+	 * @param subject   The message or invocation of this call, only used for logging.
+	 * @param budget    Time budget in milliseconds.
+	 * @param interrupt Whether the thread should be interrupted once the budget is exceeded.
+	 * @return Handle of this call.
+	 */
+	public Call enter(@NonNull ListenerReference ref, @NonNull Object subject, long budget, boolean interrupt) {
+		var call = new Call(Thread.currentThread(), ref, subject, TimeUnit.MILLISECONDS.toNanos(budget), interrupt);
+		inFlight.add(call);
+		return call;
+	}
+	
+	public void exit(@NonNull Call call) {
+		inFlight.remove(call);
+		
+		// clear interrupt flag if we interrupted the call, since the worker thread will be reused for other listeners
+		if (call.finish())
+			//noinspection ResultOfMethodCallIgnored
+			Thread.interrupted();
+	}
+	
+	/**
+	 * @return {@code true} if the given listener exceeded its time budget too often in the recent past.
+	 */
+	public boolean degraded(@NonNull ChrislieListener listener) {
+		if (degradeThreshold == 0)
+			return false;
+		
+		var h = health.get(listener);
+		return h != null && h.degraded(System.nanoTime());
+	}
+	
+	/**
+	 * Drops the stall history of the given listener, used once a listener has been removed from the config.
+	 */
+	public void forget(@NonNull ChrislieListener listener) {
+		health.remove(listener);
+	}
+	
+	public void shutdown() {
+		task.cancel(false);
+	}
+	
+	private void check() {
+		var now = System.nanoTime();
+		var stalled = false;
+		for (var call : inFlight)
+			if (now - call.start > call.budget)
+				stalled |= call.stalled(now);
+		
+		// protocol history may explain the stall, writing it outside of the call monitor avoids delaying the listener
+		if (stalled)
+			ProtocolRecorder.autoDumpAll("stall");
+	}
+	
+	private void recordStall(Call call, long now) {
+		var ref = call.ref;
+		stallCounter.labels(ref.name()).inc();
+		
+		if (degradeThreshold == 0)
+			return;
+		
+		var h = health.computeIfAbsent(ref.envelope().listener(), l -> new Health());
+		if (h.record(now))
+			log.warn("listener `{}` stalled {} times within {} seconds and is now considered degraded",
+					ref.envelope().source(), degradeThreshold, TimeUnit.NANOSECONDS.toSeconds(degradeWindow));
+	}
+	
+	public final class Call {
+		
+		private final Thread thread;
+		private final ListenerReference ref;
+		private final Object subject;
+		private final long start = System.nanoTime();
+		private final long budget;
+		private final boolean interrupt;
+		
+		// guarded by this, required to prevent the watchdog from interrupting the thread after the call returned
+		private boolean done, reported, interrupted;
+		
+		private Call(Thread thread, ListenerReference ref, Object subject, long budget, boolean interrupt) {
+			this.thread = thread;
+			this.ref = ref;
+			this.subject = subject;
+			this.budget = budget;
+			this.interrupt = interrupt;
+		}
+		
+		/**
+		 * @return {@code true} if the thread has been interrupted by the watchdog.
+		 */
+		private synchronized boolean finish() {
+			done = true;
+			return interrupted;
+		}
+		
+		/**
+		 * @return {@code true} if the stall has been reported by this invocation.
+		 */
+		private synchronized boolean stalled(long now) {
+			if (done || reported)
+				return false;
+			reported = true;
+			
+			// exception is only used to carry the stack into the log
+			var stack = new StalledException("listener `%s` exceeded time budget of %d ms on thread `%s`".formatted(
+					ref.envelope().source(), TimeUnit.NANOSECONDS.toMillis(budget), thread.getName()));
+			stack.setStackTrace(thread.getStackTrace());
+			log.warn("listener call is stalled{}: {}", interrupt ? ", interrupting" : "", subject, stack);
+			
+			recordStall(this, now);
+			
+			if (interrupt) {
+				thread.interrupt();
+				interrupted = true;
+			}
+			return true;
+		}
+	}
+	
+	private final class Health {
+		
+		// guarded by this, timestamps of recent stalls
+		private final ArrayDeque<Long> stalls = new ArrayDeque<>();
+		
+		/**
+		 * @return {@code true} if this stall caused the listener to become degraded.
+		 */
+		private synchronized boolean record(long now) {
+			var before = degraded(now);
+			stalls.addLast(now);
+			return !before && stalls.size() >= degradeThreshold;
+		}
+		
+		private synchronized boolean degraded(long now) {
+			while (!stalls.isEmpty() && now - stalls.peekFirst() > degradeWindow)
+				stalls.removeFirst();
+			return stalls.size() >= degradeThreshold;
+		}
+	}
+	
+	private static class StalledException extends Exception {
+		
+		private StalledException(String message) {
+			super(message, null, false, true);
+		}
+	}
+}
@@ -16,8 +16,11 @@ import org.checkerframework.checker.nullness.qual.NonNull;
 import javax.validation.constraints.NotEmpty;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 
 @Slf4j
@@ -31,6 +34,10 @@ public class CronListener implements ChrislieListener {
 	
 	private ScheduledExecutorService executorService;
 	
+	// pending execution of each entry, entries reschedule themselves until the listener is stopped
+	private final Map<CronEntry, ScheduledFuture<?>> futures = new IdentityHashMap<>();
+	private boolean shutdown;
+	
 	@Override
 	public void fromConfig(GsonValidator gson, JsonElement json) throws ListenerException {
 		config = gson.fromJson(json, Config.class);
@@ -43,7 +50,7 @@ public class CronListener implements ChrislieListener {
 	}
 	
 	@Override
-	public void start(Chrisliebot bot, ContextResolver resolver) throws ListenerException {
+	public synchronized void start(Chrisliebot bot, ContextResolver resolver) throws ListenerException {
 		for (var entry : config.entries) {
 			queueRun(entry);
 		}
@@ -51,23 +58,42 @@ public class CronListener implements ChrislieListener {
 		log.info("loaded {} cron entries", config.entries.size());
 	}
 	
-	private void queueRun(CronEntry entry) {
+	@Override
+	public synchronized void stop(Chrisliebot bot, ContextResolver resolver) throws ListenerException {
+		shutdown = true;
+		
+		futures.values().forEach(f -> f.cancel(false));
+		futures.clear();
+	}
+	
+	private synchronized void queueRun(CronEntry entry) {
+		if (shutdown) {
+			futures.remove(entry);
+			return;
+		}
+		
 		var now = ZonedDateTime.now(config.zoneId);
 		var executionTime = ExecutionTime.forCron(entry.cron);
 		var maybeDuration = executionTime.timeToNextExecution(now);
 		
 		if (maybeDuration.isEmpty()) {
 			log.debug("no future executions for cron entry: {}", entry);
+			futures.remove(entry);
 			return;
 		}
 		var duration = maybeDuration.get();
 		
 		log.trace("schedule execution in {} for {}", duration, entry);
 		
-		executorService.schedule(() -> executeCron(entry), duration.toMillis(), TimeUnit.MILLISECONDS);
+		futures.put(entry, executorService.schedule(() -> executeCron(entry), duration.toMillis(), TimeUnit.MILLISECONDS));
 	}
 	
 	private void executeCron(CronEntry entry) {
+		synchronized (this) {
+			if (shutdown)
+				return;
+		}
+		
 		var maybeChannel = entry.channel.channel(bot);
 		if (maybeChannel.isPresent()) {
 			var channel = maybeChannel.get();
@@ -76,7 +102,7 @@ public class CronListener implements ChrislieListener {
 		} else {
 			log.warn("unable to find channel for cron: {}", entry);
 		}
-	
+		
 		// rerun even if channel was not available (might have been down or just starting)
 		queueRun(entry);
 	}
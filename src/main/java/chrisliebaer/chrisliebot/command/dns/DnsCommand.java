@@ -32,6 +32,11 @@ public class DnsCommand implements ChrislieListener.Command {
 		return Optional.of("<Query> [<Type>]");
 	}
 	
+	@Override
+	public double cost() {
+		return 2;
+	}
+	
 	@Override
 	public void execute(Invocation invc) throws ListenerException {
 		var args = invc.arg().split(" ");
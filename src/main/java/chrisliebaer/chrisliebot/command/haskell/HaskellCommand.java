@@ -46,6 +46,11 @@ public class HaskellCommand implements ChrislieListener.Command {
 		return Optional.of("Führt die übergebene Haskell Expression aus. Funktionsdefinitionen können mit `let` in die Expression gebunden werden.");
 	}
 	
+	@Override
+	public double cost() {
+		return 3;
+	}
+	
 	@Override
 	public void execute(Invocation invc) throws ListenerException {
 		var flex = invc.ref().flexConf();
@@ -20,7 +20,7 @@ public class IrcDropAccountCommand implements ChrislieListener.Command {
 	private static final ErrorOutputBuilder ERROR_COMMAND_NOT_FOUND = ErrorOutputBuilder.generic("Der Zielbefehl existiert nicht.");
 	private static final ErrorOutputBuilder ERROR_CYCLE_DETECTED = ErrorOutputBuilder.generic("Das darfst du nicht!");
 	
-	private ContextResolver resolver;
+	private volatile ContextResolver resolver;
 	
 	@Override
 	public Optional<String> help(ChrislieContext ctx, ListenerReference ref) throws ListenerException {
@@ -32,6 +32,11 @@ public class IrcDropAccountCommand implements ChrislieListener.Command {
 		this.resolver = resolver;
 	}
 	
+	@Override
+	public void reload(Chrisliebot bot, ContextResolver resolver) {
+		this.resolver = resolver;
+	}
+	
 	@Override
 	public void execute(Invocation invc) throws ListenerException {
 		if (!IrcService.isIrc(invc)) {
@@ -37,6 +37,11 @@ public class KitEscapeRoutesCommand implements ChrislieListener.Command {
 	
 	private final Map<String, GraphContainer> graphs = new HashMap<>();
 	
+	@Override
+	public double cost() {
+		return 5;
+	}
+	
 	@Override
 	public synchronized void execute(Invocation invc) throws ListenerException {
 		try {
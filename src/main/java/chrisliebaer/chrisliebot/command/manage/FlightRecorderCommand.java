@@ -0,0 +1,156 @@
+package chrisliebaer.chrisliebot.command.manage;
+
+import chrisliebaer.chrisliebot.Chrisliebot;
+import chrisliebaer.chrisliebot.command.ChrislieListener;
+import chrisliebaer.chrisliebot.command.ListenerReference;
+import chrisliebaer.chrisliebot.config.ChrislieContext;
+import chrisliebaer.chrisliebot.config.ContextResolver;
+import chrisliebaer.chrisliebot.util.ErrorOutputBuilder;
+import chrisliebaer.chrisliebot.util.GsonValidator;
+import chrisliebaer.chrisliebot.util.parser.ChrislieParser;
+import com.google.gson.JsonElement;
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.validation.constraints.NotBlank;
+import javax.validation.constraints.Positive;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Optional;
+
+/**
+ * Controls a continuous flight recording of the bot. The recording only keeps a limited window of events, so it can run
+ * permanently and be dumped after a stall occurred.
+ */
+@Slf4j
+public class FlightRecorderCommand implements ChrislieListener.Command {
+	
+	private static final String RECORDING_NAME = "chrisliebot";
+	private static final DateTimeFormatter FILE_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+	
+	private Config cfg;
+	
+	// guarded by this
+	private Recording recording;
+	
+	@Override
+	public Optional<String> help(ChrislieContext ctx, ListenerReference ref) throws ListenerException {
+		return Optional.of("Steuert die Aufzeichnung des Flight Recorders: start, stop, dump, status");
+	}
+	
+	@Override
+	public void fromConfig(GsonValidator gson, JsonElement json) throws ListenerException {
+		cfg = gson.fromJson(json, Config.class);
+	}
+	
+	@Override
+	public void start(Chrisliebot bot, ContextResolver resolver) throws ListenerException {
+		if (cfg.autostart)
+			startRecording();
+	}
+	
+	@Override
+	public synchronized void stop(Chrisliebot bot, ContextResolver resolver) throws ListenerException {
+		if (recording != null) {
+			recording.close();
+			recording = null;
+		}
+	}
+	
+	@Override
+	public void execute(Invocation invc) throws ListenerException {
+		var parser = new ChrislieParser(invc.arg());
+		var mode = parser.word(true).consume().optional().orElse("status");
+		
+		switch (mode.toLowerCase()) {
+			case "start" -> {
+				if (startRecording())
+					invc.reply("Aufzeichnung wurde gestartet.");
+				else
+					invc.reply("Es läuft bereits eine Aufzeichnung.");
+			}
+			case "stop" -> {
+				synchronized (this) {
+					if (recording == null) {
+						ErrorOutputBuilder.generic("Es läuft keine Aufzeichnung.").write(invc).send();
+						return;
+					}
+					recording.close();
+					recording = null;
+				}
+				invc.reply("Aufzeichnung wurde beendet.");
+			}
+			case "dump" -> {
+				var file = dump();
+				if (file.isEmpty()) {
+					ErrorOutputBuilder.generic("Es läuft keine Aufzeichnung.").write(invc).send();
+					return;
+				}
+				invc.reply("Aufzeichnung wurde nach `%s` gespeichert.".formatted(file.get()));
+			}
+			case "status" -> {
+				synchronized (this) {
+					if (recording == null || recording.getState() != RecordingState.RUNNING)
+						invc.reply("Es läuft keine Aufzeichnung.");
+					else
+						invc.reply("Aufzeichnung läuft seit %s, aktuelle Größe: %d KiB".formatted(
+								recording.getStartTime(), recording.getSize() / 1024));
+				}
+			}
+			default -> ErrorOutputBuilder.generic("Unbekannter Modus, erlaubt sind: start, stop, dump, status").write(invc).send();
+		}
+	}
+	
+	/**
+	 * @return {@code false} if there is already a running recording.
+	 */
+	private synchronized boolean startRecording() throws ListenerException {
+		if (recording != null)
+			return false;
+		
+		try {
+			var recording = new Recording(Configuration.getConfiguration(cfg.settings));
+			recording.setName(RECORDING_NAME);
+			recording.setToDisk(true);
+			recording.setMaxAge(Duration.ofMillis(cfg.maxAge));
+			recording.setMaxSize(cfg.maxSize);
+			recording.start();
+			this.recording = recording;
+		} catch (IOException | ParseException e) {
+			throw new ListenerException("failed to load flight recorder settings: " + cfg.settings, e);
+		}
+		log.info("started flight recording with settings `{}`", cfg.settings);
+		return true;
+	}
+	
+	private synchronized Optional<Path> dump() throws ListenerException {
+		if (recording == null)
+			return Optional.empty();
+		
+		var file = Path.of(cfg.directory, "chrisliebot-" + LocalDateTime.now().format(FILE_FORMAT) + ".jfr").toAbsolutePath();
+		try {
+			Files.createDirectories(file.getParent());
+			recording.dump(file);
+		} catch (IOException e) {
+			throw new ListenerException("failed to dump flight recording to " + file, e);
+		}
+		log.info("dumped flight recording to {}", file);
+		return Optional.of(file);
+	}
+	
+	private static class Config {
+		
+		private boolean autostart;
+		private @NotBlank String settings = "default"; // name of jfc file that ships with the jdk
+		private @NotBlank String directory = "recordings";
+		private @Positive long maxAge = Duration.ofHours(1).toMillis();
+		private @Positive long maxSize = 256L * 1024 * 1024;
+	}
+}
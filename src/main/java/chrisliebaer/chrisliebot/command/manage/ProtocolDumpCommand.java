@@ -0,0 +1,54 @@
+package chrisliebaer.chrisliebot.command.manage;
+
+import chrisliebaer.chrisliebot.abstraction.ProtocolRecorder;
+import chrisliebaer.chrisliebot.command.ChrislieListener;
+import chrisliebaer.chrisliebot.command.ListenerReference;
+import chrisliebaer.chrisliebot.config.ChrislieContext;
+import chrisliebaer.chrisliebot.util.ErrorOutputBuilder;
+import chrisliebaer.chrisliebot.util.parser.ChrislieParser;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+/**
+ * Writes the recent protocol history of all services, or only of the given service, into files.
+ */
+@Slf4j
+public class ProtocolDumpCommand implements ChrislieListener.Command {
+	
+	@Override
+	public Optional<String> help(ChrislieContext ctx, ListenerReference ref) throws ListenerException {
+		return Optional.of("Speichert die letzten Protokollzeilen aller Services oder des angegebenen Services: [service]");
+	}
+	
+	@Override
+	public void execute(Invocation invc) throws ListenerException {
+		var parser = new ChrislieParser(invc.arg());
+		var service = parser.word(true).consume().optional();
+		
+		Collection<ProtocolRecorder> recorders = ProtocolRecorder.all();
+		if (service.isPresent())
+			recorders = recorders.stream().filter(recorder -> recorder.name().equals(service.get())).collect(Collectors.toList());
+		
+		if (recorders.isEmpty()) {
+			ErrorOutputBuilder.generic("Es gibt keine Aufzeichnung für diesen Service.").write(invc).send();
+			return;
+		}
+		
+		List<String> files = new ArrayList<>(recorders.size());
+		for (var recorder : recorders) {
+			try {
+				files.add(recorder.dump("manual").toAbsolutePath().toString());
+			} catch (IOException e) {
+				throw new ListenerException("failed to dump protocol history of " + recorder.name(), e);
+			}
+		}
+		log.info("dumped protocol history on request: {}", files);
+		invc.reply("Protokoll wurde gespeichert: " + String.join(", ", files));
+	}
+}
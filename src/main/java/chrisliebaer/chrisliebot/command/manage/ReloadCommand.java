@@ -0,0 +1,31 @@
+package chrisliebaer.chrisliebot.command.manage;
+
+import chrisliebaer.chrisliebot.Chrisliebot;
+import chrisliebaer.chrisliebot.command.ChrislieListener;
+import chrisliebaer.chrisliebot.command.ListenerReference;
+import chrisliebaer.chrisliebot.config.ChrislieContext;
+import chrisliebaer.chrisliebot.util.ErrorOutputBuilder;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Optional;
+
+@Slf4j
+public class ReloadCommand implements ChrislieListener.Command {
+	
+	@Override
+	public Optional<String> help(ChrislieContext ctx, ListenerReference ref) throws ListenerException {
+		return Optional.of("Lädt die Bot Konfiguration neu, ohne die Verbindungen zu trennen. Nur geänderte Listener werden neu gestartet.");
+	}
+	
+	@Override
+	public void execute(Invocation invc) throws ListenerException {
+		try {
+			var report = invc.bot().managment().reload();
+			invc.reply("Konfiguration wurde in %d ms neu geladen: %d neu, %d entfernt, %d unverändert".formatted(
+					report.millis(), report.added(), report.removed(), report.kept()));
+		} catch (Chrisliebot.ChrisliebotException e) {
+			log.warn("reload of bot config failed", e);
+			ErrorOutputBuilder.throwable(e).write(invc).send();
+		}
+	}
+}
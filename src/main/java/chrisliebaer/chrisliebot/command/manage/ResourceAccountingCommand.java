@@ -0,0 +1,60 @@
+package chrisliebaer.chrisliebot.command.manage;
+
+import chrisliebaer.chrisliebot.command.ChrislieListener;
+import chrisliebaer.chrisliebot.command.ListenerReference;
+import chrisliebaer.chrisliebot.config.ChrislieContext;
+import chrisliebaer.chrisliebot.util.ErrorOutputBuilder;
+import chrisliebaer.chrisliebot.util.parser.ChrislieParser;
+
+import java.util.Optional;
+
+/**
+ * Controls the resource accounting of listeners, commands and timer tasks and shows the most expensive of them.
+ */
+public class ResourceAccountingCommand implements ChrislieListener.Command {
+	
+	private static final int LIMIT = 10;
+	
+	@Override
+	public Optional<String> help(ChrislieContext ctx, ListenerReference ref) throws ListenerException {
+		return Optional.of("Erfasst Speicher und CPU Zeit von Listenern, Befehlen und Timern: on, off, status, reset");
+	}
+	
+	@Override
+	public void execute(Invocation invc) throws ListenerException {
+		var accounting = invc.bot().sharedResources().accounting();
+		var parser = new ChrislieParser(invc.arg());
+		var mode = parser.word(true).consume().optional().orElse("status");
+		
+		switch (mode.toLowerCase()) {
+			case "on" -> {
+				if (accounting.enabled(true))
+					invc.reply("Erfassung wurde eingeschaltet.");
+				else
+					ErrorOutputBuilder.generic("Diese JVM unterstützt keine Erfassung pro Thread.").write(invc).send();
+			}
+			case "off" -> {
+				accounting.enabled(false);
+				invc.reply("Erfassung wurde ausgeschaltet.");
+			}
+			case "reset" -> {
+				accounting.reset();
+				invc.reply("Erfasste Werte wurden zurückgesetzt.");
+			}
+			case "status" -> {
+				var entries = accounting.snapshot();
+				var reply = invc.reply();
+				reply.title("Ressourcenverbrauch");
+				reply.description(out -> {
+					out.appendEscape("Erfassung ist %s.".formatted(accounting.enabled() ? "eingeschaltet" : "ausgeschaltet"));
+					if (entries.isEmpty())
+						out.appendEscape(" Bisher wurde nichts erfasst.");
+					for (var e : entries.subList(0, Math.min(LIMIT, entries.size())))
+						out.newLine().appendEscape(e.format());
+				});
+				reply.send();
+			}
+			default -> ErrorOutputBuilder.generic("Unbekannter Modus, erlaubt sind: on, off, status, reset").write(invc).send();
+		}
+	}
+}
@@ -36,7 +36,7 @@ public class MastodonTimelineNotifier extends AbstractIdleService implements Chr
 	
 	private Config cfg;
 	private Chrisliebot bot;
-	private ContextResolver resolver;
+	private volatile ContextResolver resolver;
 	
 	private Thread thread;
 	
@@ -56,6 +56,11 @@ public class MastodonTimelineNotifier extends AbstractIdleService implements Chr
 		startAsync().awaitRunning();
 	}
 	
+	@Override
+	public void reload(Chrisliebot bot, ContextResolver resolver) {
+		this.resolver = resolver;
+	}
+	
 	@Override
 	public void stop(Chrisliebot bot, ContextResolver resolver) throws ListenerException {
 		stopAsync().awaitTerminated();
@@ -90,6 +90,11 @@ public class QwantSearchCommand implements ChrislieListener.Command {
 		errorRateLimited = ErrorOutputBuilder.generic(out -> out.appendEscape("Ich wurde ausgesperrt. Bitte hilf mir: ").append(cfg.captchaUrl));
 	}
 	
+	@Override
+	public double cost() {
+		return 3;
+	}
+	
 	@Override
 	public void execute(Invocation invc) throws ListenerException {
 		var m = invc.msg();
@@ -35,7 +35,7 @@ public class RedditListener implements ChrislieListener {
 	private final HashSet<String> posted = new HashSet<>();
 	
 	private Chrisliebot bot;
-	private ContextResolver resolver;
+	private volatile ContextResolver resolver;
 	private RedditService service;
 	
 	private BetterScheduledService feedUpdate;
@@ -66,6 +66,11 @@ public class RedditListener implements ChrislieListener {
 		feedUpdate.startAsync().awaitRunning();
 	}
 	
+	@Override
+	public void reload(Chrisliebot bot, ContextResolver resolver) {
+		this.resolver = resolver;
+	}
+	
 	@Override
 	public void stop(Chrisliebot bot, ContextResolver resolver) throws ListenerException {
 		feedUpdate.stopAsync().awaitTerminated();
@@ -31,8 +31,10 @@ public class SedListener implements ChrislieListener {
 			return;
 		
 		// we are called for every single message, so we need to store each message in the backbuffer but ignore sed invocations
-		var matcher = SED_PATTERN.matcher(m.message());
-		if (matcher.matches())
+		var text = m.message();
+		// prefix check avoids running the pattern on every chat message
+		var matcher = text.startsWith("s/") ? SED_PATTERN.matcher(text) : null;
+		if (matcher != null && matcher.matches())
 			try {
 				doSed(msg, matcher);
 			} catch (@SuppressWarnings("ProhibitedExceptionCaught") PatternSyntaxException | IndexOutOfBoundsException e) {
@@ -9,16 +9,13 @@ import chrisliebaer.chrisliebot.command.ChrislieListener;
 import chrisliebaer.chrisliebot.config.ContextResolver;
 import chrisliebaer.chrisliebot.util.GsonValidator;
 import com.google.gson.JsonElement;
-import net.dv8tion.jda.api.entities.Message;
 import net.dv8tion.jda.api.entities.Role;
 import org.apache.commons.text.StringSubstitutor;
-import org.nibor.autolink.LinkExtractor;
 import org.nibor.autolink.LinkType;
 
 import javax.validation.constraints.NotNull;
 import javax.validation.constraints.PositiveOrZero;
 import java.util.ArrayList;
-import java.util.EnumSet;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Predicate;
@@ -30,7 +27,7 @@ public class SpecialChannel implements ChrislieListener {
 	
 	private Config cfg;
 	private Chrisliebot bot;
-	private List<Predicate<Message>> predicates;
+	private List<Predicate<DiscordMessage>> predicates;
 	
 	@Override
 	public void fromConfig(GsonValidator gson, JsonElement json) throws ListenerException {
@@ -43,17 +40,15 @@ public class SpecialChannel implements ChrislieListener {
 		predicates = new ArrayList<>();
 		
 		if (cfg.file)
-			predicates.add(message -> !message.getAttachments().isEmpty());
+			predicates.add(message -> !message.ev().getMessage().getAttachments().isEmpty());
 		
 		if (cfg.link)
-			predicates.add(message -> {
-				var extractor = LinkExtractor.builder().linkTypes(EnumSet.of(LinkType.URL)).build();
-				var links = extractor.extractLinks(message.getContentRaw());
-				return links.iterator().hasNext();
-			});
+			predicates.add(message -> message.analysis().hasLink(LinkType.URL));
 		
-		if (cfg.pattern != null)
-			predicates.add(message -> cfg.pattern.asPredicate().test(message.getContentRaw()));
+		if (cfg.pattern != null) {
+			var pattern = cfg.pattern.asPredicate();
+			predicates.add(message -> pattern.test(message.message()));
+		}
 	}
 	
 	/*
@@ -73,6 +68,11 @@ public class SpecialChannel implements ChrislieListener {
 	 	ignoreRoles:
 	 */
 	
+	@Override
+	public boolean concurrent() {
+		return true;
+	}
+	
 	@Override
 	public void onMessage(ListenerMessage msg, boolean isCommand) throws ListenerException {
 		if (!DiscordService.isDiscord(msg))
@@ -90,9 +90,9 @@ public class SpecialChannel implements ChrislieListener {
 		
 		boolean match;
 		if (cfg.match == Match.ANY_MATCH)
-			match = predicates.stream().anyMatch(p -> p.test(ev.getMessage()));
+			match = predicates.stream().anyMatch(p -> p.test(message));
 		else if (cfg.match == Match.ALL_MATCH)
-			match = predicates.stream().allMatch(p -> p.test(ev.getMessage()));
+			match = predicates.stream().allMatch(p -> p.test(message));
 		else
 			throw new Error("match state is not set");
 		
@@ -17,6 +17,7 @@ import chrisliebaer.chrisliebot.config.ContextResolver;
 import chrisliebaer.chrisliebot.config.flex.CommonFlex;
 import chrisliebaer.chrisliebot.config.flex.FlexConf;
 import chrisliebaer.chrisliebot.config.scope.Selector;
+import chrisliebaer.chrisliebot.metrics.jfr.DatabaseEvent;
 import chrisliebaer.chrisliebot.util.ErrorOutputBuilder;
 import chrisliebaer.chrisliebot.util.GsonValidator;
 import com.google.gson.JsonElement;
@@ -96,7 +97,7 @@ public class TimerCommand implements ChrislieListener.Command {
 	private Config cfg;
 	
 	private Chrisliebot bot;
-	private ContextResolver resolver;
+	private volatile ContextResolver resolver;
 	
 	private ScheduledExecutorService timer;
 	private DataSource dataSource;
@@ -141,6 +142,11 @@ public class TimerCommand implements ChrislieListener.Command {
 		timer.scheduleWithFixedDelay(this::purgeExpired, 0, PURGE_INTERVAL, TimeUnit.MILLISECONDS);
 	}
 	
+	@Override
+	public void reload(Chrisliebot bot, ContextResolver resolver) {
+		this.resolver = resolver;
+	}
+	
 	@Override
 	public synchronized void stop(Chrisliebot bot, ContextResolver resolver) throws ListenerException {
 		shutdown = true;
@@ -224,6 +230,7 @@ public class TimerCommand implements ChrislieListener.Command {
 		Predicate<TimerInfo> pred = accessPredicate(invc.msg());
 		
 		List<TimerInfo> timerList = new ArrayList<>();
+		var event = DatabaseEvent.start("timer.list");
 		try (var conn = dataSource.getConnection(); var stmt = conn.prepareStatement(sql)) {
 			stmt.setString(1, invc.service().identifier());
 			stmt.setString(2, invc.msg().user().identifier());
@@ -237,6 +244,8 @@ public class TimerCommand implements ChrislieListener.Command {
 			}
 		} catch (SQLException e) {
 			throw new ListenerException("failed to access users timer", e);
+		} finally {
+			event.commit();
 		}
 		
 		if (timerList.isEmpty()) {
@@ -262,32 +271,39 @@ public class TimerCommand implements ChrislieListener.Command {
 		var arg = getSubCommandArg(invc.arg()); // TODO: rework all methods to throw exception if argument is empty, part of error handling rework
 		long id = decodeTimer(arg);
 		
+		Optional<TimerInfo> maybeTimerInfo;
+		var event = DatabaseEvent.start("timer.delete");
 		try (var conn = dataSource.getConnection()) {
 			// we just fetch the timer and check if the user is allowed to change it, easier then checking inside the query
-			var maybeTimerInfo = getTimerFromDb(conn, id).filter(accessPredicate(invc.msg()));
-			if (maybeTimerInfo.isEmpty() || maybeTimerInfo.get().deleted) {
-				ErrorOutputBuilder.generic(ERROR_TIMER_UNKOWN_OR_RESTRICTED).write(invc).send();
-				return;
-			}
-			var timerInfo = maybeTimerInfo.get();
-			
-			// we know the user is allowed to modify the timer and we know it exists, so we simply update it without further checks
-			String sql = "UPDATE timer SET deleted = TRUE WHERE id = ?";
-			try (var stmt = conn.prepareStatement(sql)) {
-				stmt.setLong(1, id);
-				stmt.execute();
+			maybeTimerInfo = getTimerFromDb(conn, id).filter(accessPredicate(invc.msg())).filter(timerInfo -> !timerInfo.deleted);
+			if (maybeTimerInfo.isPresent()) {
+				
+				// we know the user is allowed to modify the timer and we know it exists, so we simply update it without further checks
+				String sql = "UPDATE timer SET deleted = TRUE WHERE id = ?";
+				try (var stmt = conn.prepareStatement(sql)) {
+					stmt.setLong(1, id);
+					stmt.execute();
+				}
+				
+				// just assume it was a runtime timer, does nothing if assumption is wrong
+				removeRuntime(id);
 			}
-			
-			// just assume it was a runtime timer, does nothing if assumption is wrong
-			removeRuntime(id);
-			
-			var reply = invc.reply();
-			reply.title("Timer gelöscht");
-			formatTimerOutput(reply, timerInfo, invc.ref().flexConf(), false);
-			reply.send();
 		} catch (SQLException e) {
 			throw new ListenerException("failed to delete timer", e);
+		} finally {
+			event.commit();
 		}
+		
+		// replies are sent once the database operation has completed, so they are not part of the event
+		if (maybeTimerInfo.isEmpty()) {
+			ErrorOutputBuilder.generic(ERROR_TIMER_UNKOWN_OR_RESTRICTED).write(invc).send();
+			return;
+		}
+		
+		var reply = invc.reply();
+		reply.title("Timer gelöscht");
+		formatTimerOutput(reply, maybeTimerInfo.get(), invc.ref().flexConf(), false);
+		reply.send();
 	}
 	
 	/**
@@ -315,61 +331,69 @@ public class TimerCommand implements ChrislieListener.Command {
 		var arg = getSubCommandArg(invc.arg());
 		long id = decodeTimer(arg);
 		
+		Optional<TimerInfo> maybeTimerInfo;
+		var event = DatabaseEvent.start("timer.info");
 		try (var conn = dataSource.getConnection()) {
-			var maybeTimerInfo = getTimerFromDb(conn, id).filter(accessPredicate(invc.msg()));
-			if (maybeTimerInfo.isEmpty() || maybeTimerInfo.get().deleted) {
-				ErrorOutputBuilder.generic(ERROR_TIMER_UNKOWN_OR_RESTRICTED).write(invc).send();
-				return;
-			}
-			
-			var reply = invc.reply();
-			reply.title("Timerinformationen");
-			formatTimerOutput(reply, maybeTimerInfo.get(), invc.ref().flexConf(), false);
-			reply.send();
+			maybeTimerInfo = getTimerFromDb(conn, id).filter(accessPredicate(invc.msg())).filter(timerInfo -> !timerInfo.deleted);
 		} catch (SQLException e) {
 			throw new ListenerException("failed to fetch timer from database", e);
+		} finally {
+			event.commit();
 		}
+		
+		if (maybeTimerInfo.isEmpty()) {
+			ErrorOutputBuilder.generic(ERROR_TIMER_UNKOWN_OR_RESTRICTED).write(invc).send();
+			return;
+		}
+		
+		var reply = invc.reply();
+		reply.title("Timerinformationen");
+		formatTimerOutput(reply, maybeTimerInfo.get(), invc.ref().flexConf(), false);
+		reply.send();
 	}
 	
 	private synchronized void restoreCommand(Invocation invc) throws ListenerException, IdParseException {
 		var arg = getSubCommandArg(invc.arg());
 		var id = decodeTimer(arg);
 		
+		TimerInfo timerInfo = null;
+		String error = null;
+		var event = DatabaseEvent.start("timer.restore");
 		try (var conn = dataSource.getConnection()) {
 			var maybeTimerInfo = getTimerFromDb(conn, id).filter(accessPredicate(invc.msg()));
-			if (maybeTimerInfo.isEmpty()) {
-				ErrorOutputBuilder.generic(ERROR_TIMER_UNKOWN_OR_RESTRICTED).write(invc).send();
-				return;
-			}
-			var timerInfo = maybeTimerInfo.get();
-			
-			if (!timerInfo.deleted) {
-				ErrorOutputBuilder.generic("Dieser Timer wurde gar nicht gelöscht.").write(invc).send();
-				return;
-			}
-			
-			if (timerInfo.nextDue().isBefore(Instant.now())) {
-				ErrorOutputBuilder.generic("Dieser Timer ist abgelaufen und muss daher genoozed werden.").write(invc).send();
-				return;
-			}
-			
-			String sql = "UPDATE timer SET deleted = FALSE WHERE id = ?";
-			try (var stmt = conn.prepareStatement(sql)) {
-				stmt.setLong(1, id);
-				stmt.execute();
+			if (maybeTimerInfo.isEmpty())
+				error = ERROR_TIMER_UNKOWN_OR_RESTRICTED;
+			else if (!maybeTimerInfo.get().deleted)
+				error = "Dieser Timer wurde gar nicht gelöscht.";
+			else if (maybeTimerInfo.get().nextDue().isBefore(Instant.now()))
+				error = "Dieser Timer ist abgelaufen und muss daher genoozed werden.";
+			else {
+				timerInfo = maybeTimerInfo.get();
+				
+				String sql = "UPDATE timer SET deleted = FALSE WHERE id = ?";
+				try (var stmt = conn.prepareStatement(sql)) {
+					stmt.setLong(1, id);
+					stmt.execute();
+				}
+				
+				// the restored timer could be hot, so we pull from database
+				refreshRuntimeTimer();
 			}
-			
-			// the restored timer could be hot, so we pull from database
-			refreshRuntimeTimer();
-			
-			var reply = invc.reply();
-			reply.title("Timer wiederhergestellt");
-			formatTimerOutput(reply, timerInfo, invc.ref().flexConf(), false);
-			reply.send();
-			
 		} catch (SQLException e) {
 			throw new ListenerException("failed to restore timer", e);
+		} finally {
+			event.commit();
 		}
+		
+		if (error != null) {
+			ErrorOutputBuilder.generic(error).write(invc).send();
+			return;
+		}
+		
+		var reply = invc.reply();
+		reply.title("Timer wiederhergestellt");
+		formatTimerOutput(reply, timerInfo, invc.ref().flexConf(), false);
+		reply.send();
 	}
 	
 	private synchronized void snoozeCommand(Invocation invc) throws ListenerException, IdParseException {
@@ -395,38 +419,43 @@ public class TimerCommand implements ChrislieListener.Command {
 			return;
 		}
 		
+		Optional<TimerInfo> maybeTimerInfo;
+		var event = DatabaseEvent.start("timer.snooze");
 		try (var conn = dataSource.getConnection()) {
-			var maybeTimerInfo = getTimerFromDb(conn, id).filter(accessPredicate(invc.msg()));
-			if (maybeTimerInfo.isEmpty()) {
-				ErrorOutputBuilder.generic(ERROR_TIMER_UNKOWN_OR_RESTRICTED).write(invc).send();
-				return;
-			}
-			var timerInfo = maybeTimerInfo.get();
-			
-			String sql = "UPDATE timer SET snooze = ?, deleted = FALSE, snoozecount = snoozecount + 1 WHERE id = ?";
-			try (var stmt = conn.prepareStatement(sql)) {
-				stmt.setTimestamp(1, Timestamp.from(when));
-				stmt.setLong(2, id);
+			maybeTimerInfo = getTimerFromDb(conn, id).filter(accessPredicate(invc.msg()));
+			if (maybeTimerInfo.isPresent()) {
+				String sql = "UPDATE timer SET snooze = ?, deleted = FALSE, snoozecount = snoozecount + 1 WHERE id = ?";
+				try (var stmt = conn.prepareStatement(sql)) {
+					stmt.setTimestamp(1, Timestamp.from(when));
+					stmt.setLong(2, id);
+					
+					stmt.execute();
+				}
+				
+				// snooze may move timer from hot to cold, so we potentially remove it
+				removeRuntime(id);
 				
-				stmt.execute();
+				// snooze may also move timer into hot state, so we need to pull after that, it's important to remove the timer first
+				refreshRuntimeTimer();
+				
+				// timer got updated, so we need to fetch new data from database
+				maybeTimerInfo = Optional.of(getTimerFromDb(conn, id).orElseThrow()); // we just updated it, we know it exists
 			}
-			
-			// snooze may move timer from hot to cold, so we potentially remove it
-			removeRuntime(id);
-			
-			// snooze may also move timer into hot state, so we need to pull after that, it's important to remove the timer first
-			refreshRuntimeTimer();
-			
-			// timer got updated, so we need to fetch new data from database
-			timerInfo = getTimerFromDb(conn, id).orElseThrow(); // we just updated it, we know it exists
-			
-			var reply = invc.reply();
-			reply.title("Der Timer wurde erfolgreich verschoben");
-			formatTimerOutput(reply, timerInfo, invc.ref().flexConf(), false);
-			reply.send();
 		} catch (SQLException e) {
 			throw new ListenerException("failed to snooze timer", e);
+		} finally {
+			event.commit();
 		}
+		
+		if (maybeTimerInfo.isEmpty()) {
+			ErrorOutputBuilder.generic(ERROR_TIMER_UNKOWN_OR_RESTRICTED).write(invc).send();
+			return;
+		}
+		
+		var reply = invc.reply();
+		reply.title("Der Timer wurde erfolgreich verschoben");
+		formatTimerOutput(reply, maybeTimerInfo.get(), invc.ref().flexConf(), false);
+		reply.send();
 	}
 	
 	private void formatTimerOutput(ChrislieOutput out, TimerInfo timerInfo, FlexConf flex, boolean due) throws ListenerException {
@@ -591,11 +620,14 @@ public class TimerCommand implements ChrislieListener.Command {
 	
 	private void deleteTimerRecord(long id) {
 		String sql = "UPDATE timer SET deleted = TRUE WHERE id = ?";
+		var event = DatabaseEvent.start("timer.markDeleted");
 		try (var conn = dataSource.getConnection(); var stmt = conn.prepareStatement(sql)) {
 			stmt.setLong(1, id);
 			stmt.execute();
 		} catch (SQLException e) {
 			log.error("failed to mark deletion for due timer: {}", id, e);
+		} finally {
+			event.commit();
 		}
 	}
 	
@@ -607,6 +639,7 @@ public class TimerCommand implements ChrislieListener.Command {
 		// will also delete non expired timers if user was unreachable
 		String sql = "DELETE FROM timer WHERE TIMESTAMPDIFF(SECOND, COALESCE(snooze, due), NOW()) > ?";
 		
+		var event = DatabaseEvent.start("timer.purge");
 		try (var conn = dataSource.getConnection(); var stmt = conn.prepareStatement(sql)) {
 			stmt.setLong(1, cfg.expire / 1000);
 			
@@ -617,6 +650,8 @@ public class TimerCommand implements ChrislieListener.Command {
 			
 		} catch (SQLException e) {
 			log.error("failed to delete expired timers", e);
+		} finally {
+			event.commit();
 		}
 	}
 	
@@ -630,6 +665,7 @@ public class TimerCommand implements ChrislieListener.Command {
 		String sql = "INSERT INTO timer (service, user, channel, text, creation, due, snooze, snoozeCount, deleted)" +
 				"VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
 		
+		var event = DatabaseEvent.start("timer.create");
 		try (var conn = dataSource.getConnection(); var stmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
 			
 			int i = 1;
@@ -658,6 +694,8 @@ public class TimerCommand implements ChrislieListener.Command {
 					throw new SQLException("failed to retrieve timer insert id");
 				}
 			}
+		} finally {
+			event.commit();
 		}
 	}
 	
@@ -688,6 +726,7 @@ public class TimerCommand implements ChrislieListener.Command {
 		String sql = "SELECT * FROM timer WHERE deleted = FALSE AND TIMESTAMPDIFF(SECOND, NOW(), COALESCE(snooze, due)) < ?";
 		List<TimerInfo> timers = new ArrayList<>();
 		
+		var event = DatabaseEvent.start("timer.refresh");
 		try (var conn = dataSource.getConnection(); var stmt = conn.prepareStatement(sql)) {
 			stmt.setLong(1, cfg.prefetchWindow / 1000);
 			
@@ -696,6 +735,8 @@ public class TimerCommand implements ChrislieListener.Command {
 					timers.add(createTimerInfo(rs));
 				}
 			}
+		} finally {
+			event.commit();
 		}
 		
 		// convert new timers into runtime timers
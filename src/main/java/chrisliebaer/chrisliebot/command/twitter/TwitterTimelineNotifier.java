@@ -39,7 +39,7 @@ public class TwitterTimelineNotifier implements ChrislieListener {
 	private boolean shutdown;
 	
 	private Chrisliebot bot;
-	private ContextResolver resolver;
+	private volatile ContextResolver resolver;
 	private List<TimelineSubscription> subscriptions;
 	
 	@Override
@@ -101,9 +101,18 @@ public class TwitterTimelineNotifier implements ChrislieListener {
 		pollTask = timer.scheduleWithFixedDelay(this::poll, 0, cfg.interval, TimeUnit.MILLISECONDS);
 	}
 	
+	@Override
+	public void reload(Chrisliebot bot, ContextResolver resolver) {
+		this.resolver = resolver;
+	}
+	
 	@Override
 	public synchronized void stop(Chrisliebot bot, ContextResolver resolver) throws ListenerException {
-		pollTask.cancel(false);
+		shutdown = true;
+		
+		// listener might be stopped after init() without ever being started
+		if (pollTask != null)
+			pollTask.cancel(false);
 	}
 	
 	private synchronized void poll() {
@@ -9,14 +9,10 @@ import lombok.Data;
 import lombok.EqualsAndHashCode;
 import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
-import org.nibor.autolink.LinkExtractor;
-import org.nibor.autolink.LinkSpan;
-import org.nibor.autolink.LinkType;
 
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.Collections;
-import java.util.EnumSet;
 import java.util.List;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
@@ -58,20 +54,19 @@ public class UrlPreviewListener implements ChrislieListener {
 		cfg = gson.fromJson(json, Config.class);
 	}
 	
+	@Override
+	public boolean concurrent() {
+		return true;
+	}
+	
 	@Override
 	public void onMessage(ListenerMessage msg, boolean isCommand) throws ListenerException {
 		if (msg.msg().message().startsWith(" ") || isCommand) // TODO: is this good?
 			return;
 		
-		// don't reuse since not thread safe
-		var extractor = LinkExtractor.builder()
-				.linkTypes(EnumSet.of(LinkType.WWW, LinkType.URL))
-				.build();
-		
-		var m = msg.msg().message();
-		for (LinkSpan link : extractor.extractLinks(m)) {
+		for (var link : msg.msg().analysis().links()) {
 			try {
-				URL url = new URL(m.substring(link.getBeginIndex(), link.getEndIndex()));
+				URL url = new URL(link.text());
 				if (!cfg.hostBlacklist.contains(url.getHost()))
 					fetchLink(msg, url);
 			} catch (MalformedURLException ignore) {} // don't care about invalid links
@@ -0,0 +1,107 @@
+package chrisliebaer.chrisliebot.config;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.ToString;
+
+import java.util.Arrays;
+import java.util.Optional;
+
+/**
+ * Prefix tree over alias names that allows finding the longest alias at a given position of a message in a single pass
+ * over the message. Since aliases are always lowercase, characters of the message are lowercased while walking the
+ * tree.
+ */
+public class AliasTrie {
+	
+	private final Node root = new Node();
+	
+	public void add(@NonNull String alias) {
+		var node = root;
+		for (int i = 0; i < alias.length(); i++)
+			node = node.child(alias.charAt(i));
+		node.alias = alias;
+	}
+	
+	/**
+	 * Finds the longest alias that starts at the given offset and is followed by either whitespace or the end of the
+	 * string.
+	 *
+	 * @param s    The string to search in.
+	 * @param from The offset at which the alias has to start.
+	 * @return The longest alias at the given offset.
+	 */
+	public Optional<Match> longest(@NonNull String s, int from) {
+		var node = root;
+		String alias = null;
+		int end = from;
+		
+		for (int i = from; i < s.length(); i++) {
+			node = node.next(Character.toLowerCase(s.charAt(i)));
+			if (node == null)
+				break;
+			
+			// aliases must end on word boundary, otherwise we would split words
+			if (node.alias != null && (i + 1 == s.length() || Character.isWhitespace(s.charAt(i + 1)))) {
+				alias = node.alias;
+				end = i + 1;
+			}
+		}
+		
+		return alias == null ? Optional.empty() : Optional.of(new Match(alias, end));
+	}
+	
+	@ToString
+	@AllArgsConstructor(access = AccessLevel.PRIVATE)
+	public static final class Match {
+		
+		/**
+		 * The alias that was found.
+		 */
+		@Getter private final String alias;
+		
+		/**
+		 * The offset of the first character after the alias.
+		 */
+		@Getter private final int end;
+	}
+	
+	private static final class Node {
+		
+		// sorted keys for binary search, most nodes only have a handful of children
+		private char[] keys = new char[0];
+		private Node[] children = new Node[0];
+		
+		private String alias;
+		
+		private Node next(char c) {
+			int idx = Arrays.binarySearch(keys, c);
+			return idx < 0 ? null : children[idx];
+		}
+		
+		private Node child(char c) {
+			int idx = Arrays.binarySearch(keys, c);
+			if (idx >= 0)
+				return children[idx];
+			
+			// insert new child at insertion point
+			idx = -(idx + 1);
+			var node = new Node();
+			
+			var newKeys = new char[keys.length + 1];
+			var newChildren = new Node[children.length + 1];
+			System.arraycopy(keys, 0, newKeys, 0, idx);
+			System.arraycopy(children, 0, newChildren, 0, idx);
+			newKeys[idx] = c;
+			newChildren[idx] = node;
+			System.arraycopy(keys, idx, newKeys, idx + 1, keys.length - idx);
+			System.arraycopy(children, idx, newChildren, idx + 1, children.length - idx);
+			
+			keys = newKeys;
+			children = newChildren;
+			return node;
+		}
+	}
+}
@@ -18,16 +18,26 @@ import java.util.Set;
 
 /**
  * A context contains the resulting set of commands, listeners and flex config values after checking an entity against
- * all scopes.
+ * all scopes. Contexts handed out by the {@link ContextResolver} are frozen and shared between all messages that
+ * matched the same mappings, so they must not be modified.
  */
 @Slf4j
 public class ChrislieContext {
 	
 	private Map<String, ListenerContext> listeners = new HashMap<>();
 	private Map<String, ListenerContext> aliases = new HashMap<>();
+	private AliasTrie aliasTrie = new AliasTrie();
+	private Map<String, ListenerReference> listenersView = Collections.unmodifiableMap(listeners);
+	
+	// only built once this context is frozen, since it would have to be updated with every group otherwise
+	private Map<ChrislieListener, ListenerContext> listenerIndex;
 	
 	private Set<ChrislieGroup> included = Collections.newSetFromMap(new IdentityHashMap<>());
 	
+	// alias map is rebuilt lazily, since adding a group might change the aliases of every listener
+	private boolean aliasesDirty;
+	private boolean frozen;
+	
 	@Getter private FlexConf flexConf = new FlexConf();
 	
 	/**
@@ -44,6 +54,9 @@ public class ChrislieContext {
 	}
 	
 	public void addGroup(ChrislieGroup group) {
+		if (frozen)
+			throw new IllegalStateException("context is frozen and can't be modified");
+		
 		if (included.contains(group)) {
 			log.trace("ignoring include of group `{}` since it was already included before", group.name());
 			return;
@@ -69,19 +82,49 @@ public class ChrislieContext {
 			ctx.apply(e.getValue());
 		}
 		
-		updateAliases();
+		aliasesDirty = true;
 		
 		// remember included group
 		included.add(group);
 	}
 	
+	/**
+	 * Freezes this context, preventing any further groups from being added. All lookup tables are built in advance, so
+	 * a frozen context can be shared between threads without further synchronization.
+	 *
+	 * @return This context for method chaining.
+	 */
+	public ChrislieContext freeze() {
+		if (frozen)
+			return this;
+		
+		if (aliasesDirty)
+			updateAliases();
+		
+		var index = new IdentityHashMap<ChrislieListener, ListenerContext>(listeners.size());
+		for (ListenerContext ctx : listeners.values())
+			index.putIfAbsent(ctx.envelope().listener(), ctx);
+		listenerIndex = index;
+		
+		// listener flex confs use the context flex conf as fallback, so it has to be frozen first
+		flexConf.freeze();
+		for (ListenerContext ctx : listeners.values())
+			ctx.flexConf().freeze();
+		
+		frozen = true;
+		return this;
+	}
+	
 	private void updateAliases() {
+		aliasesDirty = false;
 		aliases.clear();
+		aliasTrie = new AliasTrie();
 		for (ListenerContext ctx : listeners.values()) {
 			for (AliasSet.Alias alias : ctx.aliasSet().get().values()) {
 				var old = aliases.put(alias.name(), ctx);
 				if (old != null)
 					log.warn("conflicting alias found: `{}` is hiding `{}` on alias `{}`", ctx.envelope(), old.envelope(), alias);
+				aliasTrie.add(alias.name());
 			}
 		}
 	}
@@ -91,14 +134,27 @@ public class ChrislieContext {
 	}
 	
 	public Map<String, ListenerReference> listeners() {
-		return Collections.unmodifiableMap(listeners);
+		return listenersView;
 	}
 	
 	public Optional<ListenerReference> alias(String alias) {
+		if (aliasesDirty)
+			updateAliases();
 		return Optional.ofNullable(aliases.get(alias));
 	}
 	
+	/**
+	 * @return A prefix tree containing all aliases of this context.
+	 */
+	public AliasTrie aliasTrie() {
+		if (aliasesDirty)
+			updateAliases();
+		return aliasTrie;
+	}
+	
 	public Optional<? extends ListenerReference> listener(ChrislieListener listener) throws NoSuchElementException {
+		if (listenerIndex != null)
+			return Optional.ofNullable(listenerIndex.get(listener));
 		return listeners.values().stream().filter(ctx -> ctx.envelope().listener() == listener).findAny();
 	}
 	
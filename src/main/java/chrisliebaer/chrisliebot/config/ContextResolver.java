@@ -1,12 +1,23 @@
 package chrisliebaer.chrisliebot.config;
 
+import chrisliebaer.chrisliebot.abstraction.ChrislieIdentifier;
+import chrisliebaer.chrisliebot.abstraction.ChrislieMessage;
 import chrisliebaer.chrisliebot.command.ChrislieListener;
 import chrisliebaer.chrisliebot.command.ListenerReference;
+import chrisliebaer.chrisliebot.config.scope.ScopeIndex;
 import chrisliebaer.chrisliebot.config.scope.ScopeMapping;
 import chrisliebaer.chrisliebot.config.scope.Selector;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import lombok.NonNull;
 
+import java.time.Duration;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
@@ -19,10 +30,39 @@ import java.util.stream.Stream;
 
 public class ContextResolver {
 	
+	/* some selectors depend on state that can change without us noticing (channel modes, memberships, permissions),
+	 * so cached scope results are only kept for a short time
+	 */
+	private static final int SCOPE_CACHE_SIZE = 4096;
+	private static final Duration SCOPE_CACHE_EXPIRE = Duration.ofSeconds(10);
+	
+	// upper bound for distinct mapping combinations, most configs will never come close to this
+	private static final int CONTEXT_CACHE_SIZE = 1024;
+	
 	@Getter private List<ScopeMapping> mappings;
 	@Getter private Map<String, ChrislieGroup> groups;
 	@Getter private Set<ChrislieListener.Envelope> envelopes;
 	
+	// allows skipping mappings that are bound to other services, guilds or channels
+	private final ScopeIndex index;
+	
+	// if no mapping depends on the user, all users in a channel can share the same cache entry
+	private final boolean userDependent;
+	
+	// contains the result of the cacheable part of each mapping, with the bit index being the index of the mapping
+	private final Cache<ScopeKey, BitSet> scopeCache = CacheBuilder.newBuilder()
+			.maximumSize(SCOPE_CACHE_SIZE)
+			.expireAfterWrite(SCOPE_CACHE_EXPIRE)
+			.build();
+	
+	// a context only depends on the set of matched mappings, so every combination is built exactly once and then shared
+	private final LoadingCache<BitSet, ChrislieContext> contextCache = CacheBuilder.newBuilder()
+			.maximumSize(CONTEXT_CACHE_SIZE)
+			.build(CacheLoader.from(this::buildContext));
+	
+	// mappings that contain selectors which have to be evaluated for every message
+	private final BitSet uncacheable;
+	
 	public ContextResolver(@NonNull List<ScopeMapping> mappings) {
 		this.mappings = Collections.unmodifiableList(mappings);
 		
@@ -46,19 +86,105 @@ public class ContextResolver {
 				.map(ListenerReference::envelope)
 				.forEach(envelopes::add);
 		envelopes = Collections.unmodifiableSet(envelopes);
+		
+		index = new ScopeIndex(this.mappings);
+		
+		uncacheable = new BitSet(mappings.size());
+		for (int i = 0; i < mappings.size(); i++) {
+			if (!mappings.get(i).fullyCacheable())
+				uncacheable.set(i);
+		}
+		
+		userDependent = mappings.stream()
+				.map(ScopeMapping::cacheablePart)
+				.anyMatch(c -> c.compareTo(Selector.Cacheability.USER) >= 0);
 	}
 	
-	public <T> ChrislieContext resolve(BiFunction<Selector, T, Boolean> lookup, T t) {
-		ChrislieContext ctx = new ChrislieContext();
+	/**
+	 * Resolves the context of the given message. Unlike {@link #resolve(BiFunction, Object)}, this method will only
+	 * evaluate selectors that depend on the message content and reuse the results of all other selectors for messages
+	 * from the same channel and user.
+	 *
+	 * @param m The message to resolve.
+	 * @return The context of the given message.
+	 */
+	public ChrislieContext resolve(@NonNull ChrislieMessage m) {
+		var key = ScopeKey.of(m, userDependent);
+		
+		// racing threads might both compute the same entry, which is fine since the result will be the same
+		var partial = scopeCache.getIfPresent(key);
+		if (partial == null) {
+			partial = checkCacheable(m);
+			scopeCache.put(key, partial);
+		}
+		
+		// cached sets are shared, so we only copy if we actually have to remove mappings
+		var matched = partial;
+		if (partial.intersects(uncacheable)) {
+			matched = (BitSet) partial.clone();
+			for (int i = matched.nextSetBit(0); i >= 0; i = matched.nextSetBit(i + 1)) {
+				if (!mappings.get(i).checkUncacheable(m))
+					matched.clear(i);
+			}
+		}
 		
-		for (ScopeMapping mapping : mappings)
-			if (mapping.checkAll(lookup, t))
-				ctx.addGroups(mapping.groups());
+		return contextCache.getUnchecked(matched);
+	}
+	
+	/**
+	 * Drops all cached scope results. Subsequent calls to {@link #resolve(ChrislieMessage)} will evaluate all selectors
+	 * again.
+	 */
+	public void invalidateCache() {
+		scopeCache.invalidateAll();
+	}
+	
+	private ChrislieContext buildContext(BitSet matched) {
+		ChrislieContext ctx = new ChrislieContext();
+		for (int i = matched.nextSetBit(0); i >= 0; i = matched.nextSetBit(i + 1))
+			ctx.addGroups(mappings.get(i).groups());
+		return ctx.freeze();
+	}
+	
+	private BitSet checkCacheable(ChrislieMessage m) {
+		// only mappings that are bound to the service, guild or channel of this message (or not bound at all) need to be checked
+		var set = index.candidates(m);
+		for (int i = set.nextSetBit(0); i >= 0; i = set.nextSetBit(i + 1)) {
+			if (!mappings.get(i).checkCacheable(m))
+				set.clear(i);
+		}
+		return set;
+	}
+	
+	public <T> ChrislieContext resolve(BiFunction<Selector, T, Boolean> lookup, T t) {
+		var matched = new BitSet(mappings.size());
+		for (int i = 0; i < mappings.size(); i++) {
+			if (mappings.get(i).checkAll(lookup, t))
+				matched.set(i);
+		}
 		
-		return ctx;
+		return contextCache.getUnchecked(matched);
 	}
 	
 	private static Stream<ChrislieGroup> flattenGroups(ChrislieGroup group) {
 		return Stream.concat(Stream.of(group), group.includes().stream().flatMap(ContextResolver::flattenGroups));
 	}
+	
+	@EqualsAndHashCode
+	@AllArgsConstructor
+	private static final class ScopeKey {
+		
+		private final ChrislieIdentifier.ChannelIdentifier channel;
+		private final String user;
+		private final String displayName;
+		
+		public static ScopeKey of(ChrislieMessage m, boolean userDependent) {
+			var channel = ChrislieIdentifier.ChannelIdentifier.of(m.channel());
+			if (!userDependent)
+				return new ScopeKey(channel, null, null);
+			
+			var user = m.user();
+			return new ScopeKey(channel, user.identifier(), user.displayName());
+		}
+	}
 }
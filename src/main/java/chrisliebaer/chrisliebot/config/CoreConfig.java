@@ -2,9 +2,15 @@ package chrisliebaer.chrisliebot.config;
 
 import chrisliebaer.chrisliebot.abstraction.discord.DiscordBootstrap;
 import chrisliebaer.chrisliebot.abstraction.irc.IrcBootstrap;
+import chrisliebaer.chrisliebot.abstraction.synthetic.SyntheticBootstrap;
+import chrisliebaer.chrisliebot.command.DispatchExecutor;
+import chrisliebaer.chrisliebot.metrics.MetricsServer;
+import chrisliebaer.chrisliebot.metrics.ResourceAccounting;
 import lombok.Getter;
 import lombok.ToString;
 
+import javax.validation.Valid;
+import javax.validation.constraints.Positive;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
@@ -16,11 +22,19 @@ public class CoreConfig {
 	
 	@Getter private Map<String, IrcBootstrap> irc = Map.of();
 	@Getter private Map<String, DiscordBootstrap> discord = Map.of();
+	@Getter @Valid private Map<String, SyntheticBootstrap> synthetic = Map.of(); // generates traffic for load testing
+	
+	@Getter @Valid private DispatchExecutor.Config dispatcher = new DispatchExecutor.Config();
+	@Getter @Valid private MetricsServer.Config metrics = new MetricsServer.Config();
+	@Getter @Valid private ResourceAccounting.Config accounting = new ResourceAccounting.Config();
+	
+	@Getter @Positive private int startupThreads = 8; // listeners are initialized and started in parallel
 	
 	public void ensureDisjoint() {
 		Set<String> set = new HashSet<>();
 		ensureDisjoint(set, irc.keySet());
 		ensureDisjoint(set, discord.keySet());
+		ensureDisjoint(set, synthetic.keySet());
 	}
 	
 	private static void ensureDisjoint(Set<String> set, Set<String> serviceKeys) {
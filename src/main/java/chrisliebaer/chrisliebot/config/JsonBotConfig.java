@@ -2,6 +2,7 @@ package chrisliebaer.chrisliebot.config;
 
 import chrisliebaer.chrisliebot.command.ChrislieListener;
 import chrisliebaer.chrisliebot.command.ListenerReference;
+import chrisliebaer.chrisliebot.command.RateLimiter;
 import chrisliebaer.chrisliebot.config.flex.FlexConf;
 import chrisliebaer.chrisliebot.config.scope.ScopeMapping;
 import chrisliebaer.chrisliebot.config.scope.Selector;
@@ -11,6 +12,7 @@ import chrisliebaer.chrisliebot.config.scope.selector.CombinationSelector;
 import chrisliebaer.chrisliebot.config.scope.selector.DiscordPermissionSelector;
 import chrisliebaer.chrisliebot.config.scope.selector.IrcChannelFlagSelector;
 import chrisliebaer.chrisliebot.config.scope.selector.NSFWSelector;
+import chrisliebaer.chrisliebot.config.scope.selector.PatternSet;
 import chrisliebaer.chrisliebot.config.scope.selector.RegExpSelector;
 import chrisliebaer.chrisliebot.config.scope.selector.ServiceIdentifierSelector;
 import chrisliebaer.chrisliebot.config.scope.selector.ServiceSelector;
@@ -26,6 +28,7 @@ import lombok.extern.slf4j.Slf4j;
 
 import java.lang.reflect.Type;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -66,7 +69,24 @@ public class JsonBotConfig { // TODO: replace code validation with java bean val
 	}
 	
 	public List<ScopeMapping> instance(GsonValidator gson) throws ConfigInitializeException {
-		return new Builder().instanceScopeMapping(gson);
+		return instance(gson, List.of());
+	}
+	
+	/**
+	 * Instances this config but reuses listeners of a previous config if their definition did not change. Reused
+	 * listeners are already initialized and started, so callers have to compare the envelopes of the returned mappings
+	 * with the previous envelopes to figure out which listeners still have to go through their lifecycle.
+	 *
+	 * @param gson     Gson instance for deserializing listener and selector configs.
+	 * @param previous Envelopes of the currently active config.
+	 * @return The instanced scope mappings.
+	 */
+	public List<ScopeMapping> instance(GsonValidator gson, Collection<ChrislieListener.Envelope> previous) throws ConfigInitializeException {
+		Map<String, ChrislieListener.Envelope> reusable = new HashMap<>(previous.size());
+		for (var envelope : previous)
+			reusable.put(envelope.definition(), envelope);
+		
+		return new Builder(reusable).instanceScopeMapping(gson);
 	}
 	
 	/**
@@ -97,7 +117,8 @@ public class JsonBotConfig { // TODO: replace code validation with java bean val
 		private Set<String> alias;
 		
 		@SuppressWarnings("VariableNotUsedInsideIf") // validation is for user, not for program
-		public ListenerReference instance(GsonValidator gson, ChrislieContext ctx, String groupName) throws ChrislieListener.ListenerException {
+		public ListenerReference instance(GsonValidator gson, ChrislieContext ctx, String groupName,
+										  Map<String, ChrislieListener.Envelope> reusable) throws ChrislieListener.ListenerException {
 			
 			// check for common fields
 			if (name == null || name.isBlank())
@@ -111,7 +132,11 @@ public class JsonBotConfig { // TODO: replace code validation with java bean val
 				if (clazz == null || clazz.isBlank())
 					throw new ChrislieListener.ListenerException("no clazz specified");
 				
-				envelope = instanceListener(gson, groupName);
+				// listeners are only identified by their definition, changes to flex conf or aliases are part of the reference
+				var definition = format("%s/%s:%s:%s", groupName, name, clazz, cfg);
+				envelope = reusable.get(definition);
+				if (envelope == null)
+					envelope = instanceListener(gson, groupName, definition);
 			} else if ("ref".equals(type)) {
 				if (clazz != null)
 					throw new ChrislieListener.ListenerException("clazz is only valid in listener definition");
@@ -147,12 +172,12 @@ public class JsonBotConfig { // TODO: replace code validation with java bean val
 					.build();
 		}
 		
-		private ChrislieListener.Envelope instanceListener(GsonValidator gson, String groupName) throws ChrislieListener.ListenerException {
+		private ChrislieListener.Envelope instanceListener(GsonValidator gson, String groupName, String definition) throws ChrislieListener.ListenerException {
 			try {
 				Class<? extends ChrislieListener> clazz = Class.forName(this.clazz).asSubclass(ChrislieListener.class);
 				ChrislieListener listener = clazz.getDeclaredConstructor().newInstance();
 				listener.fromConfig(gson, cfg);
-				return new ChrislieListener.Envelope(listener, format("created as listener `%s` in group `%s`", name, groupName));
+				return new ChrislieListener.Envelope(listener, format("created as listener `%s` in group `%s`", name, groupName), definition);
 			} catch (@SuppressWarnings("OverlyBroadCatchBlock") Exception e) {
 				throw new ChrislieListener.ListenerException("failed to instance listener", e);
 			}
@@ -171,6 +196,14 @@ public class JsonBotConfig { // TODO: replace code validation with java bean val
 		
 		private GsonValidator gson;
 		private Map<String, ChrislieGroup> chrislieGroups;
+		private final Map<String, ChrislieListener.Envelope> reusable;
+		
+		// shared by all regex selectors, so identical expressions are only evaluated once per message
+		private final PatternSet patterns = new PatternSet();
+		
+		private Builder(Map<String, ChrislieListener.Envelope> reusable) {
+			this.reusable = reusable;
+		}
 		
 		public List<ScopeMapping> instanceScopeMapping(GsonValidator gson) throws ConfigInitializeException {
 			this.gson = gson;
@@ -219,6 +252,7 @@ public class JsonBotConfig { // TODO: replace code validation with java bean val
 			if (!chrislieGroups.isEmpty())
 				log.warn("found orphaned groups that are never used: {}", chrislieGroups.keySet());
 			
+			log.debug("compiled {} distinct regular expressions for regex selectors", patterns.size());
 			return scopeMappings;
 		}
 		
@@ -238,7 +272,7 @@ public class JsonBotConfig { // TODO: replace code validation with java bean val
 				case "and" -> CombinationSelector.and(instanceSelectors(json.json));
 				case "nsfw" -> new NSFWSelector();
 				case "channel" -> new ChannelSelector();
-				case "regex" -> new RegExpSelector();
+				case "regex" -> new RegExpSelector(patterns);
 				case "userExistsInChannel" -> new UserExistsInChannel();
 				case "userIsPartOfGuild" -> new UserIsPartOfGuild();
 				case "service" -> new ServiceIdentifierSelector();
@@ -289,7 +323,7 @@ public class JsonBotConfig { // TODO: replace code validation with java bean val
 							throw new ConfigInitializeException(format("duplicated listener name in group `%s`, conflicting anchor was: %s", name, anchor));
 						
 						try {
-							refs.add(anchor.instance(gson, ctx, name));
+							refs.add(anchor.instance(gson, ctx, name, reusable));
 						} catch (ChrislieListener.ListenerException e) {
 							throw new ConfigInitializeException(format("failed to instance listener anchor in group `%s`, anchor was: %s", name, anchor), e);
 						}
@@ -299,6 +333,17 @@ public class JsonBotConfig { // TODO: replace code validation with java bean val
 					
 					g = new ChrislieGroup(name, instanceFlexConf(gson, group.flex), list, refs);
 					
+					// rate limits can be checked against the listeners of this group, other mappings may still change them at runtime
+					ctx.addGroup(g);
+					for (var ref : refs) {
+						var merged = ctx.listener(ref.name()).orElseThrow();
+						try {
+							RateLimiter.validate(gson, merged.flexConf(), merged.envelope().listener());
+						} catch (ChrislieListener.ListenerException e) {
+							throw new ConfigInitializeException(format("invalid rate limit for listener `%s` in group `%s`", ref.name(), name), e);
+						}
+					}
+					
 					// add group to instanced groups as this group is now fully functional
 					chrislieGroups.put(name, g);
 				}
@@ -361,6 +406,11 @@ public class JsonBotConfig { // TODO: replace code validation with java bean val
 				return Optional.empty();
 			}
 		}
+		
+		@Override
+		public Optional<Set<String>> keys() {
+			return Optional.of(map.keySet());
+		}
 	}
 	
 	
@@ -38,12 +38,13 @@ public class CommonFlex {
 		
 		@Override
 		public Optional<T> get(FlexConf flex) {
-			return convert.apply(flex, key);
+			// converted values are cached by frozen flex confs, so patterns and zones are only parsed once per context
+			return flex.derive(this, f -> convert.apply(f, key));
 		}
 		
 		@Override
 		public T getOrFail(FlexConf flex) throws ChrislieListener.ListenerException {
-			return convert.apply(flex, key).orElseThrow(() -> FlexConf.keyNotFound(key));
+			return get(flex).orElseThrow(() -> FlexConf.keyNotFound(key));
 		}
 	}
 	
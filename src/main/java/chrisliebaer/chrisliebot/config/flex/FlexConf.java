@@ -5,31 +5,57 @@ import chrisliebaer.chrisliebot.command.ChrislieListener;
 import lombok.NonNull;
 
 import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.OptionalDouble;
 import java.util.OptionalInt;
 import java.util.OptionalLong;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
 
 /**
  * This class provides a simple map-like data structure for looking up arbitrary values. Multiple instances of this
  * class can be combined by calling {@link #apply(FlexConf)} without modifying the underlining data structure, meaning
  * that each instance that was merged into another instance will still operate the same way it did before the merge.
+ *
+ * <p>
+ * Once a FlexConf is no longer modified, it can be frozen by calling {@link #freeze()}. A frozen FlexConf collapses its
+ * chain of resolvers into a single lookup table and caches converted values, so repeated lookups are cheap.
+ * </p>
  */
 @SuppressWarnings("OverloadedMethodsWithSameNumberOfParameters")
 public class FlexConf {
 	
 	public static final String DISPATCHER_PATTERN = "dispatcher.pattern";
+	public static final String DISPATCHER_PREFIX = "dispatcher.prefix";
 	public static final String DISPATCHER_DISABLE = "dispatcher.disable";
 	public static final String DISPATCHER_VERBOSE = "dispatcher.verbose";
+	public static final String DISPATCHER_TIMEOUT = "dispatcher.timeout";
+	public static final String DISPATCHER_INTERRUPT = "dispatcher.interrupt"; // stalled calls are only interrupted if enabled
+	
+	private static final Resolver EMPTY_RESOLVER = new Resolver() {
+		@Override
+		public Optional<Set<String>> keys() {
+			return Optional.of(Set.of());
+		}
+	};
 	
 	private Resolver resolver;
 	
+	// only present once frozen, contains values that were derived from this FlexConf by providers
+	private Map<Object, Optional<?>> derived;
+	
 	/**
 	 * Creates a new FlexConf without any resolver, meaning that any lookup will fail unless other flex confs are merged
 	 * into this one by calling {@link #apply(FlexConf)}.
 	 */
 	public FlexConf() {
-		this.resolver = new Resolver() {};
+		this.resolver = EMPTY_RESOLVER;
 	}
 	
 	/**
@@ -49,17 +75,7 @@ public class FlexConf {
 	 * @return A new FlexConf that can be modified without changing the state of the given FlexConf.
 	 */
 	public static FlexConf fallback(@NonNull FlexConf o) {
-		return new FlexConf(new Resolver() {
-			@Override
-			public <V> Optional<V> get(String key, Class<V> clazz) {
-				return o.resolver.get(key, clazz);
-			}
-			
-			@Override
-			public Optional<Object> get(String key, Type type) {
-				return o.resolver.get(key, type);
-			}
-		});
+		return new FlexConf(new FallbackResolver(o));
 	}
 	
 	/**
@@ -83,11 +99,58 @@ public class FlexConf {
 	 * @return This flex conf for method chaining.
 	 */
 	public FlexConf apply(@NonNull FlexConf o) {
+		if (isFrozen())
+			throw new IllegalStateException("flexconf is frozen and can't be modified");
+		
 		// this creates a chain of resolver, with the current one being in front
 		resolver = new ChainResolver(o.resolver, resolver); // yes, this is the correct parameter order, new one goes first and becomes current
 		return this;
 	}
 	
+	/**
+	 * Freezes this FlexConf, preventing any further calls to {@link #apply(FlexConf)}. The current resolver chain,
+	 * including all fallbacks, is collapsed into a single lookup table and every value will only be converted once per
+	 * requested type. Since converted values are shared, lists, sets and maps returned by a frozen FlexConf are read
+	 * only. Since fallbacks are resolved at this point, all FlexConfs that act as a fallback should be frozen
+	 * first.
+	 *
+	 * @return This flex conf for method chaining.
+	 */
+	public FlexConf freeze() {
+		if (isFrozen())
+			return this;
+		
+		resolver = FlatResolver.of(resolver);
+		derived = new ConcurrentHashMap<>();
+		return this;
+	}
+	
+	public boolean isFrozen() {
+		return derived != null;
+	}
+	
+	/**
+	 * Derives a value from this FlexConf. If this FlexConf is frozen, the result is cached and the given function will
+	 * not be called again for the same key. This is intended for values that are expensive to create from the raw flex
+	 * values, like formatters or entire config objects.
+	 *
+	 * @param key A key that uniquely identifies the derived value, usually the object that is providing the value.
+	 * @param fn  The function that will derive the value from this FlexConf.
+	 * @return The derived value.
+	 */
+	public <T> Optional<T> derive(@NonNull Object key, @NonNull Function<FlexConf, Optional<T>> fn) {
+		if (!isFrozen())
+			return fn.apply(this);
+		
+		// not using computeIfAbsent() since derivation functions are free to derive other values
+		var val = derived.get(key);
+		if (val == null) {
+			val = fn.apply(this);
+			derived.putIfAbsent(key, val);
+		}
+		return C.unsafeCast(val);
+	}
+	
 	public OptionalInt getInteger(String key) {
 		return resolver.get(key, Integer.class).map(OptionalInt::of).orElseGet(OptionalInt::empty);
 	}
@@ -140,7 +203,7 @@ public class FlexConf {
 		return C.unsafeCast(get(key, type).orElseThrow(() -> keyNotFound(key)));
 	}
 	
-	protected static ChrislieListener.ListenerException keyNotFound(String string) {
+	public static ChrislieListener.ListenerException keyNotFound(String string) {
 		return new ChrislieListener.ListenerException("key not found in flexconf: " + string);
 	}
 	
@@ -157,6 +220,35 @@ public class FlexConf {
 		public default Optional<Object> get(String key, Type type) {
 			return Optional.empty();
 		}
+		
+		/**
+		 * Resolvers that are backed by a fixed set of keys can expose them, which allows frozen FlexConfs to merge
+		 * multiple resolvers into a single lookup table.
+		 *
+		 * @return The set of keys this resolver might return values for, or an empty optional if unknown.
+		 */
+		public default Optional<Set<String>> keys() {
+			return Optional.empty();
+		}
+	}
+	
+	private static class FallbackResolver implements Resolver {
+		
+		private FlexConf fallback;
+		
+		public FallbackResolver(@NonNull FlexConf fallback) {
+			this.fallback = fallback;
+		}
+		
+		@Override
+		public <V> Optional<V> get(String key, Class<V> clazz) {
+			return fallback.resolver.get(key, clazz);
+		}
+		
+		@Override
+		public Optional<Object> get(String key, Type type) {
+			return fallback.resolver.get(key, type);
+		}
 	}
 	
 	// this is art
@@ -180,4 +272,105 @@ public class FlexConf {
 			return current.get(key, type).or(() -> next.get(key, type));
 		}
 	}
+	
+	private static final class FlatResolver implements Resolver {
+		
+		// resolvers in order of precedence, as they would be visited by the chain
+		private List<Resolver> leaves;
+		
+		// maps each key to all resolvers that know about it, null if at least one resolver couldn't provide its keys
+		private Map<String, Resolver[]> table;
+		
+		// converted values by key and type, empty optionals are cached as well, values are shared so collections are read only
+		private final Map<String, Map<Type, Optional<Object>>> values = new ConcurrentHashMap<>();
+		
+		private FlatResolver(List<Resolver> leaves) {
+			this.leaves = leaves;
+			
+			Map<String, List<Resolver>> table = new HashMap<>();
+			for (var leaf : leaves) {
+				var keys = leaf.keys();
+				if (keys.isEmpty())
+					return;
+				
+				for (var key : keys.get())
+					table.computeIfAbsent(key, k -> new ArrayList<>(1)).add(leaf);
+			}
+			
+			this.table = new HashMap<>(table.size());
+			for (var e : table.entrySet())
+				this.table.put(e.getKey(), e.getValue().toArray(Resolver[]::new));
+		}
+		
+		public static FlatResolver of(Resolver resolver) {
+			var leaves = new ArrayList<Resolver>();
+			collect(resolver, leaves);
+			return new FlatResolver(leaves);
+		}
+		
+		private static void collect(Resolver resolver, List<Resolver> leaves) {
+			if (resolver instanceof ChainResolver) {
+				var chain = (ChainResolver) resolver;
+				collect(chain.current, leaves);
+				collect(chain.next, leaves);
+			} else if (resolver instanceof FallbackResolver) {
+				collect(((FallbackResolver) resolver).fallback.resolver, leaves);
+			} else if (resolver instanceof FlatResolver) {
+				leaves.addAll(((FlatResolver) resolver).leaves);
+			} else {
+				leaves.add(resolver);
+			}
+		}
+		
+		@Override
+		public <V> Optional<V> get(String key, Class<V> clazz) {
+			return C.unsafeCast(lookup(key, clazz));
+		}
+		
+		@Override
+		public Optional<Object> get(String key, Type type) {
+			return lookup(key, type);
+		}
+		
+		private Optional<Object> lookup(String key, Type type) {
+			var typed = values.computeIfAbsent(key, k -> new ConcurrentHashMap<>());
+			var val = typed.get(type);
+			if (val == null) {
+				val = resolve(key, type).map(FlatResolver::readOnly);
+				
+				// arrays can't be made read only, so they are converted on every lookup
+				if (val.isPresent() && val.get().getClass().isArray())
+					return val;
+				typed.putIfAbsent(type, val);
+			}
+			return val;
+		}
+		
+		// the converted instance is only referenced by the cache, so wrapping it is enough to make it immutable
+		private static Object readOnly(Object val) {
+			if (val instanceof List)
+				return Collections.unmodifiableList((List<?>) val);
+			if (val instanceof Set)
+				return Collections.unmodifiableSet((Set<?>) val);
+			if (val instanceof Map)
+				return Collections.unmodifiableMap((Map<?, ?>) val);
+			return val;
+		}
+		
+		private Optional<Object> resolve(String key, Type type) {
+			// we still have to try each resolver in order, since conversion to the requested type might fail
+			var candidates = table == null ? leaves.toArray(Resolver[]::new) : table.get(key);
+			if (candidates == null)
+				return Optional.empty();
+			
+			for (var candidate : candidates) {
+				Optional<Object> val = type instanceof Class ?
+						C.unsafeCast(candidate.get(key, (Class<?>) type)) :
+						candidate.get(key, type);
+				if (val.isPresent())
+					return val;
+			}
+			return Optional.empty();
+		}
+	}
 }
@@ -0,0 +1,135 @@
+package chrisliebaer.chrisliebot.config.scope;
+
+import chrisliebaer.chrisliebot.C;
+import chrisliebaer.chrisliebot.abstraction.ChrislieGuild;
+import chrisliebaer.chrisliebot.abstraction.ChrislieMessage;
+import chrisliebaer.chrisliebot.abstraction.ChrislieService;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.ToString;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Most scope mappings are bound to a specific service, guild or channel. This index is compiled once from the list of
+ * mappings and allows looking up all mappings that could possibly match a message without checking every single
+ * mapping. Mappings are referred to by their index in the original list, so iterating over the returned {@link BitSet}
+ * will visit candidates in their original order.
+ */
+public class ScopeIndex {
+	
+	private final BitSet unindexed = new BitSet();
+	private final Map<String, BitSet> channels = new HashMap<>();
+	private final Map<String, BitSet> guilds = new HashMap<>();
+	private final Map<String, BitSet> services = new HashMap<>();
+	private final Map<Class<? extends ChrislieService>, BitSet> serviceTypes = new HashMap<>();
+	
+	public ScopeIndex(@NonNull List<? extends Selector> mappings) {
+		for (int i = 0; i < mappings.size(); i++) {
+			var maybeKey = mappings.get(i).indexKey();
+			if (maybeKey.isEmpty()) {
+				unindexed.set(i);
+				continue;
+			}
+			
+			var key = maybeKey.get();
+			switch (key.kind) {
+				case CHANNEL -> index(channels, C.unsafeCast(key.value), i);
+				case GUILD -> index(guilds, C.unsafeCast(key.value), i);
+				case SERVICE -> index(services, C.unsafeCast(key.value), i);
+				case SERVICE_TYPE -> index(serviceTypes, C.unsafeCast(key.value), i);
+			}
+		}
+	}
+	
+	private static <K> void index(Map<K, BitSet> map, K key, int i) {
+		map.computeIfAbsent(key, k -> new BitSet()).set(i);
+	}
+	
+	/**
+	 * @param m The message to look up.
+	 * @return A new set containing the indices of all mappings that might match the given message. Mappings that are
+	 * not part of this set are guaranteed to not match.
+	 */
+	public BitSet candidates(ChrislieMessage m) {
+		var candidates = (BitSet) unindexed.clone();
+		var service = m.service();
+		var channel = m.channel();
+		
+		or(candidates, services.get(service.identifier()));
+		or(candidates, channels.get(fold(channel.identifier())));
+		channel.guild().map(ChrislieGuild::identifier).ifPresent(guild -> or(candidates, guilds.get(guild)));
+		
+		// there are only a handful of service types, so we can just check all of them
+		for (var e : serviceTypes.entrySet()) {
+			if (e.getKey().isInstance(service))
+				candidates.or(e.getValue());
+		}
+		
+		return candidates;
+	}
+	
+	private static void or(BitSet candidates, BitSet set) {
+		if (set != null)
+			candidates.or(set);
+	}
+	
+	/**
+	 * Folds the case of the given string in such a way that two strings are equal after folding if and only if {@link
+	 * String#equalsIgnoreCase(String)} returns {@code true}.
+	 *
+	 * @param s The string to fold.
+	 * @return The folded string.
+	 */
+	public static String fold(String s) {
+		var sb = new StringBuilder(s.length());
+		for (int i = 0; i < s.length(); i++)
+			sb.append(Character.toLowerCase(Character.toUpperCase(s.charAt(i))));
+		return sb.toString();
+	}
+	
+	/**
+	 * A key is a property of a message that is required for a selector to match. Keys are ordered by how selective
+	 * they are, with channels being the most selective kind.
+	 */
+	@ToString
+	@AllArgsConstructor(access = AccessLevel.PRIVATE)
+	public static final class Key {
+		
+		@Getter private final Kind kind;
+		private final Object value;
+		
+		public static Key channel(@NonNull String channel) {
+			return new Key(Kind.CHANNEL, fold(channel));
+		}
+		
+		public static Key guild(@NonNull String guild) {
+			return new Key(Kind.GUILD, guild);
+		}
+		
+		public static Key service(@NonNull String service) {
+			return new Key(Kind.SERVICE, service);
+		}
+		
+		public static Key serviceType(@NonNull Class<? extends ChrislieService> type) {
+			return new Key(Kind.SERVICE_TYPE, type);
+		}
+		
+		/**
+		 * @param o Another key.
+		 * @return The more selective of both keys.
+		 */
+		public Key narrow(@NonNull Key o) {
+			return kind.compareTo(o.kind) <= 0 ? this : o;
+		}
+	}
+	
+	public enum Kind {
+		CHANNEL, GUILD, SERVICE, SERVICE_TYPE
+	}
+}
@@ -1,18 +1,81 @@
 package chrisliebaer.chrisliebot.config.scope;
 
+import chrisliebaer.chrisliebot.abstraction.ChrislieMessage;
 import chrisliebaer.chrisliebot.config.ChrislieGroup;
 import chrisliebaer.chrisliebot.config.scope.selector.CombinationSelector;
 import com.google.common.collect.ImmutableList;
 import lombok.Getter;
 
+import java.util.ArrayList;
 import java.util.List;
 
 public class ScopeMapping extends CombinationSelector {
 	
 	@Getter private List<ChrislieGroup> groups;
 	
+	// since a mapping is a conjunction, we can split it into a part that can be cached and a part that has to be checked for every message
+	private List<Selector> cacheable;
+	private List<Selector> uncacheable;
+	
 	public ScopeMapping(List<Selector> selectors, List<ChrislieGroup> groups) {
 		super(selectors, Operation.AND);
 		this.groups = ImmutableList.copyOf(groups);
+		
+		List<Selector> cacheable = new ArrayList<>(selectors.size());
+		List<Selector> uncacheable = new ArrayList<>(selectors.size());
+		for (Selector selector : selectors) {
+			if (selector.cacheability() == Cacheability.MESSAGE)
+				uncacheable.add(selector);
+			else
+				cacheable.add(selector);
+		}
+		this.cacheable = ImmutableList.copyOf(cacheable);
+		this.uncacheable = ImmutableList.copyOf(uncacheable);
+	}
+	
+	/**
+	 * @return The most volatile input that the cacheable part of this mapping depends on.
+	 */
+	public Cacheability cacheablePart() {
+		return cacheable.stream()
+				.map(Selector::cacheability)
+				.reduce(Cacheability.STATIC, Cacheability::max);
+	}
+	
+	/**
+	 * @return {@code true} if this mapping doesn't contain any selectors that depend on the message content.
+	 */
+	public boolean fullyCacheable() {
+		return uncacheable.isEmpty();
+	}
+	
+	/**
+	 * Checks all selectors of this mapping whose result only depends on the channel or user of the given message. The
+	 * result can be reused for all messages that share the same channel and user.
+	 *
+	 * @param message The message to check.
+	 * @return {@code true} if all cacheable selectors of this mapping match.
+	 */
+	public boolean checkCacheable(ChrislieMessage message) {
+		for (var selector : cacheable) {
+			if (!selector.check(message))
+				return false;
+		}
+		return true;
+	}
+	
+	/**
+	 * Checks all selectors of this mapping that depend on the message itself. Both this method and {@link
+	 * #checkCacheable(ChrislieMessage)} must return {@code true} for the mapping to match.
+	 *
+	 * @param message The message to check.
+	 * @return {@code true} if all uncacheable selectors of this mapping match.
+	 */
+	public boolean checkUncacheable(ChrislieMessage message) {
+		for (var selector : uncacheable) {
+			if (!selector.check(message))
+				return false;
+		}
+		return true;
 	}
 }
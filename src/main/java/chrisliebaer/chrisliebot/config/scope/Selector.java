@@ -8,6 +8,8 @@ import chrisliebaer.chrisliebot.abstraction.ChrislieUser;
 import chrisliebaer.chrisliebot.util.GsonValidator;
 import com.google.gson.JsonElement;
 
+import java.util.Optional;
+
 
 public interface Selector {
 	
@@ -21,8 +23,62 @@ public interface Selector {
 	
 	public boolean check(ChrislieGuild guild);
 	
+	/**
+	 * Declares which parts of a message the result of {@link #check(ChrislieMessage)} depends on. The context resolver
+	 * uses this information to cache selector results for messages that share the same channel or user. Selectors that
+	 * can't make any guarantees must return {@link Cacheability#MESSAGE}, which is also the default.
+	 *
+	 * @return The most volatile input this selector depends on.
+	 */
+	public default Cacheability cacheability() {
+		return Cacheability.MESSAGE;
+	}
+	
+	/**
+	 * Selectors that can only match messages from a specific service, guild or channel can expose this requirement as
+	 * a key. Mappings are indexed by their key so the resolver can skip mappings that can't possibly match a message.
+	 * Returning a key that doesn't hold for every message accepted by {@link #check(ChrislieMessage)} will break scope
+	 * resolution.
+	 *
+	 * @return A key that every message matched by this selector will satisfy.
+	 */
+	public default Optional<ScopeIndex.Key> indexKey() {
+		return Optional.empty();
+	}
+	
 	public default void fromJson(GsonValidator gson, JsonElement json) throws SelectorException {}
 	
+	/**
+	 * Describes what the result of a selector depends on. Constants are ordered from least to most volatile, so the
+	 * combination of multiple selectors can be computed by taking the maximum.
+	 */
+	public enum Cacheability {
+		
+		/**
+		 * The result never changes, regardless of the message.
+		 */
+		STATIC,
+		
+		/**
+		 * The result only depends on the service and channel of a message.
+		 */
+		CHANNEL,
+		
+		/**
+		 * The result depends on the channel and the user that sent the message.
+		 */
+		USER,
+		
+		/**
+		 * The result depends on the content of the message and must be evaluated for every message.
+		 */
+		MESSAGE;
+		
+		public Cacheability max(Cacheability o) {
+			return compareTo(o) >= 0 ? this : o;
+		}
+	}
+	
 	/**
 	 * Thrown to indicate that the selector was unable to load the provided config.
 	 */
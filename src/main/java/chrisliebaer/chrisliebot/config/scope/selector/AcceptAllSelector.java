@@ -9,6 +9,11 @@ import chrisliebaer.chrisliebot.config.scope.Selector;
 
 public class AcceptAllSelector implements Selector {
 	
+	@Override
+	public Cacheability cacheability() {
+		return Cacheability.STATIC;
+	}
+	
 	@Override
 	public boolean check(ChrislieMessage message) {
 		return true;
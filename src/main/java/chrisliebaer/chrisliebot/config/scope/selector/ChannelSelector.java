@@ -5,10 +5,13 @@ import chrisliebaer.chrisliebot.abstraction.ChrislieGuild;
 import chrisliebaer.chrisliebot.abstraction.ChrislieMessage;
 import chrisliebaer.chrisliebot.abstraction.ChrislieService;
 import chrisliebaer.chrisliebot.abstraction.ChrislieUser;
+import chrisliebaer.chrisliebot.config.scope.ScopeIndex;
 import chrisliebaer.chrisliebot.config.scope.Selector;
 import chrisliebaer.chrisliebot.util.GsonValidator;
 import com.google.gson.JsonElement;
 
+import java.util.Optional;
+
 public class ChannelSelector implements Selector {
 	
 	private String channel;
@@ -18,6 +21,16 @@ public class ChannelSelector implements Selector {
 		channel = json.getAsString();
 	}
 	
+	@Override
+	public Cacheability cacheability() {
+		return Cacheability.CHANNEL;
+	}
+	
+	@Override
+	public Optional<ScopeIndex.Key> indexKey() {
+		return Optional.of(ScopeIndex.Key.channel(channel));
+	}
+	
 	@Override
 	public boolean check(ChrislieMessage message) {
 		return check(message.channel());
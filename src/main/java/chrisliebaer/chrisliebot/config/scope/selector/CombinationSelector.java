@@ -5,16 +5,19 @@ import chrisliebaer.chrisliebot.abstraction.ChrislieGuild;
 import chrisliebaer.chrisliebot.abstraction.ChrislieMessage;
 import chrisliebaer.chrisliebot.abstraction.ChrislieService;
 import chrisliebaer.chrisliebot.abstraction.ChrislieUser;
+import chrisliebaer.chrisliebot.config.scope.ScopeIndex;
 import chrisliebaer.chrisliebot.config.scope.Selector;
 import com.google.common.base.Preconditions;
 
 import java.util.List;
+import java.util.Optional;
 import java.util.function.BiFunction;
 
 public class CombinationSelector implements Selector {
 	
 	private List<Selector> selectors;
 	private Operation operation;
+	private Cacheability cacheability;
 	
 	protected enum Operation {
 		OR, AND
@@ -25,6 +28,11 @@ public class CombinationSelector implements Selector {
 		
 		this.selectors = selectors;
 		this.operation = operation;
+		
+		// a combination is only as cacheable as its most volatile selector
+		cacheability = selectors.stream()
+				.map(Selector::cacheability)
+				.reduce(Cacheability.STATIC, Cacheability::max);
 	}
 	
 	public static CombinationSelector or(List<Selector> selectors) {
@@ -58,6 +66,24 @@ public class CombinationSelector implements Selector {
 		return true;
 	}
 	
+	@Override
+	public Cacheability cacheability() {
+		return cacheability;
+	}
+	
+	@Override
+	public Optional<ScopeIndex.Key> indexKey() {
+		// a disjunction could be indexed with multiple keys, but they are rare enough to not bother
+		if (operation == Operation.OR)
+			return Optional.empty();
+		
+		// every selector in a conjunction has to match, so we can pick the most selective key
+		return selectors.stream()
+				.map(Selector::indexKey)
+				.flatMap(Optional::stream)
+				.reduce(ScopeIndex.Key::narrow);
+	}
+	
 	@Override
 	public boolean check(ChrislieMessage message) {
 		return checkAll(Selector::check, message);
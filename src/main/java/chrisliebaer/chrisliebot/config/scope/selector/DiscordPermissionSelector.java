@@ -16,12 +16,18 @@ import java.util.Set;
 
 public class DiscordPermissionSelector implements Selector {
 	
-	private Set<Permission> permissions;
+	private long permissions; // raw permission bits, compared against the cached permissions of the member
 	
 	@Override
 	@SuppressWarnings("EmptyClass")
 	public void fromJson(GsonValidator gson, JsonElement json) throws SelectorException {
-		permissions = gson.fromJson(json, new TypeToken<Set<Permission>>(){}.getType());
+		Set<Permission> permissions = gson.fromJson(json, new TypeToken<Set<Permission>>(){}.getType());
+		this.permissions = Permission.getRaw(permissions);
+	}
+	
+	@Override
+	public Cacheability cacheability() {
+		return Cacheability.USER;
 	}
 	
 	@Override
@@ -32,15 +38,7 @@ public class DiscordPermissionSelector implements Selector {
 			if (maybeGuild.isEmpty())
 				return false;
 			var guild = maybeGuild.get().guild();
-			var member = guild.getMember(message.user().user());
-			if (member == null)
-				return false;
-			
-			for (var perm : permissions)
-				if (!member.hasPermission(perm))
-					return false;
-			
-			return true;
+			return message.service().permissions().hasPermissions(guild, message.user().user(), permissions);
 		}
 		
 		return check(chrislieMessage.user());
@@ -5,9 +5,12 @@ import chrisliebaer.chrisliebot.abstraction.ChrislieGuild;
 import chrisliebaer.chrisliebot.abstraction.ChrislieMessage;
 import chrisliebaer.chrisliebot.abstraction.ChrislieService;
 import chrisliebaer.chrisliebot.abstraction.ChrislieUser;
+import chrisliebaer.chrisliebot.config.scope.ScopeIndex;
 import chrisliebaer.chrisliebot.config.scope.Selector;
 import lombok.NonNull;
 
+import java.util.Optional;
+
 public class GuildSelector implements Selector {
 	
 	private final ChrislieGuild guild;
@@ -16,6 +19,16 @@ public class GuildSelector implements Selector {
 		this.guild = guild;
 	}
 	
+	@Override
+	public Cacheability cacheability() {
+		return Cacheability.CHANNEL;
+	}
+	
+	@Override
+	public Optional<ScopeIndex.Key> indexKey() {
+		return Optional.of(ScopeIndex.Key.guild(guild.identifier()));
+	}
+	
 	@Override
 	public boolean check(ChrislieMessage message) {
 		return check(message.channel());
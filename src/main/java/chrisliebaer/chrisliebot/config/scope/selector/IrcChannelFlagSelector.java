@@ -26,6 +26,11 @@ public class IrcChannelFlagSelector implements Selector {
 			throw new SelectorException("char list must not be null");
 	}
 	
+	@Override
+	public Cacheability cacheability() {
+		return Cacheability.CHANNEL;
+	}
+	
 	@Override
 	public boolean check(ChrislieMessage message) {
 		return check(message.channel());
@@ -9,6 +9,11 @@ import chrisliebaer.chrisliebot.config.scope.Selector;
 
 public class NSFWSelector implements Selector {
 	
+	@Override
+	public Cacheability cacheability() {
+		return Cacheability.CHANNEL;
+	}
+	
 	@Override
 	public boolean check(ChrislieMessage message) {
 		return message.channel().isNSFW();
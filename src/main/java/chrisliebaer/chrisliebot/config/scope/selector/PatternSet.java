@@ -0,0 +1,90 @@
+package chrisliebaer.chrisliebot.config.scope.selector;
+
+import lombok.NonNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Contains the regular expressions of all {@link RegExpSelector}s of a config. Identical expressions are compiled once
+ * and share their results, so each distinct expression scans a given text at most once, no matter how many selectors
+ * use it. Matchers and results are kept per thread and reused, so testing a text doesn't allocate.
+ * <p>
+ * Expressions may only be registered while the config is loaded, before the set is shared with other threads.
+ */
+public final class PatternSet {
+	
+	private final List<Pattern> patterns = new ArrayList<>();
+	private final Map<String, Integer> slots = new HashMap<>();
+	
+	// shared by all sets, so frames of sets from previous configs are dropped along with their set instead of lingering in every thread
+	private static final ThreadLocal<Map<PatternSet, Frame>> FRAMES = ThreadLocal.withInitial(WeakHashMap::new);
+	
+	/**
+	 * Compiles the given expression, unless it is already part of this set.
+	 *
+	 * @param regex The regular expression.
+	 * @return The slot that has to be passed to {@link #find(int, String)}.
+	 */
+	public int register(@NonNull String regex) {
+		var slot = slots.get(regex);
+		if (slot != null)
+			return slot;
+		
+		patterns.add(Pattern.compile(regex));
+		slots.put(regex, patterns.size() - 1);
+		return patterns.size() - 1;
+	}
+	
+	/**
+	 * @return The number of distinct expressions in this set.
+	 */
+	public int size() {
+		return patterns.size();
+	}
+	
+	/**
+	 * Tests whether the expression in the given slot can be found within the given text. The result is remembered for
+	 * the current thread until the slot is tested against a different text.
+	 */
+	public boolean find(int slot, @NonNull String text) {
+		return FRAMES.get().computeIfAbsent(this, k -> new Frame()).find(patterns, slot, text);
+	}
+	
+	private static final class Frame {
+		
+		private Matcher[] matchers = new Matcher[0];
+		private String[] inputs = new String[0];
+		private boolean[] results = new boolean[0];
+		
+		private boolean find(List<Pattern> patterns, int slot, String text) {
+			if (slot >= matchers.length) {
+				var size = patterns.size();
+				matchers = Arrays.copyOf(matchers, size);
+				inputs = Arrays.copyOf(inputs, size);
+				results = Arrays.copyOf(results, size);
+			}
+			
+			// strings are immutable, so the same instance will always yield the same result
+			if (inputs[slot] == text)
+				return results[slot];
+			
+			var matcher = matchers[slot];
+			if (matcher == null)
+				matcher = matchers[slot] = patterns.get(slot).matcher(text);
+			else
+				matcher.reset(text);
+			
+			var result = matcher.find();
+			inputs[slot] = text;
+			results[slot] = result;
+			return result;
+		}
+	}
+}
@@ -5,77 +5,126 @@ import chrisliebaer.chrisliebot.abstraction.ChrislieGuild;
 import chrisliebaer.chrisliebot.abstraction.ChrislieMessage;
 import chrisliebaer.chrisliebot.abstraction.ChrislieService;
 import chrisliebaer.chrisliebot.abstraction.ChrislieUser;
+import chrisliebaer.chrisliebot.config.scope.ScopeIndex;
 import chrisliebaer.chrisliebot.config.scope.Selector;
 import chrisliebaer.chrisliebot.util.GsonValidator;
 import com.google.gson.JsonElement;
 import com.google.gson.reflect.TypeToken;
-import lombok.Builder;
-import lombok.Getter;
+import lombok.NonNull;
 
-import java.util.ArrayList;
-import java.util.List;
 import java.util.Map;
 import java.util.Optional;
-import java.util.function.Function;
-import java.util.function.Predicate;
-import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
 
 public class RegExpSelector implements Selector {
 	
-	private List<Function<DataContainer, Boolean>> fns;
+	// regular expressions are shared with all other regex selectors of the same config
+	private final PatternSet patterns;
+	
+	// each condition consists of a field and either a literal or the slot of a regular expression
+	private Field[] fields;
+	private String[] literals;
+	private int[] slots;
+	
+	private Cacheability cacheability = Cacheability.STATIC;
+	private ScopeIndex.Key indexKey;
+	
+	public RegExpSelector(@NonNull PatternSet patterns) {
+		this.patterns = patterns;
+	}
+	
+	@Override
+	public Cacheability cacheability() {
+		return cacheability;
+	}
+	
+	@Override
+	public Optional<ScopeIndex.Key> indexKey() {
+		return Optional.ofNullable(indexKey);
+	}
 	
 	@Override
 	public boolean check(ChrislieMessage message) {
-		return test(DataContainer.builder()
-				.service(message.service().identifier())
-				.guild(message.channel().guild().map(ChrislieGuild::identifier).orElse(null))
-				.channel(message.channel().identifier())
-				.user(message.user().identifier())
-				.displayName(message.user().displayName())
-				.message(message.message())
-				
-				.build());
+		for (int i = 0; i < fields.length; i++) {
+			var val = switch (fields[i]) {
+				case SERVICE -> message.service().identifier();
+				case GUILD -> guild(message.channel());
+				case CHANNEL -> message.channel().identifier();
+				case USER -> message.user().identifier();
+				case DISPLAY_NAME -> message.user().displayName();
+				case MESSAGE -> message.message();
+			};
+			if (!test(i, val))
+				return false;
+		}
+		return true;
 	}
 	
 	@Override
 	public boolean check(ChrislieUser user) {
-		return test(DataContainer.builder()
-				.service(user.service().identifier())
-				.user(user.identifier())
-				.displayName(user.displayName())
-				
-				.build());
+		for (int i = 0; i < fields.length; i++) {
+			var val = switch (fields[i]) {
+				case SERVICE -> user.service().identifier();
+				case USER -> user.identifier();
+				case DISPLAY_NAME -> user.displayName();
+				default -> null;
+			};
+			if (!test(i, val))
+				return false;
+		}
+		return true;
 	}
 	
 	@Override
 	public boolean check(ChrislieChannel channel) {
-		return test(DataContainer.builder()
-				.service(channel.service().identifier())
-				.guild(channel.guild().map(ChrislieGuild::identifier).orElse(null))
-				.channel(channel.identifier())
-				
-				.build());
+		for (int i = 0; i < fields.length; i++) {
+			var val = switch (fields[i]) {
+				case SERVICE -> channel.service().identifier();
+				case GUILD -> guild(channel);
+				case CHANNEL -> channel.identifier();
+				default -> null;
+			};
+			if (!test(i, val))
+				return false;
+		}
+		return true;
 	}
 	
 	@Override
 	public boolean check(ChrislieService service) {
-		return test(DataContainer.builder()
-				.service(service.identifier())
-				
-				.build());
+		for (int i = 0; i < fields.length; i++) {
+			if (!test(i, fields[i] == Field.SERVICE ? service.identifier() : null))
+				return false;
+		}
+		return true;
 	}
 	
 	@Override
 	public boolean check(ChrislieGuild guild) {
-		return test(DataContainer.builder()
-				.service(guild.service().identifier())
-				.guild(guild.identifier())
-				
-				.build());
+		for (int i = 0; i < fields.length; i++) {
+			var val = switch (fields[i]) {
+				case SERVICE -> guild.service().identifier();
+				case GUILD -> guild.identifier();
+				default -> null;
+			};
+			if (!test(i, val))
+				return false;
+		}
+		return true;
+	}
+	
+	private boolean test(int condition, String val) {
+		if (val == null)
+			return false;
+		
+		var literal = literals[condition];
+		return literal != null ? literal.equals(val) : patterns.find(slots[condition], val);
 	}
 	
-	private boolean test(DataContainer c) {
-		return fns.stream().allMatch(f -> f.apply(c));
+	// avoids mapping the optional, since this is called for every message
+	private static String guild(ChrislieChannel channel) {
+		var guild = channel.guild();
+		return guild.isPresent() ? guild.get().identifier() : null;
 	}
 	
 	@SuppressWarnings("EmptyClass")
@@ -84,54 +133,70 @@ public class RegExpSelector implements Selector {
 		var type = new TypeToken<Map<String, String>>() {}.getType();
 		Map<String, String> map = gson.fromJson(json, type);
 		
-		fns = new ArrayList<>(map.size());
+		fields = new Field[map.size()];
+		literals = new String[map.size()];
+		slots = new int[map.size()];
 		
+		int i = 0;
 		for (var e : map.entrySet()) {
 			var key = e.getKey();
 			var pattern = e.getValue();
-			var accessor = DataContainer.accessor(key);
-			if (accessor.isEmpty())
+			var field = Field.of(key);
+			if (field.isEmpty())
 				throw new SelectorException(String.format("unknown key `%s` could not be mapped to accessor", key));
 			
 			if (pattern == null)
 				throw new SelectorException(String.format("pattern for key `%s` is null", key));
 			
-			// if pattern starts with r: it is parsed as a regex
-			Predicate<String> predicate;
-			if (pattern.startsWith("r:"))
-				predicate = Pattern.compile(pattern.substring(2)).asPredicate();
-			else
-				predicate = pattern::equals;
+			fields[i] = field.get();
+			cacheability = cacheability.max(field.get().cacheability);
 			
-			// build function that takes container, uses accessor to extract value and tests with the given predicate
-			fns.add(c -> {
-				var val = accessor.get().apply(c);
-				return val != null && predicate.test(val);
-			});
+			// if pattern starts with r: it is parsed as a regex
+			if (pattern.startsWith("r:")) {
+				try {
+					slots[i] = patterns.register(pattern.substring(2));
+				} catch (PatternSyntaxException ex) {
+					throw new SelectorException(String.format("invalid pattern for key `%s`", key), ex);
+				}
+			} else {
+				literals[i] = pattern;
+				
+				// literal patterns on discriminating keys allow the mapping to be indexed
+				field.get().indexKey(pattern).ifPresent(k -> indexKey = indexKey == null ? k : indexKey.narrow(k));
+			}
+			i++;
 		}
 	}
 	
-	@Builder
-	private static class DataContainer {
+	private enum Field {
+		SERVICE("service", Cacheability.CHANNEL),
+		GUILD("guild", Cacheability.CHANNEL),
+		CHANNEL("channel", Cacheability.CHANNEL),
+		USER("user", Cacheability.USER),
+		DISPLAY_NAME("displayName", Cacheability.USER),
+		MESSAGE("message", Cacheability.MESSAGE);
 		
-		@Getter private final String service;
-		@Getter private final String guild;
-		@Getter private final String channel;
-		@Getter private final String user;
-		@Getter private final String displayName;
-		@Getter private final String message;
+		private final String key;
+		private final Cacheability cacheability;
 		
-		public static Optional<Function<DataContainer, String>> accessor(String key) {
-			if (key == null)
-				return Optional.empty();
-			
-			return switch (key) {
-				case "service" -> Optional.of(DataContainer::service);
-				case "guild" -> Optional.of(DataContainer::guild);
-				case "channel" -> Optional.of(DataContainer::channel);
-				case "user" -> Optional.of(DataContainer::user);
-				case "displayName" -> Optional.of(DataContainer::displayName);
-				case "message" -> Optional.of(DataContainer::message);
+		Field(String key, Cacheability cacheability) {
+			this.key = key;
+			this.cacheability = cacheability;
+		}
+		
+		public static Optional<Field> of(String key) {
+			for (var field : values()) {
+				if (field.key.equals(key))
+					return Optional.of(field);
+			}
+			return Optional.empty();
+		}
+		
+		public Optional<ScopeIndex.Key> indexKey(String value) {
+			return switch (this) {
+				case SERVICE -> Optional.of(ScopeIndex.Key.service(value));
+				case GUILD -> Optional.of(ScopeIndex.Key.guild(value));
+				case CHANNEL -> Optional.of(ScopeIndex.Key.channel(value));
 				default -> Optional.empty();
 			};
 		}
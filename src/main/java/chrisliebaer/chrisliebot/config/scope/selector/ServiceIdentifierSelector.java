@@ -5,14 +5,27 @@ import chrisliebaer.chrisliebot.abstraction.ChrislieGuild;
 import chrisliebaer.chrisliebot.abstraction.ChrislieMessage;
 import chrisliebaer.chrisliebot.abstraction.ChrislieService;
 import chrisliebaer.chrisliebot.abstraction.ChrislieUser;
+import chrisliebaer.chrisliebot.config.scope.ScopeIndex;
 import chrisliebaer.chrisliebot.config.scope.Selector;
 import chrisliebaer.chrisliebot.util.GsonValidator;
 import com.google.gson.JsonElement;
 
+import java.util.Optional;
+
 public class ServiceIdentifierSelector implements Selector {
 	
 	private String identifier;
 	
+	@Override
+	public Cacheability cacheability() {
+		return Cacheability.CHANNEL;
+	}
+	
+	@Override
+	public Optional<ScopeIndex.Key> indexKey() {
+		return Optional.of(ScopeIndex.Key.service(identifier));
+	}
+	
 	@Override
 	public boolean check(ChrislieMessage message) {
 		return check(message.service());
@@ -7,10 +7,18 @@ import chrisliebaer.chrisliebot.abstraction.ChrislieService;
 import chrisliebaer.chrisliebot.abstraction.ChrislieUser;
 import chrisliebaer.chrisliebot.abstraction.discord.DiscordService;
 import chrisliebaer.chrisliebot.abstraction.irc.IrcService;
+import chrisliebaer.chrisliebot.config.scope.ScopeIndex;
 import chrisliebaer.chrisliebot.config.scope.Selector;
 
+import java.util.Optional;
+
 public abstract class ServiceSelector implements Selector {
 	
+	@Override
+	public Cacheability cacheability() {
+		return Cacheability.CHANNEL;
+	}
+	
 	@Override
 	public boolean check(ChrislieMessage message) {
 		return check(message.service());
@@ -33,6 +41,11 @@ public abstract class ServiceSelector implements Selector {
 	
 	public static class DiscordSelector extends ServiceSelector {
 		
+		@Override
+		public Optional<ScopeIndex.Key> indexKey() {
+			return Optional.of(ScopeIndex.Key.serviceType(DiscordService.class));
+		}
+		
 		@Override
 		public boolean check(ChrislieService service) {
 			return service instanceof DiscordService;
@@ -41,6 +54,11 @@ public abstract class ServiceSelector implements Selector {
 	
 	public static class IrcSelector extends ServiceSelector {
 		
+		@Override
+		public Optional<ScopeIndex.Key> indexKey() {
+			return Optional.of(ScopeIndex.Key.serviceType(IrcService.class));
+		}
+		
 		@Override
 		public boolean check(ChrislieService service) {
 			return service instanceof IrcService;
@@ -24,6 +24,11 @@ public class UserExistsInChannel implements Selector {
 			throw new SelectorException("user must be set");
 	}
 	
+	@Override
+	public Cacheability cacheability() {
+		return Cacheability.USER;
+	}
+	
 	@Override
 	public boolean check(ChrislieMessage message) {
 		var user = message.user();
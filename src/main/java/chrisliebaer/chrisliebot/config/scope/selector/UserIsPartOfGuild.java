@@ -21,6 +21,11 @@ public class UserIsPartOfGuild implements Selector {
 		cfg = Objects.requireNonNull(gson.fromJson(json, Config.class), "config is null");
 	}
 	
+	@Override
+	public Cacheability cacheability() {
+		return Cacheability.USER;
+	}
+	
 	@Override
 	public boolean check(ChrislieMessage message) {
 		var isOtherGuild = message.channel().guild()
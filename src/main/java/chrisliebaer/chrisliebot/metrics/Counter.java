@@ -0,0 +1,29 @@
+package chrisliebaer.chrisliebot.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Monotonically increasing counter. Backed by a {@link LongAdder}, so concurrent increments from different threads
+ * don't contend with each other.
+ */
+public class Counter implements Metric {
+	
+	private final LongAdder adder = new LongAdder();
+	
+	public void inc() {
+		adder.increment();
+	}
+	
+	public void add(long n) {
+		adder.add(n);
+	}
+	
+	public long sum() {
+		return adder.sum();
+	}
+	
+	@Override
+	public void write(StringBuilder sb, String name, String labels) {
+		Metric.sample(sb, name, labels, Long.toString(adder.sum()));
+	}
+}
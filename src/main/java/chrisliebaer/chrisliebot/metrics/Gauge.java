@@ -0,0 +1,20 @@
+package chrisliebaer.chrisliebot.metrics;
+
+import lombok.AllArgsConstructor;
+import lombok.NonNull;
+
+import java.util.function.DoubleSupplier;
+
+/**
+ * Metric that is sampled from a callback while scraping, so keeping it up to date costs nothing.
+ */
+@AllArgsConstructor
+public class Gauge implements Metric {
+	
+	private final @NonNull DoubleSupplier supplier;
+	
+	@Override
+	public void write(StringBuilder sb, String name, String labels) {
+		Metric.sample(sb, name, labels, Metric.format(supplier.getAsDouble()));
+	}
+}
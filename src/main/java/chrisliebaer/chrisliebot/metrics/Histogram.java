@@ -0,0 +1,68 @@
+package chrisliebaer.chrisliebot.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency histogram with fixed buckets. Observations are recorded in nanoseconds and exported in seconds. Each
+ * observation only increments a single bucket, the cumulative counts required by the exposition format are computed
+ * while scraping.
+ */
+public class Histogram implements Metric {
+	
+	// upper bounds in seconds, chosen to cover everything from a cached lookup to a slow http request
+	private static final double[] BOUNDS = {0.0001, 0.0005, 0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10, 30};
+	private static final long[] BOUNDS_NANOS = new long[BOUNDS.length];
+	private static final String[] BOUNDS_LABEL = new String[BOUNDS.length];
+	
+	static {
+		for (int i = 0; i < BOUNDS.length; i++) {
+			BOUNDS_NANOS[i] = (long) (BOUNDS[i] * TimeUnit.SECONDS.toNanos(1));
+			BOUNDS_LABEL[i] = Double.toString(BOUNDS[i]);
+		}
+	}
+	
+	private final LongAdder[] buckets = new LongAdder[BOUNDS.length + 1]; // last bucket is +Inf
+	private final LongAdder sum = new LongAdder();
+	
+	public Histogram() {
+		for (int i = 0; i < buckets.length; i++)
+			buckets[i] = new LongAdder();
+	}
+	
+	/**
+	 * Records a single observation.
+	 *
+	 * @param nanos The observed duration in nanoseconds.
+	 */
+	public void observe(long nanos) {
+		int i = 0;
+		while (i < BOUNDS_NANOS.length && nanos > BOUNDS_NANOS[i])
+			i++;
+		buckets[i].increment();
+		sum.add(nanos);
+	}
+	
+	/**
+	 * Records the time that has passed since the given timestamp.
+	 *
+	 * @param start Start of the observed duration as returned by {@link System#nanoTime()}.
+	 */
+	public void observeSince(long start) {
+		observe(System.nanoTime() - start);
+	}
+	
+	@Override
+	public void write(StringBuilder sb, String name, String labels) {
+		var prefix = labels.isEmpty() ? "" : labels + ",";
+		
+		long count = 0;
+		for (int i = 0; i < buckets.length; i++) {
+			count += buckets[i].sum();
+			var le = i < BOUNDS_LABEL.length ? BOUNDS_LABEL[i] : "+Inf";
+			Metric.sample(sb, name + "_bucket", prefix + "le=\"" + le + "\"", Long.toString(count));
+		}
+		Metric.sample(sb, name + "_sum", labels, Metric.format(sum.sum() / (double) TimeUnit.SECONDS.toNanos(1)));
+		Metric.sample(sb, name + "_count", labels, Long.toString(count));
+	}
+}
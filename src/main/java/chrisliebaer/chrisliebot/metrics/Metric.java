@@ -0,0 +1,40 @@
+package chrisliebaer.chrisliebot.metrics;
+
+/**
+ * A single time series (or a set of related series in case of histograms) that is part of a {@link
+ * MetricsRegistry.Family}.
+ */
+public interface Metric {
+	
+	/**
+	 * Appends the current value of this metric in text exposition format.
+	 *
+	 * @param sb     The builder to write to.
+	 * @param name   The name of the family this metric belongs to.
+	 * @param labels Already rendered label pairs without braces, empty if the metric has no labels.
+	 */
+	public void write(StringBuilder sb, String name, String labels);
+	
+	/**
+	 * Helper for writing a single sample line.
+	 */
+	public static void sample(StringBuilder sb, String name, String labels, String value) {
+		sb.append(name);
+		if (!labels.isEmpty())
+			sb.append('{').append(labels).append('}');
+		sb.append(' ').append(value).append('\n');
+	}
+	
+	/**
+	 * Formats a floating point value the way the exposition format expects it.
+	 */
+	public static String format(double d) {
+		if (Double.isNaN(d))
+			return "NaN";
+		if (Double.isInfinite(d))
+			return d > 0 ? "+Inf" : "-Inf";
+		if (d == Math.rint(d) && Math.abs(d) < 1e15)
+			return Long.toString((long) d);
+		return Double.toString(d);
+	}
+}
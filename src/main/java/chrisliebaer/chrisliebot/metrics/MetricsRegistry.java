@@ -0,0 +1,201 @@
+package chrisliebaer.chrisliebot.metrics;
+
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.DoubleSupplier;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+
+/**
+ * Central collection of all metrics. Metrics are grouped into families that share a name and a set of label names,
+ * each distinct combination of label values is a child of its family. Registering a family multiple times returns the
+ * existing family, which allows components like the dispatcher to be recreated without losing their metrics.
+ */
+@Slf4j
+public class MetricsRegistry {
+	
+	private static final Pattern NAME_PATTERN = Pattern.compile("[a-zA-Z_:][a-zA-Z0-9_:]*");
+	
+	// guarded by itself, only locked during registration and scraping
+	private final Map<String, Family<?>> families = new LinkedHashMap<>();
+	
+	public Family<Counter> counter(String name, String help, String... labelNames) {
+		return register(name, help, "counter", Counter::new, labelNames);
+	}
+	
+	public Family<Histogram> histogram(String name, String help, String... labelNames) {
+		return register(name, help, "histogram", Histogram::new, labelNames);
+	}
+	
+	/**
+	 * Registers a gauge that is sampled from the given callback. Registering a gauge with an existing name replaces the
+	 * callback.
+	 */
+	public void gauge(String name, String help, @NonNull DoubleSupplier supplier) {
+		callback(name, help, "gauge", supplier);
+	}
+	
+	/**
+	 * Registers a counter that is maintained by some other component and is only sampled from the given callback.
+	 * Registering a counter with an existing name replaces the callback.
+	 */
+	public void counter(String name, String help, @NonNull DoubleSupplier supplier) {
+		callback(name, help, "counter", supplier);
+	}
+	
+	private void callback(String name, String help, String type, DoubleSupplier supplier) {
+		var family = new Family<>(name, help, type, () -> new Gauge(supplier), new String[0]);
+		synchronized (families) {
+			var existing = families.get(name);
+			if (existing != null && !existing.type.equals(type))
+				throw new IllegalArgumentException("metric `" + name + "` is already registered as " + existing.type);
+			families.put(name, family);
+		}
+	}
+	
+	@SuppressWarnings("unchecked")
+	private <M extends Metric> Family<M> register(String name, String help, String type, Supplier<M> factory, String[] labelNames) {
+		if (!NAME_PATTERN.matcher(name).matches())
+			throw new IllegalArgumentException("invalid metric name: " + name);
+		
+		synchronized (families) {
+			var existing = families.get(name);
+			if (existing != null) {
+				if (!existing.type.equals(type) || !Arrays.equals(existing.labelNames, labelNames))
+					throw new IllegalArgumentException("metric `" + name + "` is already registered with different type or labels");
+				return (Family<M>) existing;
+			}
+			
+			var family = new Family<>(name, help, type, factory, labelNames.clone());
+			families.put(name, family);
+			return family;
+		}
+	}
+	
+	/**
+	 * @return All metrics rendered in text exposition format.
+	 */
+	public String scrape() {
+		List<Family<?>> snapshot;
+		synchronized (families) {
+			snapshot = new ArrayList<>(families.values());
+		}
+		
+		var sb = new StringBuilder(8192);
+		for (var family : snapshot) {
+			var start = sb.length();
+			try {
+				family.write(sb);
+			} catch (RuntimeException e) {
+				// a single broken callback must not take down the entire endpoint
+				log.warn("failed to sample metric `{}`", family.name, e);
+				sb.setLength(start);
+			}
+		}
+		return sb.toString();
+	}
+	
+	private static String escape(String s) {
+		return s.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+	}
+	
+	/**
+	 * A named group of metrics, with one child per distinct set of label values.
+	 */
+	public static final class Family<M extends Metric> {
+		
+		@Getter private final String name;
+		private final String help;
+		private final String type;
+		private final String[] labelNames;
+		private final Supplier<M> factory;
+		
+		// keyed by the label value itself if there is only a single label, to avoid allocating a key on lookup
+		private final Map<Object, Child<M>> children = new ConcurrentHashMap<>();
+		
+		private Family(String name, String help, String type, Supplier<M> factory, String[] labelNames) {
+			this.name = name;
+			this.help = help;
+			this.type = type;
+			this.factory = factory;
+			this.labelNames = labelNames;
+		}
+		
+		/**
+		 * @return The metric of this family that has no labels.
+		 */
+		public M get() {
+			return labels();
+		}
+		
+		/**
+		 * @return The metric of this family for the given label value. Only valid for families with exactly one label.
+		 */
+		public M labels(@NonNull String value) {
+			if (labelNames.length != 1)
+				throw new IllegalArgumentException("metric `" + name + "` expects " + labelNames.length + " labels");
+			
+			var child = children.get(value);
+			if (child == null)
+				child = children.computeIfAbsent(value, k -> new Child<>(render(value), factory.get()));
+			return child.metric;
+		}
+		
+		/**
+		 * @return The metric of this family for the given label values.
+		 */
+		public M labels(String... values) {
+			if (values.length != labelNames.length)
+				throw new IllegalArgumentException("metric `" + name + "` expects " + labelNames.length + " labels");
+			if (values.length == 1)
+				return labels(values[0]);
+			
+			var key = List.of(values);
+			var child = children.get(key);
+			if (child == null)
+				child = children.computeIfAbsent(key, k -> new Child<>(render(values), factory.get()));
+			return child.metric;
+		}
+		
+		private String render(String... values) {
+			var sb = new StringBuilder();
+			for (int i = 0; i < values.length; i++) {
+				if (i > 0)
+					sb.append(',');
+				sb.append(labelNames[i]).append("=\"").append(escape(Objects.requireNonNull(values[i]))).append('"');
+			}
+			return sb.toString();
+		}
+		
+		private void write(StringBuilder sb) {
+			// families without labels are always exported, even if no value has been recorded yet
+			if (labelNames.length == 0)
+				get();
+			
+			sb.append("# HELP ").append(name).append(' ').append(help.replace("\\", "\\\\").replace("\n", "\\n")).append('\n');
+			sb.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+			for (var child : children.values())
+				child.metric.write(sb, name, child.labels);
+		}
+	}
+	
+	private static final class Child<M extends Metric> {
+		
+		private final String labels;
+		private final M metric;
+		
+		private Child(String labels, M metric) {
+			this.labels = labels;
+			this.metric = metric;
+		}
+	}
+}
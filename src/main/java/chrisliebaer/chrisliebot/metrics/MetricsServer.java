@@ -0,0 +1,88 @@
+package chrisliebaer.chrisliebot.metrics;
+
+import com.google.common.util.concurrent.AbstractIdleService;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import lombok.NonNull;
+import lombok.ToString;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.validation.constraints.Max;
+import javax.validation.constraints.NotBlank;
+import javax.validation.constraints.PositiveOrZero;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Minimal http endpoint that serves the content of a {@link MetricsRegistry} in text exposition format. Uses the http
+ * server that ships with the JDK, so there are no additional dependencies.
+ */
+@Slf4j
+public class MetricsServer extends AbstractIdleService {
+	
+	private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+	
+	private final MetricsRegistry registry;
+	private final Config cfg;
+	
+	private HttpServer server;
+	private ExecutorService executor;
+	
+	public MetricsServer(@NonNull MetricsRegistry registry, @NonNull Config cfg) {
+		this.registry = registry;
+		this.cfg = cfg;
+	}
+	
+	@Override
+	protected void startUp() throws IOException {
+		executor = Executors.newSingleThreadExecutor(r -> {
+			var t = new Thread(r, "MetricsServer");
+			t.setDaemon(true);
+			return t;
+		});
+		
+		server = HttpServer.create(new InetSocketAddress(cfg.host, cfg.port), 0);
+		server.createContext(cfg.path, this::handle);
+		server.setExecutor(executor);
+		server.start();
+		log.info("serving metrics on http://{}:{}{}", cfg.host, cfg.port, cfg.path);
+	}
+	
+	@Override
+	protected void shutDown() {
+		server.stop(0);
+		executor.shutdown();
+	}
+	
+	private void handle(HttpExchange exchange) throws IOException {
+		try (exchange) {
+			if (!"GET".equals(exchange.getRequestMethod())) {
+				exchange.sendResponseHeaders(405, -1);
+				return;
+			}
+			
+			var body = registry.scrape().getBytes(StandardCharsets.UTF_8);
+			exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+			exchange.sendResponseHeaders(200, body.length);
+			exchange.getResponseBody().write(body);
+		}
+	}
+	
+	@ToString
+	public static class Config {
+		
+		@NotBlank private String host = "127.0.0.1";
+		
+		// disabled by default, since the endpoint is not protected in any way
+		@PositiveOrZero @Max(65535) private int port = 0;
+		
+		@NotBlank private String path = "/metrics";
+		
+		public boolean enabled() {
+			return port != 0;
+		}
+	}
+}
@@ -0,0 +1,240 @@
+package chrisliebaer.chrisliebot.metrics;
+
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.validation.constraints.Positive;
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Attributes allocated bytes and cpu time to the listeners, commands and timer tasks that caused them. Both values are
+ * taken from the thread level counters of the jvm, so a sample only covers work that was done on the calling thread.
+ * Sampling can be turned on and off at runtime and costs next to nothing while turned off.
+ */
+@Slf4j
+public class ResourceAccounting {
+	
+	private static final int SUMMARY_LIMIT = 10;
+	
+	private final com.sun.management.ThreadMXBean threads;
+	@Getter private final boolean supported;
+	@Getter private volatile boolean enabled;
+	
+	private final Map<Kind, Map<String, Totals>> totals = new EnumMap<>(Kind.class);
+	
+	private ScheduledFuture<?> summaryTask;
+	
+	public ResourceAccounting() {
+		var bean = ManagementFactory.getThreadMXBean();
+		if (bean instanceof com.sun.management.ThreadMXBean) {
+			threads = (com.sun.management.ThreadMXBean) bean;
+			supported = threads.isThreadAllocatedMemorySupported() && threads.isCurrentThreadCpuTimeSupported();
+		} else {
+			threads = null;
+			supported = false;
+		}
+		
+		for (var kind : Kind.values())
+			totals.put(kind, new ConcurrentHashMap<>());
+	}
+	
+	/**
+	 * Applies the given config and schedules the periodic summary on the given timer.
+	 */
+	public synchronized void start(@NonNull ScheduledExecutorService timer, @NonNull Config cfg) {
+		enabled(cfg.enabled);
+		if (summaryTask != null)
+			summaryTask.cancel(false);
+		summaryTask = timer.scheduleWithFixedDelay(this::logSummary, cfg.summaryInterval, cfg.summaryInterval, TimeUnit.MILLISECONDS);
+	}
+	
+	public synchronized void stop() {
+		if (summaryTask != null)
+			summaryTask.cancel(false);
+		summaryTask = null;
+	}
+	
+	/**
+	 * Turns sampling on or off. Calls that are already running when sampling is turned off are still accounted.
+	 *
+	 * @return {@code false} if the jvm doesn't provide the required thread counters.
+	 */
+	public synchronized boolean enabled(boolean enabled) {
+		if (enabled && !supported) {
+			log.warn("resource accounting is not supported by this jvm");
+			return false;
+		}
+		
+		if (enabled) {
+			threads.setThreadAllocatedMemoryEnabled(true);
+			threads.setThreadCpuTimeEnabled(true);
+		}
+		if (this.enabled != enabled)
+			log.info("resource accounting has been turned {}", enabled ? "on" : "off");
+		this.enabled = enabled;
+		return true;
+	}
+	
+	/**
+	 * Takes a sample of the counters of the current thread. The returned sample must be passed to
+	 * {@link #end(Kind, String, Sample)} on the same thread.
+	 *
+	 * @return The sample or {@code null} if sampling is turned off.
+	 */
+	public Sample begin() {
+		if (!enabled)
+			return null;
+		return new Sample(threads.getCurrentThreadAllocatedBytes(), threads.getCurrentThreadCpuTime());
+	}
+	
+	/**
+	 * Adds the difference between the current counters and the given sample to the totals of the given name.
+	 *
+	 * @param sample Sample that was returned by {@link #begin()}, does nothing if {@code null}.
+	 */
+	public void end(@NonNull Kind kind, @NonNull String name, Sample sample) {
+		if (sample == null)
+			return;
+		
+		var bytes = threads.getCurrentThreadAllocatedBytes() - sample.bytes;
+		var cpu = threads.getCurrentThreadCpuTime() - sample.cpu;
+		
+		var t = totals.get(kind).computeIfAbsent(name, n -> new Totals());
+		t.calls.increment();
+		t.bytes.add(Math.max(0, bytes));
+		t.cpu.add(Math.max(0, cpu));
+	}
+	
+	/**
+	 * Wraps the given task, so each of its runs is accounted as a timer task. The name is derived from the class of the
+	 * task, which is the class that declared the task in case of lambdas.
+	 */
+	public Runnable wrap(@NonNull Runnable task) {
+		var name = taskName(task);
+		return () -> {
+			var sample = begin();
+			try {
+				task.run();
+			} finally {
+				end(Kind.TIMER, name, sample);
+			}
+		};
+	}
+	
+	public <V> Callable<V> wrap(@NonNull Callable<V> task) {
+		var name = taskName(task);
+		return () -> {
+			var sample = begin();
+			try {
+				return task.call();
+			} finally {
+				end(Kind.TIMER, name, sample);
+			}
+		};
+	}
+	
+	private static String taskName(Object task) {
+		var name = task.getClass().getName();
+		
+		// lambdas are named after their declaring class, followed by a generated suffix
+		var lambda = name.indexOf("$$Lambda");
+		if (lambda != -1)
+			name = name.substring(0, lambda);
+		return name.substring(name.lastIndexOf('.') + 1);
+	}
+	
+	/**
+	 * @return All totals, sorted by cpu time in descending order.
+	 */
+	public List<Entry> snapshot() {
+		List<Entry> entries = new ArrayList<>();
+		for (var kindEntry : totals.entrySet())
+			for (var e : kindEntry.getValue().entrySet()) {
+				var t = e.getValue();
+				entries.add(new Entry(kindEntry.getKey(), e.getKey(), t.calls.sum(), t.bytes.sum(), t.cpu.sum()));
+			}
+		entries.sort(Comparator.comparingLong(Entry::cpuNanos).reversed());
+		return entries;
+	}
+	
+	public void reset() {
+		for (var map : totals.values())
+			map.clear();
+	}
+	
+	private void logSummary() {
+		if (!enabled)
+			return;
+		
+		var entries = snapshot();
+		if (entries.isEmpty())
+			return;
+		
+		var sb = new StringBuilder("resource accounting summary, top ").append(Math.min(SUMMARY_LIMIT, entries.size()))
+				.append(" of ").append(entries.size()).append(" by cpu time:");
+		for (var e : entries.subList(0, Math.min(SUMMARY_LIMIT, entries.size())))
+			sb.append(System.lineSeparator()).append("  ").append(e.format());
+		log.info(sb.toString());
+	}
+	
+	public enum Kind {
+		LISTENER, COMMAND, TIMER;
+		
+		public String label() {
+			return name().toLowerCase();
+		}
+	}
+	
+	public static final class Sample {
+		
+		private final long bytes;
+		private final long cpu;
+		
+		private Sample(long bytes, long cpu) {
+			this.bytes = bytes;
+			this.cpu = cpu;
+		}
+	}
+	
+	@Value
+	public static class Entry {
+		
+		Kind kind;
+		String name;
+		long calls;
+		long bytes;
+		long cpuNanos;
+		
+		public String format() {
+			return "%s `%s`: %d calls, %.1f ms cpu, %.1f KiB allocated (%.1f KiB per call)".formatted(
+					kind.label(), name, calls, cpuNanos / 1e6, bytes / 1024.0, calls == 0 ? 0 : bytes / 1024.0 / calls);
+		}
+	}
+	
+	private static final class Totals {
+		
+		private final LongAdder calls = new LongAdder();
+		private final LongAdder bytes = new LongAdder();
+		private final LongAdder cpu = new LongAdder();
+	}
+	
+	public static class Config {
+		
+		private boolean enabled; // off by default, since reading the thread counters adds a small cost to every call
+		@Positive private long summaryInterval = Duration.ofMinutes(15).toMillis();
+	}
+}
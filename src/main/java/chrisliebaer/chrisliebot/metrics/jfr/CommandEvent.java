@@ -0,0 +1,20 @@
+package chrisliebaer.chrisliebot.metrics.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("chrisliebot.Command")
+@Label("Command Invocation")
+@Description("Execution of a command")
+@Category({"Chrisliebot", "Dispatcher"})
+@StackTrace(false)
+public class CommandEvent extends jdk.jfr.Event {
+	
+	@Label("Command") public String command;
+	@Label("Alias") public String alias;
+	@Label("Channel") public String channel;
+	@Label("Failed") public boolean failed;
+}
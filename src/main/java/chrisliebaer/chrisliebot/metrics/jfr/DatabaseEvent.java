@@ -0,0 +1,32 @@
+package chrisliebaer.chrisliebot.metrics.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Database operation, including the time spent waiting for a connection from the pool.
+ */
+@Name("chrisliebot.Database")
+@Label("Database Operation")
+@Description("Database access including acquisition of a pooled connection")
+@Category({"Chrisliebot", "I/O"})
+public class DatabaseEvent extends jdk.jfr.Event {
+	
+	@Label("Operation") public String operation;
+	
+	/**
+	 * Creates and begins a new event. The caller is responsible for calling {@link #commit()} once the operation is
+	 * completed.
+	 *
+	 * @param operation Short name of the operation.
+	 * @return The already running event.
+	 */
+	public static DatabaseEvent start(String operation) {
+		var event = new DatabaseEvent();
+		event.operation = operation;
+		event.begin();
+		return event;
+	}
+}
@@ -0,0 +1,21 @@
+package chrisliebaer.chrisliebot.metrics.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Outbound http call through the shared http client. Covers the time until the response headers have been received.
+ */
+@Name("chrisliebot.Http")
+@Label("HTTP Call")
+@Description("Outbound http call through the shared client")
+@Category({"Chrisliebot", "I/O"})
+public class HttpEvent extends jdk.jfr.Event {
+	
+	@Label("Method") public String method;
+	@Label("Host") public String host;
+	@Label("Path") public String path;
+	@Label("Status") @Description("Response code, 0 if the call failed") public int status;
+}
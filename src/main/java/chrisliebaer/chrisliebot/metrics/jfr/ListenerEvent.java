@@ -0,0 +1,22 @@
+package chrisliebaer.chrisliebot.metrics.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+@Name("chrisliebot.Listener")
+@Label("Listener Call")
+@Description("Call of a listener for an incoming message")
+@Category({"Chrisliebot", "Dispatcher"})
+@StackTrace(false)
+@Threshold("1 ms")
+public class ListenerEvent extends jdk.jfr.Event {
+	
+	@Label("Listener") public String listener;
+	@Label("Channel") public String channel;
+	@Label("Command") @Description("Message was a command invocation") public boolean command;
+	@Label("Failed") public boolean failed;
+}
@@ -0,0 +1,23 @@
+package chrisliebaer.chrisliebot.metrics.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Sending of a message. For Discord, the event covers the entire REST call and is committed from the thread that
+ * completes it. The channel is not recorded, since it is already part of the listener or command event that sends the
+ * message.
+ */
+@Name("chrisliebot.Output")
+@Label("Output Send")
+@Description("Sending of a message to a service")
+@Category({"Chrisliebot", "I/O"})
+public class OutputEvent extends jdk.jfr.Event {
+	
+	@Label("Service Type") public String type;
+	@Label("Edit") @Description("An existing message was edited") public boolean edit;
+	@Label("Length") public int length;
+	@Label("Failed") public boolean failed;
+}
@@ -0,0 +1,21 @@
+package chrisliebaer.chrisliebot.metrics.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+@Name("chrisliebot.Parse")
+@Label("Command Parse")
+@Description("Checking an incoming message for a command invocation")
+@Category({"Chrisliebot", "Dispatcher"})
+@StackTrace(false)
+@Threshold("1 ms")
+public class ParseEvent extends jdk.jfr.Event {
+	
+	@Label("Service") public String service;
+	@Label("Channel") public String channel;
+	@Label("Alias") @Description("Parsed alias, not set if message is no command") public String alias;
+}
@@ -0,0 +1,20 @@
+package chrisliebaer.chrisliebot.metrics.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+@Name("chrisliebot.Resolve")
+@Label("Context Resolve")
+@Description("Resolving the context of an incoming message")
+@Category({"Chrisliebot", "Dispatcher"})
+@StackTrace(false)
+@Threshold("1 ms")
+public class ResolveEvent extends jdk.jfr.Event {
+	
+	@Label("Service") public String service;
+	@Label("Channel") public String channel;
+}
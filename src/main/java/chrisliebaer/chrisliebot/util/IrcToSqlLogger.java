@@ -1,5 +1,6 @@
 package chrisliebaer.chrisliebot.util;
 
+import chrisliebaer.chrisliebot.metrics.jfr.DatabaseEvent;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NonNull;
@@ -107,6 +108,7 @@ public class IrcToSqlLogger {
 	private synchronized void logMessage(Date when, String context, User sender, String message, MessageType type) {
 		log.trace("LOG: {} [{}] {}: {} ({})", when, context, sender.getNick(), message, type);
 		
+		var event = DatabaseEvent.start("irclog.insert");
 		try {
 			String sql = "INSERT INTO chatlog(timestamp, service, context, type, nickname, realname, ident, host, account, message) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
 			try (Connection connection = dataSource.getConnection();
@@ -128,6 +130,8 @@ public class IrcToSqlLogger {
 			}
 		} catch (SQLException e) {
 			log.warn("error while logging message", e);
+		} finally {
+			event.commit();
 		}
 	}
 	